@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.transport;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Tuning of the shared HTTP transport, see {@link HttpTransports}.
+ *
+ * @author HamaWhite
+ */
+@Data
+@Builder
+public class HttpTransportConfig {
+
+    /**
+     * Maximum number of asynchronous requests executing at once across all hosts.
+     */
+    @Builder.Default
+    private int maxRequests = 256;
+
+    /**
+     * Maximum number of asynchronous requests executing at once against a single host.
+     */
+    @Builder.Default
+    private int maxRequestsPerHost = 64;
+
+    /**
+     * Maximum number of idle connections kept alive in the pool.
+     */
+    @Builder.Default
+    private int maxIdleConnections = 32;
+
+    /**
+     * How long an idle connection is kept alive before it is evicted from the pool.
+     */
+    @Builder.Default
+    private Duration keepAlive = Duration.ofMinutes(5);
+
+    /**
+     * Whether to negotiate HTTP/2, which multiplexes concurrent requests to a host over one connection.
+     */
+    @Builder.Default
+    private boolean http2 = true;
+
+    /**
+     * Interval of HTTP/2 pings that keep long-lived connections alive, zero disables them.
+     */
+    @Builder.Default
+    private Duration pingInterval = Duration.ZERO;
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.transport;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide registry of the HTTP transport shared by all clients.
+ * <p>
+ * Every client derives its own {@link OkHttpClient} from {@link #shared()} with {@link OkHttpClient#newBuilder()},
+ * adding its timeouts, interceptors and proxy, while the connection pool and the dispatcher stay shared. The OpenAI
+ * and Pinecone clients use it unless they are given a transport of their own. Requests
+ * to the same host thus reuse warm connections and TLS sessions, and no client starts threads of its own.
+ *
+ * @author HamaWhite
+ */
+public class HttpTransports {
+
+    private static volatile OkHttpClient transport;
+
+    private HttpTransports() {
+    }
+
+    /**
+     * Returns the shared transport, built with the default configuration on first use.
+     */
+    public static OkHttpClient shared() {
+        OkHttpClient result = transport;
+        if (result == null) {
+            synchronized (HttpTransports.class) {
+                result = transport;
+                if (result == null) {
+                    result = create(HttpTransportConfig.builder().build());
+                    transport = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the shared transport. Clients created afterwards use the new one, while clients already created keep
+     * the previous pool and dispatcher, so this is best called once at startup.
+     */
+    public static synchronized void configure(HttpTransportConfig config) {
+        transport = create(config);
+    }
+
+    private static OkHttpClient create(HttpTransportConfig config) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(config.getMaxRequestsPerHost());
+
+        List<Protocol> protocols = config.isHttp2()
+                ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : List.of(Protocol.HTTP_1_1);
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(config.getMaxIdleConnections(), config.getKeepAlive().toMillis(),
+                        TimeUnit.MILLISECONDS))
+                .protocols(protocols)
+                .pingInterval(config.getPingInterval())
+                .build();
+    }
+}
@@ -18,6 +18,11 @@
 
 package com.hw.langchain.chains.query.constructor.ir;
 
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +31,10 @@ import java.util.Map;
  *
  * @author HamaWhite
  */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = false)
 public class Operation extends FilterDirective {
 
     private Operator operator;
@@ -26,6 +26,8 @@ import com.hw.langchain.chains.query.constructor.JsonUtils;
 import com.hw.langchain.schema.Document;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 import java.util.Map;
@@ -72,6 +74,14 @@ public abstract class BaseRetrievalQA extends Chain {
      */
     public abstract List<Document> getDocs(String question);
 
+    /**
+     * Asynchronously get documents to do question answering over, the default runs {@link #getDocs} on
+     * {@link Schedulers#boundedElastic()}.
+     */
+    public Mono<List<Document>> getDocsAsync(String question) {
+        return Mono.fromCallable(() -> getDocs(question)).subscribeOn(Schedulers.boundedElastic());
+    }
+
     /**
      * Run getRelevantText and llm on input query.
      */
@@ -98,12 +108,13 @@ public abstract class BaseRetrievalQA extends Chain {
     protected Flux<Map<String, String>> asyncInnerCall(Map<String, Object> inputs) {
         var question = inputs.get(inputKey).toString();
 
-        List<Document> docs = getDocs(question);
-        inputs.put("input_documents", docs);
-        if (!inputs.containsKey("question")) {
-            inputs.put("question", question);
-        }
-        Flux<String> answer = combineDocumentsChain.asyncRun(inputs);
-        return answer.map(s -> Map.of(outputKey, s));
+        return getDocsAsync(question).flatMapMany(docs -> {
+            inputs.put("input_documents", docs);
+            if (!inputs.containsKey("question")) {
+                inputs.put("question", question);
+            }
+            Flux<String> answer = combineDocumentsChain.asyncRun(inputs);
+            return answer.map(s -> Map.of(outputKey, s));
+        });
     }
 }
@@ -24,6 +24,8 @@ import com.hw.langchain.chains.combine.documents.base.BaseCombineDocumentsChain;
 import com.hw.langchain.schema.BaseRetriever;
 import com.hw.langchain.schema.Document;
 
+import reactor.core.publisher.Mono;
+
 import java.util.List;
 
 import static com.hw.langchain.chains.ChainType.STUFF;
@@ -63,6 +65,11 @@ public class RetrievalQa extends BaseRetrievalQA {
         return retriever.getRelevantDocuments(question);
     }
 
+    @Override
+    public Mono<List<Document>> getDocsAsync(String question) {
+        return retriever.getRelevantDocumentsAsync(question);
+    }
+
     @Override
     public String chainType() {
         return "retrieval_qa";
@@ -22,6 +22,9 @@ import com.hw.langchain.base.language.BaseLanguageModel;
 import com.hw.langchain.schema.*;
 
 import lombok.experimental.SuperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 import java.util.Map;
@@ -52,7 +55,21 @@ public abstract class BaseChatModel implements BaseLanguageModel {
         List<ChatResult> results = messages.stream()
                 .map(message -> innerGenerate(message, stop))
                 .toList();
+        return toLLMResult(results);
+    }
+
+    /**
+     * Asynchronous version of {@link #generate(List, List)}, the lists of messages are generated concurrently and
+     * their results keep the order of the messages.
+     */
+    public Mono<LLMResult> generateAsync(List<List<BaseMessage>> messages, List<String> stop) {
+        return Flux.fromIterable(messages)
+                .flatMapSequential(message -> innerGenerateAsync(message, stop))
+                .collectList()
+                .map(this::toLLMResult);
+    }
 
+    private LLMResult toLLMResult(List<ChatResult> results) {
         List<Map<String, Object>> llmOutputs = results.stream()
                 .map(ChatResult::getLlmOutput)
                 .toList();
@@ -77,6 +94,14 @@ public abstract class BaseChatModel implements BaseLanguageModel {
      */
     public abstract ChatResult innerGenerate(List<BaseMessage> messages, List<String> stop);
 
+    /**
+     * Asynchronous version of {@link #innerGenerate(List, List)}, which by default runs it on
+     * {@link Schedulers#boundedElastic()}. Models with a non-blocking client should override it.
+     */
+    public Mono<ChatResult> innerGenerateAsync(List<BaseMessage> messages, List<String> stop) {
+        return Mono.fromCallable(() -> innerGenerate(messages, stop)).subscribeOn(Schedulers.boundedElastic());
+    }
+
     public BaseMessage call(List<BaseMessage> messages) {
         return call(messages, null);
     }
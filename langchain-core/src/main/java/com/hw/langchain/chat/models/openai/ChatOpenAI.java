@@ -32,7 +32,10 @@ import com.hw.openai.entity.completions.Usage;
 import lombok.Builder;
 import lombok.experimental.SuperBuilder;
 import okhttp3.Interceptor;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -169,9 +172,29 @@ public class ChatOpenAI extends BaseChatModel {
 
     @Override
     public ChatResult innerGenerate(List<BaseMessage> messages, List<String> stop) {
+        ChatCompletion chatCompletion = buildChatCompletion(messages, stop);
+        var response = retryWithExponentialBackoff(maxRetries, () -> client.createChatCompletion(chatCompletion));
+        return createChatResult(response);
+    }
+
+    /**
+     * Generate without holding a thread while the request is in flight, failed requests are retried with the same
+     * exponential backoff as {@link #innerGenerate(List, List)}.
+     */
+    @Override
+    public Mono<ChatResult> innerGenerateAsync(List<BaseMessage> messages, List<String> stop) {
+        ChatCompletion chatCompletion = buildChatCompletion(messages, stop);
+        return Mono.fromFuture(() -> client.createChatCompletionAsync(chatCompletion))
+                .retryWhen(Retry.backoff(maxRetries - 1L, Duration.ofSeconds(4))
+                        .maxBackoff(Duration.ofSeconds(16))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .map(this::createChatResult);
+    }
+
+    private ChatCompletion buildChatCompletion(List<BaseMessage> messages, List<String> stop) {
         var chatMessages = convertMessages(messages);
 
-        ChatCompletion chatCompletion = ChatCompletion.builder()
+        return ChatCompletion.builder()
                 .model(model)
                 .temperature(temperature)
                 .messages(chatMessages)
@@ -180,9 +203,6 @@ public class ChatOpenAI extends BaseChatModel {
                 .n(n)
                 .stop(stop)
                 .build();
-
-        var response = retryWithExponentialBackoff(maxRetries, () -> client.createChatCompletion(chatCompletion));
-        return createChatResult(response);
     }
 
     public List<Message> convertMessages(List<BaseMessage> messages) {
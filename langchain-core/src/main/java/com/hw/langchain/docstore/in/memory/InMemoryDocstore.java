@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.docstore.in.memory;
+
+import com.hw.langchain.schema.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Simple in memory docstore that maps document ids to the dense slot of the vector index storing its embedding.
+ * <p>
+ * Documents added with {@link #addPersisted} keep only their id in memory, their content is read on each search by
+ * the persisted reader, e.g. from a memory-mapped index file.
+ * <p>
+ * The docstore is not thread-safe, the owning vector store guards it together with its index.
+ *
+ * @author HamaWhite
+ */
+public class InMemoryDocstore {
+
+    /**
+     * ids and documents are indexed by slot, a removed slot holds null.
+     */
+    private final List<String> ids = new ArrayList<>();
+
+    private final List<Document> documents = new ArrayList<>();
+
+    private final Map<String, Integer> idToSlot = new HashMap<>();
+
+    private IntFunction<Document> persistedReader;
+
+    /**
+     * Add a document stored at the next slot.
+     *
+     * @return the slot of the document
+     */
+    public int add(String id, Document document) {
+        if (idToSlot.containsKey(id)) {
+            throw new IllegalArgumentException("Tried to add id that already exists: " + id);
+        }
+        int slot = documents.size();
+        ids.add(id);
+        documents.add(document);
+        idToSlot.put(id, slot);
+        return slot;
+    }
+
+    /**
+     * Add a document whose content stays persisted, it is read by the persisted reader on each search.
+     *
+     * @return the slot of the document
+     */
+    public int addPersisted(String id) {
+        return add(id, null);
+    }
+
+    /**
+     * Set the reader of the documents added with {@link #addPersisted}, by slot.
+     */
+    public void setPersistedReader(IntFunction<Document> persistedReader) {
+        this.persistedReader = persistedReader;
+    }
+
+    /**
+     * Add a slot whose document was already removed, keeping the slots aligned with a reloaded vector index.
+     *
+     * @return the slot
+     */
+    public int addRemoved() {
+        ids.add(null);
+        documents.add(null);
+        return documents.size() - 1;
+    }
+
+    /**
+     * Remove the document by id.
+     *
+     * @return the slot of the removed document, or null if the id does not exist
+     */
+    public Integer remove(String id) {
+        Integer slot = idToSlot.remove(id);
+        if (slot != null) {
+            ids.set(slot, null);
+            documents.set(slot, null);
+        }
+        return slot;
+    }
+
+    /**
+     * Return the document stored at the slot, or null if it was removed.
+     */
+    public Document search(int slot) {
+        Document document = documents.get(slot);
+        return document == null && ids.get(slot) != null ? persistedReader.apply(slot) : document;
+    }
+
+    public String getId(int slot) {
+        return ids.get(slot);
+    }
+
+    public Integer getSlot(String id) {
+        return idToSlot.get(id);
+    }
+
+    /**
+     * Number of slots, including removed ones.
+     */
+    public int size() {
+        return documents.size();
+    }
+}
@@ -18,22 +18,85 @@
 
 package com.hw.langchain.embeddings.base;
 
+import com.google.common.primitives.Floats;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 import java.util.List;
 
 /**
  * Interface for embedding models.
+ * <p>
+ * Embeddings are primitive {@code float[]} vectors, a boxed {@code List<Float>} takes about four times the heap of
+ * the primitive array. The primitive and list based methods default to each other, so implementations must override
+ * at least one method of each pair, preferably the primitive one. The list based methods then return views over the
+ * primitive arrays, and implementations written against the list based methods keep working.
+ * <p>
+ * The async methods default to running the blocking methods on {@link Schedulers#boundedElastic()}, so that the
+ * subscriber's thread is never blocked. Implementations with a non-blocking client should override them.
  *
  * @author HamaWhite
  */
 public interface Embeddings {
 
+    /**
+     * Embed search docs as primitive vectors.
+     *
+     * @param texts The list of texts to embed.
+     * @return List of embeddings, one for each text, in the order of the texts.
+     */
+    default List<float[]> embedDocumentVectors(List<String> texts) {
+        return embedDocuments(texts).stream().map(Floats::toArray).toList();
+    }
+
+    /**
+     * Embed query text as a primitive vector.
+     *
+     * @param text The text to embed.
+     * @return Embedding for the text.
+     */
+    default float[] embedQueryVector(String text) {
+        return Floats.toArray(embedQuery(text));
+    }
+
     /**
      * Embed search docs.
+     *
+     * @param texts The list of texts to embed.
+     * @return List of embeddings, one for each text, in the order of the texts.
      */
-    List<List<Float>> embedDocuments(List<String> texts);
+    default List<List<Float>> embedDocuments(List<String> texts) {
+        return embedDocumentVectors(texts).stream().map(Floats::asList).toList();
+    }
 
     /**
      * Embed query text.
+     *
+     * @param text The text to embed.
+     * @return Embedding for the text.
+     */
+    default List<Float> embedQuery(String text) {
+        return Floats.asList(embedQueryVector(text));
+    }
+
+    /**
+     * Asynchronously embed search docs.
+     *
+     * @param texts The list of texts to embed.
+     * @return Mono emitting the embeddings, one for each text, in the order of the texts.
+     */
+    default Mono<List<float[]>> embedDocumentsAsync(List<String> texts) {
+        return Mono.fromCallable(() -> embedDocumentVectors(texts)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Asynchronously embed query text.
+     *
+     * @param text The text to embed.
+     * @return Mono emitting the embedding for the text.
      */
-    List<Float> embedQuery(String text);
+    default Mono<float[]> embedQueryAsync(String text) {
+        return Mono.fromCallable(() -> embedQueryVector(text)).subscribeOn(Schedulers.boundedElastic());
+    }
 }
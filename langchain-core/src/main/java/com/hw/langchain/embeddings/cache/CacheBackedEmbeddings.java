@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.cache;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.hw.langchain.embeddings.base.Embeddings;
+
+import org.apache.commons.lang3.StringUtils;
+
+import lombok.Builder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Embeddings decorator caching the document embeddings of the underlying model.
+ * <p>
+ * Entries are keyed by the SHA-256 of the namespace and the text, so that the same text embedded by different
+ * models never collides. Lookups go through a bounded in-memory LRU tier, then the optional on-disk tier, and only
+ * the misses are sent to the underlying embeddings in a single call, identical texts being embedded once. The
+ * results are stitched back in the order of the texts and written to both tiers.
+ * <p>
+ * Queries are not cached, they are rarely repeated and caching them would fill the tiers with one-off entries.
+ *
+ * @author HamaWhite
+ */
+@Builder
+public class CacheBackedEmbeddings implements Embeddings {
+
+    private Embeddings underlyingEmbeddings;
+
+    /**
+     * Namespace of the cache keys, typically the model name. Required, a persistent cache shared by several models
+     * would otherwise serve the vectors of one model to another.
+     */
+    private String namespace;
+
+    /**
+     * In-memory tier, null disables it.
+     */
+    @Builder.Default
+    private LruEmbeddingCache memoryCache = new LruEmbeddingCache(64L * 1024 * 1024);
+
+    /**
+     * Persistent tier, null disables it.
+     */
+    private MappedEmbeddingCache diskCache;
+
+    @Override
+    public List<float[]> embedDocumentVectors(List<String> texts) {
+        Lookup lookup = lookup(texts);
+        if (!lookup.missingTexts.isEmpty()) {
+            lookup.complete(underlyingEmbeddings.embedDocumentVectors(lookup.missingTexts));
+        }
+        return Arrays.asList(lookup.embeddings);
+    }
+
+    @Override
+    public float[] embedQueryVector(String text) {
+        return underlyingEmbeddings.embedQueryVector(text);
+    }
+
+    /**
+     * Look up the cache off the caller's thread and embed the misses with the asynchronous method of the
+     * underlying embeddings.
+     */
+    @Override
+    public Mono<List<float[]>> embedDocumentsAsync(List<String> texts) {
+        return Mono.fromCallable(() -> lookup(texts))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(lookup -> {
+                    if (lookup.missingTexts.isEmpty()) {
+                        return Mono.just(Arrays.asList(lookup.embeddings));
+                    }
+                    return underlyingEmbeddings.embedDocumentsAsync(lookup.missingTexts)
+                            .map(embeddings -> {
+                                lookup.complete(embeddings);
+                                return Arrays.asList(lookup.embeddings);
+                            });
+                });
+    }
+
+    @Override
+    public Mono<float[]> embedQueryAsync(String text) {
+        return underlyingEmbeddings.embedQueryAsync(text);
+    }
+
+    private HashCode key(String text) {
+        return Hashing.sha256().newHasher()
+                .putString(namespace, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(text, StandardCharsets.UTF_8)
+                .hash();
+    }
+
+    private Lookup lookup(List<String> texts) {
+        checkState(StringUtils.isNotBlank(namespace), "The namespace of the cache keys must be set to the model.");
+        Lookup lookup = new Lookup(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            HashCode key = key(text);
+            float[] embedding = get(key);
+            if (embedding != null) {
+                lookup.embeddings[i] = embedding;
+            } else {
+                lookup.misses.computeIfAbsent(key, k -> {
+                    lookup.missingTexts.add(text);
+                    return new ArrayList<>();
+                }).add(i);
+            }
+        }
+        return lookup;
+    }
+
+    private float[] get(HashCode key) {
+        float[] embedding = memoryCache == null ? null : memoryCache.get(key);
+        if (embedding == null && diskCache != null) {
+            embedding = diskCache.get(key);
+            if (embedding != null && memoryCache != null) {
+                memoryCache.put(key, embedding);
+            }
+        }
+        return embedding;
+    }
+
+    /**
+     * Result of a cache lookup, the misses are keyed in the order of {@code missingTexts}.
+     */
+    private class Lookup {
+
+        private final float[][] embeddings;
+
+        private final Map<HashCode, List<Integer>> misses = new LinkedHashMap<>();
+
+        private final List<String> missingTexts = new ArrayList<>();
+
+        private Lookup(int size) {
+            this.embeddings = new float[size][];
+        }
+
+        /**
+         * Fill the misses with the embeddings of the missing texts and cache them.
+         */
+        private void complete(List<float[]> missingEmbeddings) {
+            Map<HashCode, float[]> computed = new LinkedHashMap<>();
+            int index = 0;
+            for (Map.Entry<HashCode, List<Integer>> miss : misses.entrySet()) {
+                float[] embedding = missingEmbeddings.get(index++);
+                List<Integer> positions = miss.getValue();
+                embeddings[positions.get(0)] = embedding;
+                // duplicate texts get their own copy, so modifying one result leaves the others intact
+                positions.subList(1, positions.size()).forEach(position -> embeddings[position] = embedding.clone());
+                computed.put(miss.getKey(), embedding);
+                if (memoryCache != null) {
+                    memoryCache.put(miss.getKey(), embedding);
+                }
+            }
+            if (diskCache != null) {
+                diskCache.putAll(computed);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.cache;
+
+import com.google.common.hash.HashCode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe in-memory embedding cache bounded by the heap bytes of its entries, the least recently used entries
+ * are evicted first. Embeddings are copied on the way in and out, so callers may modify the arrays they hold.
+ *
+ * @author HamaWhite
+ */
+public class LruEmbeddingCache {
+
+    /**
+     * Approximate heap bytes of an entry besides the floats: map node, key and array headers.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+
+    private final LinkedHashMap<HashCode, float[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    /**
+     * @param maxBytes maximum heap bytes held by the cached embeddings
+     */
+    public LruEmbeddingCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized float[] get(HashCode key) {
+        float[] embedding = entries.get(key);
+        return embedding == null ? null : embedding.clone();
+    }
+
+    public synchronized void put(HashCode key, float[] embedding) {
+        float[] previous = entries.put(key, embedding.clone());
+        if (previous != null) {
+            bytes -= weight(previous);
+        }
+        bytes += weight(embedding);
+
+        var iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<HashCode, float[]> eldest = iterator.next();
+            bytes -= weight(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Heap bytes currently held by the cached embeddings.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    private static long weight(float[] embedding) {
+        return ENTRY_OVERHEAD + (long) embedding.length * Float.BYTES;
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.cache;
+
+import com.google.common.hash.HashCode;
+import com.hw.langchain.exception.LangChainException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent embedding cache stored in an append-only file, read through memory-mapped regions.
+ * <p>
+ * The file starts with a 16 bytes header followed by records:
+ * <pre>
+ * header: magic | version | padding
+ * record: 32 bytes key | dimension | crc32 of key and vector | dimension little-endian floats
+ * </pre>
+ * The file is divided into regions of {@value #REGION_SIZE} bytes, each mapped by its own buffer. A record never
+ * crosses a region boundary, the rest of a region that cannot hold the next record is filled with a padding record
+ * of dimension 0. A region is mapped up to the end of the file when first read and remapped once it is full, records
+ * appended to it in between are read from the channel, so interleaved lookups and writes do not map it again each
+ * time. Opening scans the records to rebuild the key index on the heap, a record cut short or corrupted by a crash
+ * ends the scan and is truncated.
+ * <p>
+ * All methods are synchronized, {@link #close()} flushes the file to disk.
+ *
+ * @author HamaWhite
+ */
+public class MappedEmbeddingCache implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedEmbeddingCache.class);
+
+    private static final int MAGIC = 0x4C434543;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Keys are SHA-256 hashes.
+     */
+    private static final int KEY_SIZE = 32;
+
+    private static final int RECORD_HEADER_SIZE = KEY_SIZE + 2 * Integer.BYTES;
+
+    private static final long REGION_SIZE = 1L << 30;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    /**
+     * Offset of the record of each key.
+     */
+    private final Map<HashCode, Long> offsets = new HashMap<>();
+
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+
+    /**
+     * Offset just past the last complete record, where the next record is written.
+     */
+    private long end;
+
+    private MappedEmbeddingCache(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Open the cache file, creating it if it does not exist.
+     */
+    public static MappedEmbeddingCache open(Path path) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            MappedEmbeddingCache cache = new MappedEmbeddingCache(path, channel);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(MAGIC)
+                        .putInt(VERSION);
+                header.clear();
+                writeFully(channel, header, 0);
+                cache.end = HEADER_SIZE;
+            } else {
+                cache.scan();
+            }
+            return cache;
+        } catch (IOException e) {
+            throw new LangChainException("Failed to open embedding cache " + path, e);
+        }
+    }
+
+    private void scan() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new LangChainException("Not an embedding cache file of version " + VERSION + ": " + path);
+        }
+
+        long size = channel.size();
+        long offset = HEADER_SIZE;
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (offset + RECORD_HEADER_SIZE <= size) {
+            if (nextRegion(offset) - offset < RECORD_HEADER_SIZE) {
+                offset = nextRegion(offset);
+                continue;
+            }
+            recordHeader.clear();
+            readFully(channel, recordHeader, offset);
+            int dimension = recordHeader.getInt(KEY_SIZE);
+            if (dimension == 0 && nextRegion(offset) < size) {
+                offset = nextRegion(offset);
+                continue;
+            }
+            long length = recordLength(dimension);
+            if (dimension <= 0 || offset + length > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, record, offset);
+            if (record.getInt(KEY_SIZE + Integer.BYTES) != checksum(record)) {
+                break;
+            }
+            byte[] key = new byte[KEY_SIZE];
+            record.get(0, key);
+            offsets.put(HashCode.fromBytes(key), offset);
+            offset += length;
+        }
+        end = Math.min(offset, size);
+        if (end < size) {
+            LOG.warn("Truncating {} trailing bytes of embedding cache {}, left by an interrupted write.", size - end,
+                    path);
+            channel.truncate(end);
+        }
+    }
+
+    /**
+     * Return the cached embedding, or null if the key is not cached.
+     */
+    public synchronized float[] get(HashCode key) {
+        Long offset = offsets.get(key);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer region = region(offset);
+        int position = (int) (offset % REGION_SIZE);
+        if (position >= region.capacity()) {
+            return read(offset);
+        }
+        int dimension = region.getInt(position + KEY_SIZE);
+        float[] embedding = new float[dimension];
+        region.slice(position + RECORD_HEADER_SIZE, dimension * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer()
+                .get(embedding);
+        return embedding;
+    }
+
+    /**
+     * Append the embeddings whose keys are not cached yet.
+     */
+    public synchronized void putAll(Map<HashCode, float[]> embeddings) {
+        try {
+            for (Map.Entry<HashCode, float[]> entry : embeddings.entrySet()) {
+                if (!offsets.containsKey(entry.getKey())) {
+                    put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new LangChainException("Failed to write embedding cache " + path, e);
+        }
+    }
+
+    private void put(HashCode key, float[] embedding) throws IOException {
+        long length = recordLength(embedding.length);
+        if (end / REGION_SIZE != (end + length - 1) / REGION_SIZE) {
+            // pad the rest of the region, a record never crosses a region boundary
+            long next = nextRegion(end);
+            writeFully(channel, ByteBuffer.allocate((int) Math.min(next - end, RECORD_HEADER_SIZE)), end);
+            end = next;
+        }
+        ByteBuffer record = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN)
+                .put(key.asBytes())
+                .putInt(embedding.length)
+                .putInt(0);
+        record.asFloatBuffer().put(embedding);
+        record.putInt(KEY_SIZE + Integer.BYTES, checksum(record));
+        record.clear();
+        writeFully(channel, record, end);
+        offsets.put(key, end);
+        end += length;
+    }
+
+    public synchronized boolean contains(HashCode key) {
+        return offsets.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            throw new LangChainException("Failed to close embedding cache " + path, e);
+        }
+    }
+
+    /**
+     * Read the embedding of a record appended after its region was mapped.
+     */
+    private float[] read(long offset) {
+        try {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, offset);
+            ByteBuffer vector = ByteBuffer.allocate(header.getInt(KEY_SIZE) * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, vector, offset + RECORD_HEADER_SIZE);
+            float[] embedding = new float[vector.capacity() / Float.BYTES];
+            vector.clear();
+            vector.asFloatBuffer().get(embedding);
+            return embedding;
+        } catch (IOException e) {
+            throw new LangChainException("Failed to read embedding cache " + path, e);
+        }
+    }
+
+    /**
+     * Return the mapped region holding the record at the offset. The region is mapped up to the end of the file on
+     * first use and remapped once full, a record written in between lies past the end of the returned buffer.
+     */
+    private ByteBuffer region(long offset) {
+        int index = (int) (offset / REGION_SIZE);
+        while (regions.size() <= index) {
+            regions.add(null);
+        }
+        MappedByteBuffer region = regions.get(index);
+        long start = index * REGION_SIZE;
+        long limit = Math.min(end, start + REGION_SIZE);
+        if (region == null || region.capacity() < REGION_SIZE && limit == start + REGION_SIZE) {
+            try {
+                region = channel.map(FileChannel.MapMode.READ_ONLY, start, limit - start);
+            } catch (IOException e) {
+                throw new LangChainException("Failed to map embedding cache " + path, e);
+            }
+            region.order(ByteOrder.LITTLE_ENDIAN);
+            regions.set(index, region);
+        }
+        return region;
+    }
+
+    private static long nextRegion(long offset) {
+        return (offset / REGION_SIZE + 1) * REGION_SIZE;
+    }
+
+    private static long recordLength(int dimension) {
+        return RECORD_HEADER_SIZE + (long) dimension * Float.BYTES;
+    }
+
+    /**
+     * CRC32 of the key and the vector of the record, skipping the dimension and checksum fields.
+     */
+    private static int checksum(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate().position(0).limit(KEY_SIZE));
+        crc.update(record.duplicate().position(RECORD_HEADER_SIZE).limit(record.capacity()));
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file " + position);
+            }
+            position += read;
+        }
+    }
+}
@@ -19,52 +19,192 @@
 package com.hw.langchain.embeddings.ollama;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.Lists;
 import com.hw.langchain.chains.query.constructor.JsonUtils;
 import com.hw.langchain.embeddings.base.Embeddings;
-import com.hw.langchain.requests.TextRequestsWrapper;
+import com.hw.langchain.exception.LangChainException;
+import com.hw.langchain.requests.Requests;
+import com.hw.transport.HttpTransports;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.hw.langchain.math.utils.MathUtils.normalize;
+import static com.hw.langchain.utils.ThreadPoolUtil.BLOCKING_IO_EXECUTOR;
+import static com.hw.langchain.utils.ThreadPoolUtil.mapBounded;
 
 /**
+ * Embeddings served by a local Ollama instance.
+ * <p>
+ * Texts are sent in batches of {@code batchSize} to the {@code /api/embed} endpoint, with up to
+ * {@code maxConcurrency} batches in flight over the shared HTTP transport. Servers that predate the batch endpoint
+ * answer it with a plain 404, after which every text goes to the legacy {@code /api/embeddings} endpoint instead.
+ * The batch endpoint returns L2-normalized vectors while the legacy one returns them raw, set
+ * {@code normalizeLegacy} to normalize the legacy vectors too.
+ *
  * @author HamaWhite
  */
 @Builder
 @AllArgsConstructor
 public class OllamaEmbeddings implements Embeddings {
 
+    private static final int NOT_FOUND = 404;
+
     @Builder.Default
     private String baseUrl = "http://localhost:11434";
 
     @Builder.Default
     private String model = "llama2";
 
-    private TextRequestsWrapper requestsWrapper;
+    /**
+     * Maximum number of texts to embed in each request to the batch endpoint.
+     */
+    @Builder.Default
+    private int batchSize = 64;
+
+    /**
+     * Maximum number of requests in flight at once.
+     */
+    @Builder.Default
+    private int maxConcurrency = 4;
+
+    /**
+     * Read timeout of a single request, a large batch on a CPU-only host can take minutes.
+     */
+    @Builder.Default
+    private Duration requestTimeout = Duration.ofMinutes(5);
+
+    /**
+     * Whether to L2-normalize the vectors of the legacy endpoint like the batch endpoint does. Off by default, so
+     * they keep matching the vectors already stored from older servers.
+     */
+    @Builder.Default
+    private boolean normalizeLegacy = false;
+
+    /**
+     * The executor sending the batch requests to the Ollama server.
+     */
+    @Builder.Default
+    private Executor executor = BLOCKING_IO_EXECUTOR;
+
+    /**
+     * The requests created by {@link #init()}. As an initialized final field it is neither a builder property nor a
+     * constructor parameter, like {@link #batchSupported}.
+     */
+    private final AtomicReference<Requests> requests = new AtomicReference<>();
+
+    /**
+     * Whether the server exposes the batch endpoint, null until the first request tells.
+     */
+    private final AtomicReference<Boolean> batchSupported = new AtomicReference<>();
 
     public OllamaEmbeddings init() {
+        OkHttpClient client = HttpTransports.shared().newBuilder()
+                .readTimeout(requestTimeout)
+                .build();
         Map<String, String> headers = Map.of("Content-Type", "application/json");
-        this.requestsWrapper = new TextRequestsWrapper(headers);
+        requests.set(new Requests(headers, client));
         return this;
     }
 
     @Override
-    public List<List<Float>> embedDocuments(List<String> texts) {
-        return texts.stream().map(this::embeddings).toList();
+    public List<float[]> embedDocumentVectors(List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        return dispatch(Lists.partition(texts, batchSize));
     }
 
     @Override
-    public List<Float> embedQuery(String text) {
-        return embeddings(text);
+    public float[] embedQueryVector(String text) {
+        return embedBatch(List.of(text)).get(0);
+    }
+
+    /**
+     * Embed the batches with at most {@code maxConcurrency} of them in flight, keeping the input order.
+     */
+    private List<float[]> dispatch(List<List<String>> batches) {
+        if (batches.size() <= 1 || maxConcurrency <= 1) {
+            List<float[]> embeddings = new ArrayList<>();
+            batches.forEach(batch -> embeddings.addAll(embedBatch(batch)));
+            return embeddings;
+        }
+        try {
+            List<float[]> embeddings = new ArrayList<>();
+            mapBounded(batches, this::embedBatch, maxConcurrency, executor).forEach(embeddings::addAll);
+            return embeddings;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new LangChainException(e.getCause());
+        }
+    }
+
+    private List<float[]> embedBatch(List<String> batch) {
+        if (!Boolean.FALSE.equals(batchSupported.get())) {
+            List<float[]> embeddings = embed(batch);
+            if (embeddings != null) {
+                batchSupported.set(true);
+                return embeddings;
+            }
+            batchSupported.set(false);
+        }
+        return batch.stream().map(this::embeddings).toList();
     }
 
-    private List<Float> embeddings(String prompt) {
+    /**
+     * Embed the input with the batch endpoint, or return null if the server does not expose it.
+     */
+    private List<float[]> embed(List<String> input) {
+        Map<String, Object> body = Map.of("model", model, "input", input);
+        String response = post("/api/embed", body, true);
+        if (response == null) {
+            return null;
+        }
+        Map<String, List<float[]>> parsedResponse = JsonUtils.convertFromJsonStr(response, new TypeReference<>() {
+        });
+        return parsedResponse.get("embeddings");
+    }
+
+    /**
+     * Embed the prompt with the legacy endpoint, the vector is only normalized if {@code normalizeLegacy} is set.
+     */
+    private float[] embeddings(String prompt) {
         Map<String, Object> body = Map.of("model", model, "prompt", prompt);
-        String response = requestsWrapper.post(baseUrl + "/api/embeddings", body);
-        Map<String, List<Float>> parsedResponse = JsonUtils.convertFromJsonStr(response, new TypeReference<>() {
+        String response = post("/api/embeddings", body, false);
+        Map<String, float[]> parsedResponse = JsonUtils.convertFromJsonStr(response, new TypeReference<>() {
         });
-        return parsedResponse.get("embedding");
+        float[] embedding = parsedResponse.get("embedding");
+        return normalizeLegacy ? normalize(embedding) : embedding;
+    }
+
+    /**
+     * Post the body and return the response text. An unknown route answers with a plain-text 404, whereas a
+     * missing model answers with a JSON error, so only the former yields null when {@code optional} is set.
+     */
+    private String post(String path, Map<String, Object> body, boolean optional) {
+        try (Response response = requests.get().post(baseUrl + path, body)) {
+            ResponseBody responseBody = response.body();
+            String text = responseBody != null ? responseBody.string() : "";
+            if (response.isSuccessful()) {
+                return text;
+            }
+            if (optional && response.code() == NOT_FOUND && !text.strip().startsWith("{")) {
+                return null;
+            }
+            throw new LangChainException("Failed with status code %d. messages: %s", response.code(), text);
+        } catch (IOException e) {
+            throw new LangChainException("An error occurred while performing POST request.", e);
+        }
     }
 }
@@ -18,26 +18,42 @@
 
 package com.hw.langchain.embeddings.openai;
 
-import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Floats;
 import com.hw.langchain.embeddings.base.Embeddings;
 import com.hw.langchain.exception.LangChainException;
+import com.hw.langchain.utils.TokenBucket;
 import com.hw.openai.OpenAiClient;
 import com.hw.openai.common.OpenaiApiType;
+import com.hw.openai.common.RateLimits;
 import com.hw.openai.entity.embeddings.Embedding;
+import com.hw.openai.entity.embeddings.EmbeddingData;
 import com.hw.openai.entity.embeddings.EmbeddingResp;
+import com.hw.openai.exception.OpenAiException;
 import com.knuddels.jtokkit.Encodings;
 import com.knuddels.jtokkit.api.Encoding;
 
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.IntStream;
 
+import static com.hw.langchain.math.utils.MathUtils.normalize;
+import static com.hw.langchain.math.utils.MathUtils.weightedAverage;
+import static com.hw.langchain.utils.ThreadPoolUtil.BLOCKING_IO_EXECUTOR;
+import static com.hw.langchain.utils.ThreadPoolUtil.mapBounded;
 import static com.hw.langchain.utils.Utils.getOrEnvOrDefault;
 
 /**
@@ -52,6 +68,10 @@ import static com.hw.langchain.utils.Utils.getOrEnvOrDefault;
 @AllArgsConstructor
 public class OpenAIEmbeddings implements Embeddings {
 
+    private static final Logger LOG = LoggerFactory.getLogger(OpenAIEmbeddings.class);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
     private OpenAiClient client;
 
     @Builder.Default
@@ -82,6 +102,61 @@ public class OpenAIEmbeddings implements Embeddings {
     @Builder.Default
     private int chunkSize = 1000;
 
+    /**
+     * Maximum number of tokens of all the inputs of a single request, batches are packed up to this budget.
+     */
+    @Builder.Default
+    private int maxTokensPerRequest = 300000;
+
+    /**
+     * Minimum number of texts tokenized in parallel on the common pool, smaller inputs are tokenized in the caller.
+     */
+    @Builder.Default
+    private int parallelTokenizationThreshold = 64;
+
+    /**
+     * Wire format of the returned embeddings, base64 is several times smaller than decimal JSON and decodes without
+     * parsing numbers. Set to null for OpenAI-compatible servers that reject the parameter.
+     */
+    @Builder.Default
+    private String encodingFormat = "base64";
+
+    /**
+     * Tokenizer of the model, resolved on first use and shared by all calls of this instance. As an initialized
+     * final field it is neither a builder property nor a constructor parameter.
+     */
+    private final AtomicReference<Encoding> encoding = new AtomicReference<>();
+
+    /**
+     * Maximum number of embedding requests in flight.
+     */
+    @Builder.Default
+    private int maxConcurrency = 4;
+
+    /**
+     * Requests per minute allowed for the model, enforced on the client and adjusted by the rate limit headers.
+     */
+    @Builder.Default
+    private long requestsPerMinute = 3000;
+
+    /**
+     * Tokens per minute allowed for the model, enforced on the client and adjusted by the rate limit headers.
+     */
+    @Builder.Default
+    private long tokensPerMinute = 1000000;
+
+    /**
+     * The executor dispatching the embedding batches while they wait for the rate limiters and the API.
+     */
+    @Builder.Default
+    private Executor executor = BLOCKING_IO_EXECUTOR;
+
+    /**
+     * Request and token limiters, created on first use. As an initialized final field they are neither builder
+     * properties nor constructor parameters.
+     */
+    private final AtomicReference<Limiters> limiters = new AtomicReference<>();
+
     /**
      * Maximum number of retries to make when generating.
      */
@@ -112,48 +187,105 @@ public class OpenAIEmbeddings implements Embeddings {
                 .openaiOrganization(openaiOrganization)
                 .openaiProxy(openaiProxy)
                 .requestTimeout(requestTimeout)
+                .rateLimitListener(this::updateRateLimits)
                 .build()
                 .init();
         return this;
     }
 
+    private record Limiters(TokenBucket requests, TokenBucket tokens) {
+    }
+
+    private Limiters limiters() {
+        Limiters current = limiters.get();
+        if (current == null) {
+            limiters.compareAndSet(null,
+                    new Limiters(new TokenBucket(requestsPerMinute), new TokenBucket(tokensPerMinute)));
+            current = limiters.get();
+        }
+        return current;
+    }
+
+    /**
+     * Align the limiters with the rate limits the server reported, which account for all clients of the key.
+     */
+    private void updateRateLimits(RateLimits rateLimits) {
+        Limiters current = limiters();
+        if (rateLimits.getRemainingRequests() != null) {
+            current.requests().update(rateLimits.getRemainingRequests(), rateLimits.getResetRequests());
+        }
+        if (rateLimits.getRemainingTokens() != null) {
+            current.tokens().update(rateLimits.getRemainingTokens(), rateLimits.getResetTokens());
+        }
+    }
+
+    private Encoding getEncoding() {
+        Encoding current = encoding.get();
+        if (current == null) {
+            current = Encodings.newDefaultEncodingRegistry()
+                    .getEncodingForModel(model)
+                    .orElseThrow(() -> new LangChainException("Encoding not found."));
+            encoding.compareAndSet(null, current);
+        }
+        return current;
+    }
+
+    private String preprocess(String text) {
+        if (model.endsWith("001")) {
+            // See https://github.com/openai/openai-python/issues/418#issuecomment-1525939500
+            // replace newlines, which can negatively affect performance.
+            text = text.replace("\n", " ");
+        }
+        return text;
+    }
+
+    private List<Integer> tokenize(String text) {
+        return getEncoding().encode(preprocess(text));
+    }
+
     /**
      * <a href="https://github.com/openai/openai-cookbook/blob/main/examples/Embedding_long_inputs.ipynb">Embedding texts that are longer than the model's maximum context length</a>
      */
-    private List<List<Float>> getLenSafeEmbeddings(List<String> texts) {
-        List<List<Float>> embeddings = new ArrayList<>(texts.size());
+    private List<float[]> getLenSafeEmbeddings(List<String> texts) {
+        Chunks chunks = chunk(texts);
+        return combine(texts.size(), chunks, dispatch(packBatches(chunks.tokens())));
+    }
+
+    /**
+     * Token chunks of at most {@code embeddingCtxLength} tokens, with the index of the text each chunk belongs to.
+     */
+    record Chunks(List<List<Integer>> tokens, List<Integer> indices) {
+    }
+
+    Chunks chunk(List<String> texts) {
+        IntStream range = IntStream.range(0, texts.size());
+        if (texts.size() >= parallelTokenizationThreshold) {
+            range = range.parallel();
+        }
+        List<List<Integer>> textTokens = range.mapToObj(i -> tokenize(texts.get(i))).toList();
 
         List<List<Integer>> tokens = new ArrayList<>();
         List<Integer> indices = new ArrayList<>();
-        Encoding encoding = Encodings.newDefaultEncodingRegistry()
-                .getEncodingForModel(model)
-                .orElseThrow(() -> new LangChainException("Encoding not found."));
-
         for (int i = 0; i < texts.size(); i++) {
-            String text = texts.get(i);
-            if (model.endsWith("001")) {
-                // See https://github.com/openai/openai-python/issues/418#issuecomment-1525939500
-                // replace newlines, which can negatively affect performance.
-                text = text.replace("\n", " ");
-            }
-            List<Integer> token = encoding.encode(text);
+            List<Integer> token = textTokens.get(i);
             for (int j = 0; j < token.size(); j += embeddingCtxLength) {
                 tokens.add(token.subList(j, Math.min(j + embeddingCtxLength, token.size())));
                 indices.add(i);
             }
         }
+        return new Chunks(tokens, indices);
+    }
 
-        List<List<Float>> batchedEmbeddings = new ArrayList<>();
-        for (int i = 0; i < tokens.size(); i += chunkSize) {
-            List<?> input = tokens.subList(i, Math.min(i + chunkSize, tokens.size()));
-            var response = embedWithRetry(input);
-            response.getData().forEach(result -> batchedEmbeddings.add(result.getEmbedding()));
-        }
-
-        List<? extends List<List<Float>>> results = IntStream.range(0, texts.size())
-                .mapToObj(i -> new ArrayList<List<Float>>())
+    /**
+     * Average the embeddings of the chunks of each text, weighted by their number of tokens.
+     */
+    private List<float[]> combine(int size, Chunks chunks, List<float[]> batchedEmbeddings) {
+        List<List<Integer>> tokens = chunks.tokens();
+        List<Integer> indices = chunks.indices();
+        List<? extends List<float[]>> results = IntStream.range(0, size)
+                .mapToObj(i -> new ArrayList<float[]>())
                 .toList();
-        List<? extends List<Integer>> numTokensInBatch = IntStream.range(0, texts.size())
+        List<? extends List<Integer>> numTokensInBatch = IntStream.range(0, size)
                 .mapToObj(i -> new ArrayList<Integer>())
                 .toList();
         for (int i = 0; i < indices.size(); i++) {
@@ -162,33 +294,119 @@ public class OpenAIEmbeddings implements Embeddings {
             numTokensInBatch.get(index).add(tokens.get(i).size());
         }
 
-        for (int i = 0; i < texts.size(); i++) {
-            INDArray average;
-            try (INDArray resultArray =
-                    Nd4j.create(results.get(i).stream().map(Floats::toArray).toArray(float[][]::new))) {
-                INDArray weightsArray = Nd4j.create(Doubles.toArray(numTokensInBatch.get(i)));
-                average = resultArray.mulRowVector(weightsArray).sum(0).div(weightsArray.sum(0));
-            }
-            INDArray normalizedAverage = average.div(average.norm2Number());
-            embeddings.add(Floats.asList(normalizedAverage.toFloatVector()));
+        List<float[]> embeddings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            float[] average = weightedAverage(results.get(i), Floats.toArray(numTokensInBatch.get(i)));
+            embeddings.add(normalize(average));
         }
         return embeddings;
     }
 
     /**
-     * Call out to OpenAI's embedding endpoint.
+     * Split the token chunks into consecutive batches of at most {@code chunkSize} inputs and
+     * {@code maxTokensPerRequest} tokens, a chunk never exceeds the budget as it is capped to the context length.
+     */
+    List<List<List<Integer>>> packBatches(List<List<Integer>> tokens) {
+        List<List<List<Integer>>> batches = new ArrayList<>();
+        int start = 0;
+        int batchTokens = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            int size = tokens.get(i).size();
+            if (i > start && (i - start == chunkSize || batchTokens + size > maxTokensPerRequest)) {
+                batches.add(tokens.subList(start, i));
+                start = i;
+                batchTokens = 0;
+            }
+            batchTokens += size;
+        }
+        if (start < tokens.size()) {
+            batches.add(tokens.subList(start, tokens.size()));
+        }
+        return batches;
+    }
+
+    /**
+     * Embed the batches with up to {@code maxConcurrency} requests in flight, the embeddings are returned in the
+     * order of the batches.
+     */
+    private List<float[]> dispatch(List<List<List<Integer>>> batches) {
+        if (batches.size() <= 1 || maxConcurrency <= 1) {
+            List<float[]> embeddings = new ArrayList<>();
+            batches.forEach(batch -> embeddings.addAll(embedBatch(batch)));
+            return embeddings;
+        }
+        try {
+            List<float[]> embeddings = new ArrayList<>();
+            mapBounded(batches, this::embedBatch, maxConcurrency, executor).forEach(embeddings::addAll);
+            return embeddings;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new LangChainException(e.getCause());
+        }
+    }
+
+    private List<float[]> embedBatch(List<List<Integer>> batch) {
+        return embedLimited(batch, batch.stream().mapToInt(List::size).sum());
+    }
+
+    /**
+     * Embed the input once the limiters grant its request and tokens. A rate limited request is retried after the
+     * limiters were aligned with the headers of the 429 response, instead of an exponential backoff.
+     */
+    private List<float[]> embedLimited(List<?> input, int inputTokens) {
+        Limiters current = limiters();
+        for (int attempt = 1;; attempt++) {
+            current.requests().acquire(1);
+            current.tokens().acquire(inputTokens);
+            try {
+                return embedWithRetry(input).getData().stream()
+                        .map(EmbeddingData::getEmbeddingArray)
+                        .toList();
+            } catch (OpenAiException e) {
+                if (e.statusCode != TOO_MANY_REQUESTS || attempt >= maxRetries) {
+                    throw e;
+                }
+                LOG.warn("Rate limited on attempt #{}, waiting for the rate limit: {}", attempt, e.getMessage());
+            }
+        }
+    }
+
+    private Mono<List<float[]>> embedBatchAsync(List<List<Integer>> batch) {
+        return embedLimitedAsync(batch, batch.stream().mapToInt(List::size).sum());
+    }
+
+    /**
+     * Asynchronous version of {@link #embedLimited(List, int)}, the limiter waits are scheduled instead of slept and
+     * no thread is held while the request is in flight.
      */
-    public List<Float> embeddingFunc(String text) {
+    private Mono<List<float[]>> embedLimitedAsync(List<?> input, int inputTokens) {
+        Mono<EmbeddingResp> request = Mono.defer(() -> {
+            Limiters current = limiters();
+            long waitNanos = Math.max(current.requests().reserve(1), current.tokens().reserve(inputTokens));
+            return Mono.delay(Duration.ofNanos(waitNanos))
+                    .then(Mono.fromFuture(() -> client.createEmbeddingAsync(buildEmbedding(input))));
+        });
+        return request
+                .retryWhen(Retry.max(maxRetries - 1L)
+                        .filter(e -> e instanceof OpenAiException openAiException
+                                && openAiException.statusCode == TOO_MANY_REQUESTS)
+                        .doBeforeRetry(signal -> LOG.warn("Rate limited on attempt #{}, waiting for the rate limit: {}",
+                                signal.totalRetries() + 1, signal.failure().getMessage()))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .map(response -> response.getData().stream()
+                        .map(EmbeddingData::getEmbeddingArray)
+                        .toList());
+    }
+
+    /**
+     * Call out to OpenAI's embedding endpoint, under the same rate limits as the documents. A text within the context
+     * length is sent as a string, which OpenAI-compatible servers without token input accept as well.
+     */
+    public float[] embeddingFunc(String text) {
         if (text.length() > embeddingCtxLength) {
             return getLenSafeEmbeddings(List.of(text)).get(0);
-        } else {
-            if (model.endsWith("001")) {
-                // See: https://github.com/openai/openai-python/issues/418#issuecomment-1525939500
-                // replace newlines, which can negatively affect performance.
-                text = text.replace("\n", " ");
-            }
-            return embedWithRetry(List.of(text)).getData().get(0).getEmbedding();
         }
+        String input = preprocess(text);
+        return embedLimited(List.of(input), getEncoding().countTokens(input)).get(0);
     }
 
     /**
@@ -198,7 +416,7 @@ public class OpenAIEmbeddings implements Embeddings {
      * @return List of embeddings, one for each text.
      */
     @Override
-    public List<List<Float>> embedDocuments(List<String> texts) {
+    public List<float[]> embedDocumentVectors(List<String> texts) {
         // NOTE: to keep things simple, we assume the list may contain texts longer
         // than the maximum context and use length-safe embedding function.
         return this.getLenSafeEmbeddings(texts);
@@ -211,15 +429,49 @@ public class OpenAIEmbeddings implements Embeddings {
      * @return Embedding for the text.
      */
     @Override
-    public List<Float> embedQuery(String text) {
+    public float[] embedQueryVector(String text) {
         return embeddingFunc(text);
     }
 
+    /**
+     * Embed the texts without blocking, with up to {@code maxConcurrency} requests in flight under the same rate
+     * limits as {@link #embedDocumentVectors(List)}.
+     */
+    @Override
+    public Mono<List<float[]>> embedDocumentsAsync(List<String> texts) {
+        return Mono.fromCallable(() -> chunk(texts))
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(chunks -> Flux.fromIterable(packBatches(chunks.tokens()))
+                        .flatMapSequential(this::embedBatchAsync, maxConcurrency)
+                        .concatMapIterable(Function.identity())
+                        .collectList()
+                        .map(embeddings -> combine(texts.size(), chunks, embeddings)));
+    }
+
+    /**
+     * Asynchronous version of {@link #embeddingFunc(String)}.
+     */
+    @Override
+    public Mono<float[]> embedQueryAsync(String text) {
+        if (text.length() > embeddingCtxLength) {
+            return embedDocumentsAsync(List.of(text)).map(embeddings -> embeddings.get(0));
+        }
+        String input = preprocess(text);
+        return Mono.fromCallable(() -> getEncoding().countTokens(input))
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(inputTokens -> embedLimitedAsync(List.of(input), inputTokens))
+                .map(embeddings -> embeddings.get(0));
+    }
+
     public EmbeddingResp embedWithRetry(List<?> input) {
-        var embedding = Embedding.builder()
+        return client.createEmbedding(buildEmbedding(input));
+    }
+
+    private Embedding buildEmbedding(List<?> input) {
+        return Embedding.builder()
                 .model(model)
                 .input(input)
+                .encodingFormat(encodingFormat)
                 .build();
-        return client.createEmbedding(embedding);
     }
 }
@@ -26,6 +26,8 @@ import com.hw.langchain.schema.PromptValue;
 
 import lombok.experimental.SuperBuilder;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 
@@ -50,6 +52,14 @@ public abstract class BaseLLM implements BaseLanguageModel {
      */
     protected abstract Flux<AsyncLLMResult> asyncInnerGenerate(List<String> prompts, List<String> stop);
 
+    /**
+     * Run the LLM on the given prompts without blocking the caller, by default on
+     * {@link Schedulers#boundedElastic()}. LLMs with a non-blocking client should override it.
+     */
+    protected Mono<LLMResult> innerGenerateAsync(List<String> prompts, List<String> stop) {
+        return Mono.fromCallable(() -> innerGenerate(prompts, stop)).subscribeOn(Schedulers.boundedElastic());
+    }
+
     /**
      * Check Cache and run the LLM on the given prompt and input.
      */
@@ -68,6 +78,13 @@ public abstract class BaseLLM implements BaseLanguageModel {
         return innerGenerate(prompts, stop);
     }
 
+    /**
+     * Asynchronous version of {@link #generate(List, List)}, emitting the full result once all prompts are done.
+     */
+    public Mono<LLMResult> generateAsync(List<String> prompts, List<String> stop) {
+        return innerGenerateAsync(prompts, stop);
+    }
+
     @Override
     public LLMResult generatePrompt(List<PromptValue> prompts, List<String> stop) {
         List<String> promptStrings = prompts.stream()
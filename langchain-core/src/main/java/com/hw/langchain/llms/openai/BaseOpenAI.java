@@ -18,6 +18,7 @@
 
 package com.hw.langchain.llms.openai;
 
+import com.hw.langchain.exception.LangChainException;
 import com.hw.langchain.llms.base.BaseLLM;
 import com.hw.langchain.schema.AsyncLLMResult;
 import com.hw.langchain.schema.Generation;
@@ -35,8 +36,12 @@ import lombok.experimental.SuperBuilder;
 import okhttp3.Interceptor;
 import reactor.adapter.rxjava.RxJava2Adapter;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.hw.langchain.utils.Resilience4jRetryUtils.retryWithExponentialBackoff;
@@ -182,6 +187,20 @@ public class BaseOpenAI extends BaseLLM {
      */
     protected List<Interceptor> interceptorList;
 
+    /**
+     * Whether to coalesce the prompts of concurrent calls with the same stop words into batched requests of up to
+     * {@code batchSize} prompts, trading up to {@code maxBatchDelay} of latency for fewer requests under load.
+     */
+    protected boolean coalesceRequests;
+
+    /**
+     * How long the first prompt of a coalesced request waits for the prompts of other calls.
+     */
+    @Builder.Default
+    protected Duration maxBatchDelay = Duration.ofMillis(5);
+
+    private CompletionCoalescer coalescer;
+
     @Override
     public String llmType() {
         return "openai";
@@ -196,6 +215,13 @@ public class BaseOpenAI extends BaseLLM {
      */
     @Override
     protected LLMResult innerGenerate(List<String> prompts, List<String> stop) {
+        if (isCoalesced(prompts)) {
+            try {
+                return createLlmResult(getCoalescer().submit(prompts, stop).join(), prompts, Map.of());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new LangChainException(e.getCause());
+            }
+        }
         List<Choice> choices = new ArrayList<>();
         List<List<String>> subPrompts = getSubPrompts(prompts);
         Completion completion = buildCompletion(stop);
@@ -210,6 +236,49 @@ public class BaseOpenAI extends BaseLLM {
         return createLlmResult(choices, prompts, Map.of());
     }
 
+    /**
+     * Call out to OpenAI's endpoint with the sub-prompts in flight concurrently, without holding a thread per
+     * request. Failed requests are retried with the same exponential backoff as the blocking version.
+     */
+    @Override
+    protected Mono<LLMResult> innerGenerateAsync(List<String> prompts, List<String> stop) {
+        if (isCoalesced(prompts)) {
+            return Mono.fromFuture(() -> getCoalescer().submit(prompts, stop))
+                    .map(choices -> createLlmResult(choices, prompts, Map.of()));
+        }
+        return Flux.fromIterable(getSubPrompts(prompts))
+                .flatMapSequential(prompt -> completeAsync(prompt, stop))
+                .concatMapIterable(CompletionResp::getChoices)
+                .collectList()
+                .map(choices -> createLlmResult(choices, prompts, Map.of()));
+    }
+
+    private Mono<CompletionResp> completeAsync(List<String> prompts, List<String> stop) {
+        Completion completion = buildCompletion(stop);
+        completion.setPrompt(prompts);
+        return Mono.fromFuture(() -> client.createCompletionAsync(completion))
+                .retryWhen(Retry.backoff(maxRetries - 1L, Duration.ofSeconds(4))
+                        .maxBackoff(Duration.ofSeconds(16))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /**
+     * Whether the prompts go through the coalescer, which needs them to fit one request and the maximum number of
+     * tokens not to depend on the prompt.
+     */
+    private boolean isCoalesced(List<String> prompts) {
+        return coalesceRequests && maxTokens != -1 && prompts.size() <= batchSize;
+    }
+
+    private synchronized CompletionCoalescer getCoalescer() {
+        if (coalescer == null) {
+            coalescer = new CompletionCoalescer(
+                    (prompts, stop) -> completeAsync(prompts, stop).map(CompletionResp::getChoices).toFuture(),
+                    batchSize, n, maxBatchDelay);
+        }
+        return coalescer;
+    }
+
     @Override
     protected Flux<AsyncLLMResult> asyncInnerGenerate(List<String> prompts, List<String> stop) {
         Completion completion = buildCompletion(stop);
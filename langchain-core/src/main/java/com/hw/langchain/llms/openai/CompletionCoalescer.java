@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.llms.openai;
+
+import com.hw.langchain.exception.LangChainException;
+import com.hw.openai.entity.completions.Choice;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Coalesces the prompts of concurrent callers into batched completion requests.
+ * <p>
+ * The prompts submitted with the same stop words within {@code maxDelay} of the first one are sent as one request,
+ * which is sent early once it holds {@code maxPrompts} prompts. The choices of the response are handed back to each
+ * caller in the order of its prompts, {@code n} per prompt, and a failed request fails all of its callers.
+ *
+ * @author HamaWhite
+ */
+public class CompletionCoalescer {
+
+    private final BiFunction<List<String>, List<String>, CompletableFuture<List<Choice>>> sender;
+
+    private final int maxPrompts;
+
+    private final int n;
+
+    private final Executor delayedExecutor;
+
+    /**
+     * Batches collecting prompts, keyed by their stop words.
+     */
+    private final Map<List<String>, Batch> pending = new HashMap<>();
+
+    /**
+     * @param sender     sends the prompts with the stop words and returns the choices of the response
+     * @param maxPrompts maximum number of prompts of a request
+     * @param n          number of choices generated per prompt
+     * @param maxDelay   how long the first prompt of a batch waits for others
+     */
+    public CompletionCoalescer(BiFunction<List<String>, List<String>, CompletableFuture<List<Choice>>> sender,
+            int maxPrompts, int n, Duration maxDelay) {
+        this.sender = sender;
+        this.maxPrompts = maxPrompts;
+        this.n = n;
+        this.delayedExecutor = CompletableFuture.delayedExecutor(maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Add the prompts to the batch of their stop words.
+     *
+     * @param prompts at most {@code maxPrompts} prompts
+     * @param stop    list of stop words to use when generating, may be null
+     * @return a future of the {@code n} choices of each prompt, in the order of the prompts
+     */
+    public CompletableFuture<List<Choice>> submit(List<String> prompts, List<String> stop) {
+        List<String> key = Objects.requireNonNullElse(stop, List.of());
+        CompletableFuture<List<Choice>> future = new CompletableFuture<>();
+        List<Batch> ready = new ArrayList<>(2);
+        synchronized (pending) {
+            Batch batch = pending.get(key);
+            if (batch != null && batch.prompts.size() + prompts.size() > maxPrompts) {
+                pending.remove(key);
+                ready.add(batch);
+                batch = null;
+            }
+            if (batch == null) {
+                Batch created = new Batch(stop);
+                pending.put(key, created);
+                CompletableFuture.runAsync(() -> flush(key, created), delayedExecutor);
+                batch = created;
+            }
+            batch.add(prompts, future);
+            if (batch.prompts.size() >= maxPrompts) {
+                pending.remove(key);
+                ready.add(batch);
+            }
+        }
+        ready.forEach(this::send);
+        return future;
+    }
+
+    private void flush(List<String> key, Batch batch) {
+        synchronized (pending) {
+            if (!pending.remove(key, batch)) {
+                // already sent because it was full
+                return;
+            }
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        CompletableFuture<List<Choice>> response;
+        try {
+            response = sender.apply(batch.prompts, batch.stop);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((choices, e) -> {
+            if (e != null) {
+                batch.callers.forEach(caller -> caller.future.completeExceptionally(e));
+                return;
+            }
+            if (choices.size() != batch.prompts.size() * n) {
+                LangChainException error = new LangChainException("Expected %d choices for %d prompts, got %d.",
+                        batch.prompts.size() * n, batch.prompts.size(), choices.size());
+                batch.callers.forEach(caller -> caller.future.completeExceptionally(error));
+                return;
+            }
+            List<Choice> ordered = new ArrayList<>(choices);
+            ordered.sort(Comparator.comparing(Choice::getIndex, Comparator.nullsLast(Comparator.naturalOrder())));
+            for (Caller caller : batch.callers) {
+                caller.future.complete(ordered.subList(caller.offset * n, (caller.offset + caller.count) * n));
+            }
+        });
+    }
+
+    private record Caller(int offset, int count, CompletableFuture<List<Choice>> future) {
+    }
+
+    private static class Batch {
+
+        private final List<String> stop;
+
+        private final List<String> prompts = new ArrayList<>();
+
+        private final List<Caller> callers = new ArrayList<>();
+
+        private Batch(List<String> stop) {
+            this.stop = stop;
+        }
+
+        private void add(List<String> callerPrompts, CompletableFuture<List<Choice>> future) {
+            callers.add(new Caller(prompts.size(), callerPrompts.size(), future));
+            prompts.addAll(callerPrompts);
+        }
+    }
+}
@@ -18,51 +18,194 @@
 
 package com.hw.langchain.math.utils;
 
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
+import com.google.common.primitives.Floats;
 
 import java.util.Arrays;
 import java.util.List;
 
-import static com.hw.langchain.vectorstores.utils.ArrayUtils.listToArray;
-import static org.nd4j.linalg.ops.transforms.Transforms.allCosineSimilarities;
-
 /**
- * Math utils.
+ * Math utils on primitive float arrays.
+ * <p>
+ * The kernels use the incubating Vector API when the {@code jdk.incubator.vector} module is
+ * resolved, e.g. {@code --add-modules jdk.incubator.vector}, and fall back to scalar loops otherwise.
  *
  * @author HamaWhite
  */
 public class MathUtils {
 
+    /**
+     * Vectors shorter than this are scored with the scalar loop, the SIMD setup does not pay off for them.
+     */
+    private static final int VECTOR_API_THRESHOLD = 32;
+
+    private static final boolean VECTOR_API_AVAILABLE =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
     private MathUtils() {
     }
 
     /**
      * Row-wise cosine similarity between two equal-width matrices.
      */
-    public static INDArray cosineSimilarity(List<List<Float>> X, INDArray yArray) {
-        return cosineSimilarity(Nd4j.createFromArray(listToArray(X)), yArray);
+    public static float[][] cosineSimilarity(List<List<Float>> X, List<List<Float>> Y) {
+        return cosineSimilarity(toMatrix(X), toMatrix(Y));
     }
 
     /**
      * Row-wise cosine similarity between two equal-width matrices.
+     *
+     * @return matrix where element (i, j) is the cosine similarity between row i of X and row j of Y
      */
-    public static INDArray cosineSimilarity(INDArray xArray, List<List<Float>> Y) {
-        return cosineSimilarity(xArray, Nd4j.createFromArray(listToArray(Y)));
+    public static float[][] cosineSimilarity(float[][] X, float[][] Y) {
+        if (X.length == 0 || Y.length == 0) {
+            return new float[0][0];
+        }
+        if (X[0].length != Y[0].length) {
+            throw new IllegalArgumentException(
+                    String.format("Number of columns in X and Y must be the same. X has shape %s and Y has shape %s.",
+                            Arrays.toString(new int[] {X.length, X[0].length}),
+                            Arrays.toString(new int[] {Y.length, Y[0].length})));
+        }
+        float[][] normalizedY = Arrays.stream(Y).map(MathUtils::normalize).toArray(float[][]::new);
+        float[][] similarity = new float[X.length][];
+        for (int i = 0; i < X.length; i++) {
+            similarity[i] = dotProduct(normalizedY, normalize(X[i]));
+        }
+        return similarity;
     }
 
     /**
-     * Row-wise cosine similarity between two equal-width matrices.
+     * Cosine similarity between each row of the matrix and the vector.
      */
-    public static INDArray cosineSimilarity(INDArray xArray, INDArray yArray) {
-        if (xArray.isEmpty() || yArray.isEmpty()) {
-            return Nd4j.create(new float[0][0]);
+    public static float[] cosineSimilarity(float[][] matrix, float[] vector) {
+        float[] normalized = normalize(vector);
+        float[] similarity = new float[matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            checkDimension(matrix[i].length, vector.length);
+            float norm = norm(matrix[i]);
+            similarity[i] = norm > 0.0f ? dotProduct(matrix[i], 0, normalized, 0, vector.length) / norm : 0.0f;
         }
-        if (xArray.shape()[1] != yArray.shape()[1]) {
+        return similarity;
+    }
+
+    /**
+     * Cosine similarity between two vectors, 0 if either of them is a zero vector.
+     */
+    public static float cosineSimilarity(float[] a, float[] b) {
+        checkDimension(a.length, b.length);
+        float normProduct = norm(a) * norm(b);
+        return normProduct > 0.0f ? dotProduct(a, 0, b, 0, a.length) / normProduct : 0.0f;
+    }
+
+    /**
+     * Dot product between each row of the matrix and the vector.
+     */
+    public static float[] dotProduct(float[][] matrix, float[] vector) {
+        float[] result = new float[matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            checkDimension(matrix[i].length, vector.length);
+            result[i] = dotProduct(matrix[i], 0, vector, 0, vector.length);
+        }
+        return result;
+    }
+
+    /**
+     * Weighted average of equal-length vectors.
+     *
+     * @param vectors the vectors to average
+     * @param weights one weight per vector
+     * @return the component-wise weighted average
+     */
+    public static float[] weightedAverage(List<float[]> vectors, float[] weights) {
+        if (vectors.isEmpty() || vectors.size() != weights.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Expected a non-empty list of vectors with one weight each, got %d vectors and %d weights.",
+                    vectors.size(), weights.length));
+        }
+        int dimension = vectors.get(0).length;
+        float[] sum = new float[dimension];
+        float totalWeight = 0.0f;
+        for (int i = 0; i < vectors.size(); i++) {
+            float[] vector = vectors.get(i);
+            checkDimension(vector.length, dimension);
+            for (int j = 0; j < dimension; j++) {
+                sum[j] += vector[j] * weights[i];
+            }
+            totalWeight += weights[i];
+        }
+        for (int j = 0; j < dimension; j++) {
+            sum[j] /= totalWeight;
+        }
+        return sum;
+    }
+
+    /**
+     * Dot product of two vectors stored in primitive arrays.
+     */
+    public static float dotProduct(float[] a, float[] b) {
+        checkDimension(a.length, b.length);
+        return dotProduct(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Dot product of {@code length} components starting at the given offsets, which allows vectors packed
+     * contiguously into a single array to be scored without copying.
+     */
+    public static float dotProduct(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        if (VECTOR_API_AVAILABLE && length >= VECTOR_API_THRESHOLD) {
+            return VectorApiMathUtils.dotProduct(a, aOffset, b, bOffset, length);
+        }
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * Squared euclidean distance of {@code length} components starting at the given offsets.
+     */
+    public static float squaredEuclideanDistance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        if (VECTOR_API_AVAILABLE && length >= VECTOR_API_THRESHOLD) {
+            return VectorApiMathUtils.squaredEuclideanDistance(a, aOffset, b, bOffset, length);
+        }
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Euclidean norm of the vector.
+     */
+    public static float norm(float[] a) {
+        return (float) Math.sqrt(dotProduct(a, 0, a, 0, a.length));
+    }
+
+    /**
+     * Return a copy of the vector scaled to unit length, a zero vector is returned as it is.
+     */
+    public static float[] normalize(float[] a) {
+        float[] result = a.clone();
+        float norm = norm(a);
+        if (norm > 0.0f) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] /= norm;
+            }
+        }
+        return result;
+    }
+
+    private static float[][] toMatrix(List<List<Float>> list) {
+        return list.stream().map(Floats::toArray).toArray(float[][]::new);
+    }
+
+    private static void checkDimension(int aLength, int bLength) {
+        if (aLength != bLength) {
             throw new IllegalArgumentException(
-                    String.format("Number of columns in X and Y must be the same. X has shape %s and Y has shape %s.",
-                            Arrays.toString(xArray.shape()), Arrays.toString(yArray.shape())));
+                    String.format("Vectors must have the same dimension, got %d and %d.", aLength, bLength));
         }
-        return allCosineSimilarities(xArray, yArray, xArray.rank() - 1);
     }
 }
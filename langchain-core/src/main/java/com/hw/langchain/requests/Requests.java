@@ -19,6 +19,7 @@
 package com.hw.langchain.requests;
 
 import com.google.gson.Gson;
+import com.hw.transport.HttpTransports;
 
 import okhttp3.*;
 
@@ -39,8 +40,16 @@ public class Requests {
     private final OkHttpClient client;
 
     public Requests(Map<String, String> headers) {
+        this(headers, HttpTransports.shared());
+    }
+
+    /**
+     * Create a wrapper that sends its requests through the given client, so that callers issuing many requests
+     * share one connection pool instead of opening new connections per request.
+     */
+    public Requests(Map<String, String> headers, OkHttpClient client) {
         this.headers = headers;
-        this.client = new OkHttpClient();
+        this.client = client;
     }
 
     private Request buildRequest(String url, RequestBody body, String method) {
@@ -20,6 +20,7 @@ package com.hw.langchain.requests;
 
 import com.hw.langchain.exception.LangChainException;
 
+import okhttp3.OkHttpClient;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 
@@ -34,10 +35,14 @@ import java.util.Map;
  */
 public class TextRequestsWrapper {
 
-    private final Map<String, String> headers;
+    private final Requests requests;
 
     public TextRequestsWrapper(Map<String, String> headers) {
-        this.headers = headers;
+        this.requests = new Requests(headers);
+    }
+
+    public TextRequestsWrapper(Map<String, String> headers, OkHttpClient client) {
+        this.requests = new Requests(headers, client);
     }
 
     /**
@@ -90,6 +95,6 @@ public class TextRequestsWrapper {
     }
 
     private Requests getRequests() {
-        return new Requests(headers);
+        return requests;
     }
 }
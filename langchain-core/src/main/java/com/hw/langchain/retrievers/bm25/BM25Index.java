@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.retrievers.bm25;
+
+import com.hw.langchain.vectorstores.utils.NeighborQueue;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+/**
+ * Immutable inverted index scoring documents with Okapi BM25.
+ * <p>
+ * Each term maps to a posting list of (document, term frequency) pairs sorted by document, encoded as varint
+ * document deltas followed by varint frequencies. Every {@value #BLOCK_SIZE} postings a skip entry records the last
+ * document of the block and its byte offset, so that a cursor can jump over whole blocks without decoding them.
+ * <p>
+ * The length norm of every document is precomputed, and each posting list keeps the highest score any of its
+ * postings contributes. Queries are evaluated with WAND: documents whose sum of term upper bounds cannot enter the
+ * current top-k are skipped without being scored.
+ *
+ * @author HamaWhite
+ */
+public class BM25Index {
+
+    private static final int BLOCK_SIZE = 128;
+
+    private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final float k1;
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+
+    /**
+     * {@code k1 * (1 - b + b * length / averageLength)} of every document.
+     */
+    private final float[] norms;
+
+    /**
+     * @param documents the tokens of each document, the position of a document is its id
+     * @param k1        term frequency saturation
+     * @param b         document length normalization, 0 disables it
+     */
+    public BM25Index(List<List<String>> documents, float k1, float b) {
+        this.k1 = k1;
+        this.norms = new float[documents.size()];
+
+        Map<String, PostingsBuilder> builders = new HashMap<>();
+        long totalLength = 0;
+        for (int doc = 0; doc < documents.size(); doc++) {
+            List<String> tokens = documents.get(doc);
+            Map<String, Integer> frequencies = new HashMap<>();
+            tokens.forEach(token -> frequencies.merge(token, 1, Integer::sum));
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                builders.computeIfAbsent(entry.getKey(), key -> new PostingsBuilder()).add(doc, entry.getValue());
+            }
+            norms[doc] = tokens.size();
+            totalLength += tokens.size();
+        }
+
+        float averageLength = documents.isEmpty() ? 1 : Math.max(1, (float) totalLength / documents.size());
+        for (int doc = 0; doc < norms.length; doc++) {
+            norms[doc] = k1 * (1 - b + b * norms[doc] / averageLength);
+        }
+        builders.forEach((term, builder) -> postings.put(term, builder.build(documents.size())));
+    }
+
+    /**
+     * Number of indexed documents.
+     */
+    public int size() {
+        return norms.length;
+    }
+
+    /**
+     * Search the k documents with the highest BM25 score, documents sharing no term with the query are left out.
+     *
+     * @param terms the query terms, duplicates count once
+     * @param k     number of documents to return
+     * @return pairs of document id and score, ordered from the highest score
+     */
+    public List<Pair<Integer, Float>> search(Collection<String> terms, int k) {
+        List<Cursor> cursors = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(terms)) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                Cursor cursor = new Cursor(list);
+                cursor.next();
+                cursors.add(cursor);
+            }
+        }
+        if (cursors.isEmpty() || k <= 0) {
+            return List.of();
+        }
+
+        NeighborQueue topK = new NeighborQueue(k + 1, false);
+        Cursor[] ordered = cursors.toArray(new Cursor[0]);
+        while (true) {
+            sortByDoc(ordered);
+            float threshold = topK.size() < k ? 0 : topK.topScore();
+            int pivot = findPivot(ordered, threshold);
+            if (pivot < 0) {
+                break;
+            }
+            int pivotDoc = ordered[pivot].doc;
+            if (ordered[0].doc == pivotDoc) {
+                float score = 0;
+                for (int i = 0; i < ordered.length && ordered[i].doc == pivotDoc; i++) {
+                    score += ordered[i].score();
+                    ordered[i].next();
+                }
+                topK.offer(pivotDoc, score, k);
+            } else {
+                for (int i = 0; i < pivot && ordered[i].doc < pivotDoc; i++) {
+                    ordered[i].advance(pivotDoc);
+                }
+            }
+        }
+
+        int count = topK.size();
+        int[] docs = new int[count];
+        float[] scores = new float[count];
+        topK.drainDescending(docs, scores);
+        List<Pair<Integer, Float>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(Pair.of(docs[i], scores[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Return the first cursor at which the sum of upper bounds exceeds the threshold, or -1 if no document left can
+     * enter the top-k.
+     */
+    private static int findPivot(Cursor[] ordered, float threshold) {
+        float upperBound = 0;
+        for (int i = 0; i < ordered.length && ordered[i].doc != NO_MORE_DOCS; i++) {
+            upperBound += ordered[i].list.maxScore;
+            if (upperBound > threshold) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Insertion sort, queries have few terms and the cursors stay nearly sorted between iterations.
+     */
+    private static void sortByDoc(Cursor[] cursors) {
+        for (int i = 1; i < cursors.length; i++) {
+            Cursor cursor = cursors[i];
+            int j = i - 1;
+            while (j >= 0 && cursors[j].doc > cursor.doc) {
+                cursors[j + 1] = cursors[j];
+                j--;
+            }
+            cursors[j + 1] = cursor;
+        }
+    }
+
+    private float score(float idf, int frequency, int doc) {
+        return idf * frequency * (k1 + 1) / (frequency + norms[doc]);
+    }
+
+    private static final class PostingList {
+
+        private final byte[] data;
+
+        private final int count;
+
+        private final float idf;
+
+        /**
+         * Highest score contributed by a posting of the list.
+         */
+        private final float maxScore;
+
+        private final int[] blockLastDocs;
+
+        private final int[] blockOffsets;
+
+        private PostingList(byte[] data, int count, float idf, float maxScore, int[] blockLastDocs,
+                int[] blockOffsets) {
+            this.data = data;
+            this.count = count;
+            this.idf = idf;
+            this.maxScore = maxScore;
+            this.blockLastDocs = blockLastDocs;
+            this.blockOffsets = blockOffsets;
+        }
+    }
+
+    /**
+     * Iterates a posting list in document order, decoding one posting at a time.
+     */
+    private final class Cursor {
+
+        private final PostingList list;
+
+        private int position = -1;
+
+        private int offset;
+
+        private int doc;
+
+        private int frequency;
+
+        private Cursor(PostingList list) {
+            this.list = list;
+        }
+
+        private float score() {
+            return BM25Index.this.score(list.idf, frequency, doc);
+        }
+
+        /**
+         * Move to the next posting.
+         */
+        private void next() {
+            if (++position >= list.count) {
+                doc = NO_MORE_DOCS;
+                return;
+            }
+            doc += readVarint();
+            frequency = readVarint();
+        }
+
+        /**
+         * Move to the first posting whose document is at least the target, skipping the blocks ending before it.
+         */
+        private void advance(int target) {
+            int block = position / BLOCK_SIZE;
+            int last = block;
+            while (last < list.blockLastDocs.length && list.blockLastDocs[last] < target) {
+                last++;
+            }
+            if (last == list.blockLastDocs.length) {
+                position = list.count;
+                doc = NO_MORE_DOCS;
+                return;
+            }
+            if (last > block) {
+                position = last * BLOCK_SIZE - 1;
+                offset = list.blockOffsets[last];
+                doc = list.blockLastDocs[last - 1];
+            }
+            while (doc < target) {
+                next();
+            }
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = list.data[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * Accumulates the postings of a term in document order while the index is built.
+     */
+    private final class PostingsBuilder {
+
+        private int[] docs = new int[4];
+
+        private int[] frequencies = new int[4];
+
+        private int count;
+
+        private void add(int doc, int frequency) {
+            if (count == docs.length) {
+                docs = Arrays.copyOf(docs, count * 2);
+                frequencies = Arrays.copyOf(frequencies, count * 2);
+            }
+            docs[count] = doc;
+            frequencies[count++] = frequency;
+        }
+
+        private PostingList build(int documentCount) {
+            float idf = (float) Math.log(1 + (documentCount - count + 0.5) / (count + 0.5));
+            int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            int[] blockLastDocs = new int[blocks];
+            int[] blockOffsets = new int[blocks];
+
+            byte[] data = new byte[count * 2];
+            int offset = 0;
+            int previous = 0;
+            float maxScore = 0;
+            for (int i = 0; i < count; i++) {
+                if (i % BLOCK_SIZE == 0) {
+                    blockOffsets[i / BLOCK_SIZE] = offset;
+                }
+                if (data.length - offset < 10) {
+                    data = Arrays.copyOf(data, data.length * 2 + 10);
+                }
+                offset = writeVarint(data, offset, docs[i] - previous);
+                offset = writeVarint(data, offset, frequencies[i]);
+                previous = docs[i];
+                blockLastDocs[i / BLOCK_SIZE] = docs[i];
+                maxScore = Math.max(maxScore, score(idf, frequencies[i], docs[i]));
+            }
+            return new PostingList(Arrays.copyOf(data, offset), count, idf, maxScore, blockLastDocs, blockOffsets);
+        }
+
+        private int writeVarint(byte[] data, int offset, int value) {
+            while ((value & ~0x7F) != 0) {
+                data[offset++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[offset++] = (byte) value;
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.retrievers.bm25;
+
+import com.hw.langchain.schema.BaseRetriever;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.text.splitter.TextSplitter;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Retriever ranking documents with the Okapi BM25 lexical scoring over an in-process {@link BM25Index}, no
+ * embedding is computed.
+ *
+ * @author HamaWhite
+ */
+public class BM25Retriever implements BaseRetriever {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Lower-cases the text and splits it on every character that is neither a letter nor a digit.
+     */
+    public static final Function<String, List<String>> DEFAULT_TOKENIZER = text -> Arrays.stream(
+            TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+            .filter(token -> !token.isEmpty())
+            .toList();
+
+    private final List<Document> documents;
+
+    /**
+     * Function splitting both the documents and the queries into terms.
+     */
+    private final Function<String, List<String>> tokenizer;
+
+    /**
+     * Number of documents to return.
+     */
+    private final int k;
+
+    private final BM25Index index;
+
+    public BM25Retriever(List<Document> documents, int k) {
+        this(documents, DEFAULT_TOKENIZER, 1.5f, 0.75f, k);
+    }
+
+    /**
+     * @param documents the documents to index
+     * @param tokenizer function splitting both the documents and the queries into terms
+     * @param k1        term frequency saturation
+     * @param b         document length normalization, 0 disables it
+     * @param k         number of documents to return
+     */
+    public BM25Retriever(List<Document> documents, Function<String, List<String>> tokenizer, float k1, float b,
+            int k) {
+        this.documents = List.copyOf(documents);
+        this.tokenizer = tokenizer;
+        this.k = k;
+        this.index = new BM25Index(documents.stream().map(doc -> tokenizer.apply(doc.getPageContent())).toList(),
+                k1, b);
+    }
+
+    public static BM25Retriever fromDocuments(List<Document> documents) {
+        return new BM25Retriever(documents, 4);
+    }
+
+    /**
+     * Index the chunks the text splitter produces from the documents.
+     */
+    public static BM25Retriever fromDocuments(List<Document> documents, TextSplitter textSplitter) {
+        return fromDocuments(textSplitter.splitDocuments(documents));
+    }
+
+    public static BM25Retriever fromTexts(List<String> texts, List<Map<String, Object>> metadatas) {
+        List<Document> documents = IntStream.range(0, texts.size())
+                .mapToObj(i -> new Document(texts.get(i), metadatas == null ? new HashMap<>() : metadatas.get(i)))
+                .toList();
+        return fromDocuments(documents);
+    }
+
+    @Override
+    public List<Document> getRelevantDocuments(String query) {
+        return getRelevantDocumentsWithScores(query, k).stream()
+                .map(Pair::getLeft)
+                .toList();
+    }
+
+    /**
+     * Get the documents with the highest BM25 scores for a query, documents sharing no term with it are left out.
+     *
+     * @param query string to find relevant documents for
+     * @param k     number of documents to return
+     * @return pairs of document and BM25 score, ordered from the most relevant
+     */
+    public List<Pair<Document, Float>> getRelevantDocumentsWithScores(String query, int k) {
+        return index.search(tokenizer.apply(query), k).stream()
+                .map(pair -> Pair.of(documents.get(pair.getLeft()), pair.getRight()))
+                .toList();
+    }
+}
@@ -16,25 +16,23 @@
  * limitations under the License.
  */
 
-package com.hw.langchain.vectorstores.utils;
-
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
-
-import java.util.List;
-
-import static com.hw.langchain.vectorstores.utils.ArrayUtils.listToArray;
+package com.hw.langchain.retrievers.hybrid;
 
 /**
+ * How the ranked lists of the lexical and the vector search are fused into one.
+ *
  * @author HamaWhite
  */
-public class Nd4jUtils {
+public enum FusionStrategy {
 
-    private Nd4jUtils() {
-    }
+    /**
+     * Sum of the weighted reciprocal ranks {@code weight / (rankConstant + rank)}, only the ranks are used so the
+     * scales of the two scores do not matter.
+     */
+    RECIPROCAL_RANK,
 
-    public static INDArray createFromList(List<Float> list) {
-        Float[][] array = listToArray(List.of(list));
-        return Nd4j.createFromArray(array);
-    }
+    /**
+     * Sum of the weighted scores, each list being min-max normalized to [0, 1] first.
+     */
+    WEIGHTED_SCORE
 }
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.retrievers.hybrid;
+
+import com.hw.langchain.exception.LangChainException;
+import com.hw.langchain.retrievers.bm25.BM25Retriever;
+import com.hw.langchain.schema.BaseRetriever;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.base.VectorStore;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import lombok.Builder;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static com.hw.langchain.utils.ThreadPoolUtil.BLOCKING_IO_EXECUTOR;
+
+/**
+ * Retriever combining a BM25 lexical search with a vector similarity search.
+ * <p>
+ * Both searches run concurrently and fetch {@code fetchK} candidates each, the two lists are then fused and the
+ * best {@code k} documents returned. The lexical search finds exact identifiers the embeddings miss, which keeps
+ * the recall high at a small k. Documents are matched across the lists by equality of their content and metadata.
+ *
+ * @author HamaWhite
+ */
+@Builder
+public class HybridRetriever implements BaseRetriever {
+
+    private BM25Retriever bm25Retriever;
+
+    private VectorStore vectorStore;
+
+    /**
+     * Number of documents to return.
+     */
+    @Builder.Default
+    private int k = 4;
+
+    /**
+     * Number of candidates fetched from each search before the fusion.
+     */
+    @Builder.Default
+    private int fetchK = 20;
+
+    @Builder.Default
+    private FusionStrategy fusionStrategy = FusionStrategy.RECIPROCAL_RANK;
+
+    /**
+     * Constant of the reciprocal rank fusion, larger values flatten the advantage of the top ranks.
+     */
+    @Builder.Default
+    private int rankConstant = 60;
+
+    /**
+     * Weight of the vector search in the fusion, the lexical search is weighted {@code 1 - vectorWeight}.
+     */
+    @Builder.Default
+    private float vectorWeight = 0.5f;
+
+    /**
+     * The executor running the two searches, the vector search of a remote store blocks on network I/O.
+     */
+    @Builder.Default
+    private Executor executor = BLOCKING_IO_EXECUTOR;
+
+    @Override
+    public List<Document> getRelevantDocuments(String query) {
+        return getRelevantDocumentsWithScores(query).stream()
+                .map(Pair::getLeft)
+                .toList();
+    }
+
+    /**
+     * Get the documents relevant for a query along with their fused scores.
+     *
+     * @param query string to find relevant documents for
+     * @return pairs of document and fused score, ordered from the most relevant
+     */
+    public List<Pair<Document, Float>> getRelevantDocumentsWithScores(String query) {
+        CompletableFuture<List<Pair<Document, Float>>> lexical = CompletableFuture.supplyAsync(
+                () -> bm25Retriever.getRelevantDocumentsWithScores(query, fetchK), executor);
+        CompletableFuture<List<Pair<Document, Float>>> dense = CompletableFuture.supplyAsync(
+                () -> vectorStore.similaritySearchWithRelevanceScores(query, fetchK), executor);
+        try {
+            return fuse(lexical.join(), dense.join());
+        } catch (CompletionException e) {
+            throw new LangChainException("Failed to retrieve documents.", e.getCause());
+        }
+    }
+
+    private List<Pair<Document, Float>> fuse(List<Pair<Document, Float>> lexical,
+            List<Pair<Document, Float>> dense) {
+        Map<Document, Float> scores = new LinkedHashMap<>();
+        accumulate(scores, lexical, 1 - vectorWeight);
+        accumulate(scores, dense, vectorWeight);
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Document, Float>comparingByValue().reversed())
+                .limit(k)
+                .map(entry -> Pair.of(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    private void accumulate(Map<Document, Float> scores, List<Pair<Document, Float>> results, float weight) {
+        if (fusionStrategy == FusionStrategy.RECIPROCAL_RANK) {
+            for (int rank = 0; rank < results.size(); rank++) {
+                scores.merge(results.get(rank).getLeft(), weight / (rankConstant + rank + 1), Float::sum);
+            }
+            return;
+        }
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (Pair<Document, Float> result : results) {
+            min = Math.min(min, result.getRight());
+            max = Math.max(max, result.getRight());
+        }
+        for (Pair<Document, Float> result : results) {
+            float normalized = max > min ? (result.getRight() - min) / (max - min) : 1.0f;
+            scores.merge(result.getLeft(), weight * normalized, Float::sum);
+        }
+    }
+}
@@ -20,8 +20,11 @@ package com.hw.langchain.retrievers.self.query.base;
 
 import com.hw.langchain.chains.query.constructor.ir.Visitor;
 import com.hw.langchain.exception.LangChainException;
+import com.hw.langchain.retrievers.self.query.memory.InMemoryTranslator;
 import com.hw.langchain.retrievers.self.query.pinecone.PineconeTranslator;
 import com.hw.langchain.vectorstores.base.VectorStore;
+import com.hw.langchain.vectorstores.flat.FlatVectorStore;
+import com.hw.langchain.vectorstores.hnsw.HnswVectorStore;
 import com.hw.langchain.vectorstores.pinecone.Pinecone;
 
 import java.util.Map;
@@ -35,7 +38,9 @@ public class BaseUtils {
     }
 
     private static final Map<Class<? extends VectorStore>, Class<? extends Visitor>> BUILTIN_TRANSLATORS = Map.of(
-            Pinecone.class, PineconeTranslator.class);
+            Pinecone.class, PineconeTranslator.class,
+            FlatVectorStore.class, InMemoryTranslator.class,
+            HnswVectorStore.class, InMemoryTranslator.class);
 
     /**
      * Get the translator class corresponding to the vector store class.
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.retrievers.self.query.memory;
+
+import com.google.common.collect.Maps;
+import com.hw.langchain.chains.query.constructor.ir.*;
+import com.hw.langchain.vectorstores.utils.MetadataIndex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Logic for converting internal query language elements to the filters of the in-process vector stores, which
+ * evaluate them on their {@link MetadataIndex}.
+ *
+ * @author HamaWhite
+ */
+public class InMemoryTranslator extends Visitor {
+
+    public InMemoryTranslator() {
+        super(Arrays.asList(Comparator.values()), Arrays.asList(Operator.values()));
+    }
+
+    private String formatFunc(StringEnum<?> func) {
+        return "$" + func.value();
+    }
+
+    @Override
+    public Map<String, Object> visitOperation(Operation operation) {
+        List<Map<String, Object>> arguments = operation.getArguments().stream()
+                .map(argument -> argument.accept(this))
+                .toList();
+        return Map.of(formatFunc(operation.getOperator()), arguments);
+    }
+
+    @Override
+    public Map<String, Object> visitComparison(Comparison comparison) {
+        return Map.of(
+                comparison.getAttribute(),
+                Map.of(formatFunc(comparison.getComparator()), comparison.getValue()));
+    }
+
+    @Override
+    public Map<String, Object> visitStructuredQuery(StructuredQuery structuredQuery) {
+        if (structuredQuery.getFilter() != null) {
+            return structuredQuery.getFilter().accept(this);
+        }
+        return Maps.newHashMap();
+    }
+}
@@ -18,6 +18,9 @@
 
 package com.hw.langchain.schema;
 
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 import java.util.List;
 
 /**
@@ -34,4 +37,15 @@ public interface BaseRetriever {
      * @return List of relevant documents
      */
     List<Document> getRelevantDocuments(String query);
+
+    /**
+     * Asynchronously get documents relevant for a query, the default runs the blocking retrieval on
+     * {@link Schedulers#boundedElastic()}.
+     *
+     * @param query string to find relevant documents for
+     * @return Mono emitting the relevant documents
+     */
+    default Mono<List<Document>> getRelevantDocumentsAsync(String query) {
+        return Mono.fromCallable(() -> getRelevantDocuments(query)).subscribeOn(Schedulers.boundedElastic());
+    }
 }
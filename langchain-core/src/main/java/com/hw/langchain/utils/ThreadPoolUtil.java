@@ -18,13 +18,36 @@
 
 package com.hw.langchain.utils;
 
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.function.Function;
 
 /**
  * @author HamaWhite
  */
 public class ThreadPoolUtil {
 
+    /**
+     * Whether the current thread runs a task of {@link #BLOCKING_IO_EXECUTOR}.
+     */
+    private static final ThreadLocal<Boolean> BLOCKING_IO_WORKER = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Default executor of the tasks that block on I/O, backed by {@link Schedulers#boundedElastic()} so that they
+     * never occupy the common fork-join pool. Callers bound their own concurrency, e.g. with {@link #mapBounded}.
+     */
+    public static final Executor BLOCKING_IO_EXECUTOR = task -> Schedulers.boundedElastic().schedule(() -> {
+        BLOCKING_IO_WORKER.set(true);
+        try {
+            task.run();
+        } finally {
+            BLOCKING_IO_WORKER.remove();
+        }
+    });
+
     private ThreadPoolUtil() {
     }
 
@@ -39,4 +62,50 @@ public class ThreadPoolUtil {
         return new ThreadPoolExecutor(corePoolSize, maxConcurrency, keepAliveTime, unit, workQueue, threadFactory,
                 handler);
     }
+
+    /**
+     * Apply the task to every input on the executor with at most maxConcurrency tasks running at once, so that a
+     * shared executor bounds the concurrency of one call without creating a thread pool per call. The next input is
+     * submitted as soon as any task completes, and the outstanding tasks are cancelled once a task fails.
+     * <p>
+     * Called from a task of {@link #BLOCKING_IO_EXECUTOR} on that executor, e.g. a vector store embedding texts in
+     * its upsert tasks, the tasks run inline instead. Otherwise the outer tasks could occupy every worker while
+     * waiting for inner tasks queued behind them.
+     *
+     * @return the results, in the order of the inputs
+     * @throws CompletionException if a task failed, with its exception as the cause
+     */
+    public static <T, R> List<R> mapBounded(List<T> inputs, Function<T, R> task, int maxConcurrency,
+            Executor executor) {
+        if (executor == BLOCKING_IO_EXECUTOR && BLOCKING_IO_WORKER.get()) {
+            try {
+                return inputs.stream().map(task).toList();
+            } catch (RuntimeException e) {
+                throw new CompletionException(e);
+            }
+        }
+        CompletionService<R> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<R>> futures = new ArrayList<>(inputs.size());
+        try {
+            for (int completed = 0; completed < inputs.size(); completed++) {
+                while (futures.size() < inputs.size() && futures.size() - completed < maxConcurrency) {
+                    T input = inputs.get(futures.size());
+                    futures.add(completionService.submit(() -> task.apply(input)));
+                }
+                completionService.take().get();
+            }
+            List<R> results = new ArrayList<>(inputs.size());
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
 }
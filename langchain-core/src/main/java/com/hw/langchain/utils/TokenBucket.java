@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.utils;
+
+import com.hw.langchain.exception.LangChainException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe token bucket refilled continuously at a rate of permits per minute, holding at most one minute of
+ * permits.
+ * <p>
+ * {@link #acquire(long)} reserves the permits right away and sleeps until the bucket has refilled enough to cover
+ * them, so concurrent callers are served in arrival order and a large request only delays the requests behind it.
+ *
+ * @author HamaWhite
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final long capacity;
+
+    private final double permitsPerNano;
+
+    /**
+     * Permits available at {@link #lastRefill}, negative while reservations are waiting for the refill.
+     */
+    private double available;
+
+    private long lastRefill;
+
+    /**
+     * @param permitsPerMinute refill rate and capacity of the bucket
+     */
+    public TokenBucket(long permitsPerMinute) {
+        this.capacity = permitsPerMinute;
+        this.permitsPerNano = (double) permitsPerMinute / NANOS_PER_MINUTE;
+        this.available = permitsPerMinute;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Take the permits, waiting until they are available. A request larger than the capacity takes the whole
+     * capacity, so that it can still proceed.
+     */
+    public void acquire(long permits) {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LangChainException("Interrupted while waiting for the rate limit.", e);
+            }
+        }
+    }
+
+    /**
+     * Take the permits without waiting, for callers that schedule the wait themselves. Like {@link #acquire(long)},
+     * a request larger than the capacity takes the whole capacity.
+     *
+     * @return nanoseconds until the permits are covered by the refill, zero if they are available now
+     */
+    public synchronized long reserve(long permits) {
+        refill();
+        available -= Math.min(permits, capacity);
+        return available >= 0 ? 0 : (long) Math.ceil(-available / permitsPerNano);
+    }
+
+    /**
+     * Align the bucket with the remaining permits reported by the server, which also counts the requests of other
+     * clients sharing the limit. When nothing remains, no permit is granted before the reset.
+     *
+     * @param remaining permits left on the server
+     * @param reset     time until the server limit resets, may be null
+     */
+    public synchronized void update(long remaining, Duration reset) {
+        refill();
+        available = Math.min(available, remaining);
+        if (remaining <= 0 && reset != null) {
+            available = Math.min(available, -reset.toNanos() * permitsPerNano);
+        }
+    }
+
+    /**
+     * Permits currently available, negative while reservations are waiting.
+     */
+    public synchronized double available() {
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+}
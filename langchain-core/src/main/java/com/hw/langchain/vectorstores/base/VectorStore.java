@@ -18,6 +18,7 @@
 
 package com.hw.langchain.vectorstores.base;
 
+import com.google.common.primitives.Floats;
 import com.hw.langchain.embeddings.base.Embeddings;
 import com.hw.langchain.schema.Document;
 
@@ -25,18 +26,34 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 import java.util.List;
 import java.util.Map;
 
 import static com.hw.langchain.vectorstores.base.SearchType.SIMILARITY;
 
 /**
+ * Interface for vector stores.
+ * <p>
+ * The searches by vector come in pairs taking a primitive {@code float[]} or a boxed {@code List<Float>} embedding,
+ * which default to each other. Stores must override at least one method of each pair, new stores the primitive one,
+ * while stores written against the list based methods keep working. Stores searched by a
+ * {@link com.hw.langchain.vectorstores.sharded.ShardedVectorStore} must also override
+ * {@link #similaritySearchWithRelevanceScoresByVector}.
+ *
  * @author HamaWhite
  */
 public abstract class VectorStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(VectorStore.class);
 
+    /**
+     * Number of documents returned by the searches that are not given one.
+     */
+    static final int DEFAULT_K = 4;
+
     /**
      * Run more texts through the embeddings and add to the vectorStore.
      *
@@ -46,6 +63,20 @@ public abstract class VectorStore {
      */
     public abstract List<String> addTexts(List<String> texts, List<Map<String, Object>> metadatas);
 
+    /**
+     * Asynchronously run more texts through the embeddings and add to the vectorStore.
+     * <p>
+     * The default runs {@link #addTexts} on {@link Schedulers#boundedElastic()}, stores with a non-blocking client
+     * override it.
+     *
+     * @param texts     Iterable of strings to add to the vectorStore.
+     * @param metadatas list of metadatas associated with the texts.
+     * @return Mono emitting the list of ids from adding the texts into the vectorStore.
+     */
+    public Mono<List<String>> addTextsAsync(List<String> texts, List<Map<String, Object>> metadatas) {
+        return Mono.fromCallable(() -> addTexts(texts, metadatas)).subscribeOn(Schedulers.boundedElastic());
+    }
+
     /**
      * Delete by vector ID.
      *
@@ -93,7 +124,7 @@ public abstract class VectorStore {
      * @return a list of tuples containing the documents and their similarity scores
      */
     public List<Document> similaritySearch(String query, Map<String, Object> filter) {
-        return similaritySearch(query, 4, filter);
+        return similaritySearch(query, DEFAULT_K, filter);
     }
 
     /**
@@ -106,12 +137,91 @@ public abstract class VectorStore {
      */
     public abstract List<Document> similaritySearch(String query, int k, Map<String, Object> filter);
 
+    /**
+     * Asynchronously returns the documents most similar to the given query.
+     * <p>
+     * When the store exposes its {@link #getEmbeddings() embeddings}, the query is embedded with
+     * {@link Embeddings#embedQueryAsync} and searched by {@link #similarSearchByVectorAsync}. Otherwise the blocking
+     * search runs on {@link Schedulers#boundedElastic()}.
+     *
+     * @param query  the input text
+     * @param k      the number of documents to return
+     * @param filter a filter to apply to the search
+     * @return Mono emitting the documents most similar to the query
+     */
+    public Mono<List<Document>> similaritySearchAsync(String query, int k, Map<String, Object> filter) {
+        Embeddings embeddings = getEmbeddings();
+        if (embeddings == null) {
+            return Mono.fromCallable(() -> similaritySearch(query, k, filter))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return embeddings.embedQueryAsync(query)
+                .flatMap(embedding -> similarSearchByVectorAsync(embedding, k, filter));
+    }
+
+    /**
+     * Asynchronously return docs most similar to embedding vector. The default runs {@link #similarSearchByVector}
+     * on {@link Schedulers#boundedElastic()}, stores with a non-blocking client override it.
+     *
+     * @param embedding Embedding to look up documents similar to.
+     * @param k         Number of Documents to return.
+     * @param kwargs    kwargs to be passed to similarity search
+     * @return Mono emitting the documents most similar to the query vector.
+     */
+    public Mono<List<Document>> similarSearchByVectorAsync(float[] embedding, int k, Map<String, Object> kwargs) {
+        return Mono.fromCallable(() -> similarSearchByVector(embedding, k, kwargs))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Returns the documents most similar to each of the given queries.
+     * <p>
+     * All queries are embedded with a single {@link Embeddings#embedDocumentVectors} call when the store exposes its
+     * {@link #getEmbeddings() embeddings}, and then searched together by {@link #similaritySearchByVectors}.
+     * Otherwise each query is searched on its own.
+     *
+     * @param queries the input texts
+     * @param k       the number of documents to return for each query
+     * @param filter  a filter to apply to every search
+     * @return the documents most similar to each query, in the order of the queries
+     */
+    public List<List<Document>> similaritySearch(List<String> queries, int k, Map<String, Object> filter) {
+        Embeddings embeddings = getEmbeddings();
+        if (embeddings == null) {
+            return queries.stream().map(query -> similaritySearch(query, k, filter)).toList();
+        }
+        return similaritySearchByVectors(embeddings.embedDocumentVectors(queries), k, filter);
+    }
+
+    /**
+     * Return docs most similar to each of the embedding vectors. Stores override this to run the searches in bulk,
+     * the default searches each vector on its own.
+     *
+     * @param embeddings Embeddings to look up documents similar to.
+     * @param k          Number of Documents to return for each embedding.
+     * @param kwargs     kwargs to be passed to every similarity search
+     * @return Documents most similar to each query vector, in the order of the vectors.
+     */
+    public List<List<Document>> similaritySearchByVectors(List<float[]> embeddings, int k,
+            Map<String, Object> kwargs) {
+        return embeddings.stream().map(embedding -> similarSearchByVector(embedding, k, kwargs)).toList();
+    }
+
+    /**
+     * Access the query embedding object if available.
+     *
+     * @return the embeddings, or null if the store does not expose them
+     */
+    public Embeddings getEmbeddings() {
+        return null;
+    }
+
     /**
      * Return docs and relevance scores in the range [0, 1]. 0 is dissimilar, 1 is most similar.
      * @param query input text
      */
     public List<Pair<Document, Float>> similaritySearchWithRelevanceScores(String query) {
-        return similaritySearchWithRelevanceScores(query, 4);
+        return similaritySearchWithRelevanceScores(query, DEFAULT_K);
     }
 
     /**
@@ -131,6 +241,21 @@ public abstract class VectorStore {
         return docsAndSimilarities;
     }
 
+    /**
+     * Return docs most similar to embedding vector and relevance scores in the range [0, 1], 0 is dissimilar and 1
+     * is most similar. The scores are comparable across stores using the same embeddings.
+     *
+     * @param embedding Embedding to look up documents similar to.
+     * @param k         Number of Documents to return.
+     * @param filter    Metadata key-value pairs that a document must match.
+     * @return List of Tuples of (doc, similarityScore)
+     */
+    public List<Pair<Document, Float>> similaritySearchWithRelevanceScoresByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        throw new UnsupportedOperationException(
+                getClass().getSimpleName() + " does not support relevance scores by vector.");
+    }
+
     /**
      * Return docs and relevance scores, normalized on a scale from 0 to 1. 0 is dissimilar, 1 is most similar.
      *
@@ -148,10 +273,24 @@ public abstract class VectorStore {
      * @param kwargs    kwargs to be passed to similarity search
      * @return List of Documents most similar to the query vector.
      */
-    public abstract List<Document> similarSearchByVector(List<Float> embedding, int k, Map<String, Object> kwargs);
+    public List<Document> similarSearchByVector(float[] embedding, int k, Map<String, Object> kwargs) {
+        return similarSearchByVector(Floats.asList(embedding), k, kwargs);
+    }
+
+    /**
+     * Return docs most similar to embedding vector.
+     *
+     * @param embedding Embedding to look up documents similar to.
+     * @param k         Number of Documents to return. Defaults to 4.
+     * @param kwargs    kwargs to be passed to similarity search
+     * @return List of Documents most similar to the query vector.
+     */
+    public List<Document> similarSearchByVector(List<Float> embedding, int k, Map<String, Object> kwargs) {
+        return similarSearchByVector(Floats.toArray(embedding), k, kwargs);
+    }
 
     public List<Document> maxMarginalRelevanceSearch(String query) {
-        return maxMarginalRelevanceSearch(query, 4, 20, 0.5f);
+        return maxMarginalRelevanceSearch(query, DEFAULT_K, 20, 0.5f);
     }
 
     /**
@@ -167,8 +306,12 @@ public abstract class VectorStore {
      */
     public abstract List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult);
 
+    public List<Document> maxMarginalRelevanceSearchByVector(float[] embedding) {
+        return maxMarginalRelevanceSearchByVector(embedding, DEFAULT_K, 20, 0.5f);
+    }
+
     public List<Document> maxMarginalRelevanceSearchByVector(List<Float> embedding) {
-        return maxMarginalRelevanceSearchByVector(embedding, 4, 20, 0.5f);
+        return maxMarginalRelevanceSearchByVector(Floats.toArray(embedding));
     }
 
     /**
@@ -182,8 +325,20 @@ public abstract class VectorStore {
      *                   to maximum diversity and 1 to minimum diversity.
      * @return List of Documents selected by maximal marginal relevance.
      */
-    public abstract List<Document> maxMarginalRelevanceSearchByVector(List<Float> embedding, int k, int fetchK,
-            float lambdaMult);
+    public List<Document> maxMarginalRelevanceSearchByVector(float[] embedding, int k, int fetchK,
+            float lambdaMult) {
+        return maxMarginalRelevanceSearchByVector(Floats.asList(embedding), k, fetchK, lambdaMult);
+    }
+
+    /**
+     * Return docs selected using the maximal marginal relevance.
+     *
+     * @see #maxMarginalRelevanceSearchByVector(float[], int, int, float)
+     */
+    public List<Document> maxMarginalRelevanceSearchByVector(List<Float> embedding, int k, int fetchK,
+            float lambdaMult) {
+        return maxMarginalRelevanceSearchByVector(Floats.toArray(embedding), k, fetchK, lambdaMult);
+    }
 
     /**
      * Return VectorStore initialized from documents and embeddings.
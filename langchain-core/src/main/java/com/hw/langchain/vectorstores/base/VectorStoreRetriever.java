@@ -23,6 +23,8 @@ import com.hw.langchain.schema.Document;
 
 import org.apache.commons.lang3.tuple.Pair;
 
+import reactor.core.publisher.Mono;
+
 import java.util.List;
 import java.util.Map;
 
@@ -73,6 +75,27 @@ public class VectorStoreRetriever implements BaseRetriever {
         };
     }
 
+    @Override
+    public Mono<List<Document>> getRelevantDocumentsAsync(String query) {
+        if (searchType == SearchType.SIMILARITY) {
+            return vectorstore.similaritySearchAsync(query, VectorStore.DEFAULT_K, Map.of());
+        }
+        return BaseRetriever.super.getRelevantDocumentsAsync(query);
+    }
+
+    /**
+     * Get documents relevant for each of the queries, similarity searches are run in bulk by the vectorStore.
+     *
+     * @param queries strings to find relevant documents for
+     * @return the relevant documents for each query, in the order of the queries
+     */
+    public List<List<Document>> getRelevantDocuments(List<String> queries) {
+        if (searchType == SearchType.SIMILARITY) {
+            return vectorstore.similaritySearch(queries, VectorStore.DEFAULT_K, Map.of());
+        }
+        return queries.stream().map(this::getRelevantDocuments).toList();
+    }
+
     /**
      * Add documents to vectorStore.
      */
@@ -0,0 +1,493 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.flat;
+
+import com.hw.langchain.vectorstores.quantization.VectorQuantizer;
+import com.hw.langchain.vectorstores.quantization.VectorQuantizer.CodeScorer;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+import com.hw.langchain.vectorstores.utils.NeighborQueue;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.hw.langchain.math.utils.MathUtils.dotProduct;
+import static com.hw.langchain.math.utils.MathUtils.normalize;
+import static com.hw.langchain.math.utils.MathUtils.squaredEuclideanDistance;
+
+/**
+ * Exact nearest neighbor index that scores the query against every stored vector.
+ * <p>
+ * Vectors are packed contiguously into primitive float pages of up to 2^16 vectors each, a single array cannot hold
+ * more than 2^31 floats. Large dimensions get fewer vectors per page, so that a page never exceeds
+ * {@link #MAX_PAGE_FLOATS} floats and the pages mapped from a file stay below the 2 GB limit of a buffer.
+ * <p>
+ * A search splits the slots into partitions scored in parallel on a {@link ForkJoinPool}, every partition keeps a
+ * bounded top-k heap and the heaps are merged on join.
+ * <p>
+ * The leading slots may instead live in read-only buffers mapped from an index file, see {@link FlatIndexFile}. They
+ * stay off-heap and are copied block by block into a scratch array when scored.
+ * <p>
+ * Once {@link #quantize quantized}, every vector also has a compact code kept on the heap. A search then runs a coarse
+ * pass over the codes and reranks the best candidates exactly on the full-precision vectors, which can stay mapped.
+ * <p>
+ * The index is not thread-safe for writes, they must be guarded by the caller.
+ *
+ * @author HamaWhite
+ */
+public class FlatIndex {
+
+    /**
+     * Maximum number of floats of a page, 1 GiB.
+     */
+    public static final int MAX_PAGE_FLOATS = 1 << 28;
+
+    private static final int MAX_PAGE_SHIFT = 16;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Number of mapped vectors copied to the heap at once for scoring.
+     */
+    private static final int MAPPED_BLOCK_SIZE = 256;
+
+    private final int dimension;
+
+    /**
+     * Number of vectors of a page is {@code 1 << pageShift}.
+     */
+    private final int pageShift;
+
+    private final int pageMask;
+
+    private final DistanceStrategy distanceStrategy;
+
+    /**
+     * Minimum number of vectors scored by a single fork/join task.
+     */
+    private final int partitionSize;
+
+    private final ForkJoinPool forkJoinPool;
+
+    private final BitSet deleted = new BitSet();
+
+    private float[][] pages = new float[0][];
+
+    /**
+     * Read-only vectors mapped from an index file, they always precede the vectors held in {@link #pages}.
+     */
+    private final List<FloatBuffer> mappedPages = new ArrayList<>();
+
+    /**
+     * The first slot of each mapped page.
+     */
+    private int[] mappedStarts = new int[0];
+
+    private int mappedSize;
+
+    private VectorQuantizer quantizer;
+
+    /**
+     * Quantized codes indexed by slot, in pages of as many codes as a vector page holds vectors.
+     */
+    private byte[][] codePages = new byte[0][];
+
+    private int size;
+
+    public FlatIndex(int dimension, DistanceStrategy distanceStrategy, int partitionSize, ForkJoinPool forkJoinPool) {
+        checkArgument(dimension > 0 && dimension <= MAX_PAGE_FLOATS, "dimension must be in (0, %s], got %s",
+                MAX_PAGE_FLOATS, dimension);
+        checkArgument(partitionSize > 0, "partitionSize must be positive, got %s", partitionSize);
+        this.dimension = dimension;
+        this.pageShift = pageShift(dimension);
+        this.pageMask = (1 << pageShift) - 1;
+        this.distanceStrategy = distanceStrategy;
+        this.partitionSize = partitionSize;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Return the shift of the number of vectors per page for the dimension, at most 2^16 vectors and
+     * {@link #MAX_PAGE_FLOATS} floats.
+     */
+    public static int pageShift(int dimension) {
+        return Math.min(MAX_PAGE_SHIFT, 31 - Integer.numberOfLeadingZeros(MAX_PAGE_FLOATS / dimension));
+    }
+
+    /**
+     * Number of slots in the index, including deleted ones.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Append a vector to the index.
+     *
+     * @return the slot of the vector
+     */
+    public int add(float[] vector) {
+        checkArgument(vector.length == dimension, "Expected vector of dimension %s, got %s", dimension,
+                vector.length);
+        float[] value = distanceStrategy.requiresNormalization() ? normalize(vector) : vector;
+
+        int heapSlot = size - mappedSize;
+        int page = heapSlot >>> pageShift;
+        int offset = (heapSlot & pageMask) * dimension;
+        if (page == pages.length) {
+            pages = Arrays.copyOf(pages, page + 1);
+            pages[page] = new float[Math.min(INITIAL_CAPACITY, pageMask + 1) * dimension];
+        } else if (offset + dimension > pages[page].length) {
+            pages[page] = Arrays.copyOf(pages[page], Math.min(pages[page].length * 2, (pageMask + 1) * dimension));
+        }
+        System.arraycopy(value, 0, pages[page], offset, dimension);
+        if (quantizer != null) {
+            encode(size, value);
+        }
+        return size++;
+    }
+
+    /**
+     * Append vectors backed by a mapped file, they are used as is and must already be normalized if the distance
+     * strategy requires it. Mapped vectors can only be added before any heap vector.
+     *
+     * @param vectors buffer holding a whole number of vectors
+     */
+    public void addMapped(FloatBuffer vectors) {
+        checkState(size == mappedSize, "Mapped vectors must be added before heap vectors.");
+        checkArgument(vectors.remaining() % dimension == 0, "Buffer of %s floats does not hold vectors of dimension %s",
+                vectors.remaining(), dimension);
+        int count = vectors.remaining() / dimension;
+        if (count == 0) {
+            return;
+        }
+        mappedStarts = Arrays.copyOf(mappedStarts, mappedStarts.length + 1);
+        mappedStarts[mappedStarts.length - 1] = mappedSize;
+        mappedPages.add(vectors.slice());
+        mappedSize += count;
+        size += count;
+    }
+
+    public void markDeleted(int slot) {
+        checkArgument(slot >= 0 && slot < size, "Slot %s does not exist.", slot);
+        deleted.set(slot);
+    }
+
+    /**
+     * Return a copy of the stored vector, normalized if the distance strategy requires it.
+     */
+    public float[] getVector(int slot) {
+        if (slot < mappedSize) {
+            int page = mappedPage(slot);
+            float[] vector = new float[dimension];
+            mappedPages.get(page).get((slot - mappedStarts[page]) * dimension, vector);
+            return vector;
+        }
+        int heapSlot = slot - mappedSize;
+        int offset = (heapSlot & pageMask) * dimension;
+        return Arrays.copyOfRange(pages[heapSlot >>> pageShift], offset, offset + dimension);
+    }
+
+    /**
+     * Quantize the index, the following searches score codes and rerank the candidates exactly.
+     *
+     * @param quantizer  the quantizer, trained on a sample of the stored vectors unless already trained
+     * @param sampleSize maximum number of vectors used for training
+     */
+    public void quantize(VectorQuantizer quantizer, int sampleSize) {
+        checkState(this.quantizer == null, "The index is already quantized.");
+        checkArgument(size > 0, "Cannot quantize an empty index.");
+        if (!quantizer.isTrained()) {
+            int step = Math.max(1, size / sampleSize);
+            List<float[]> samples = new ArrayList<>();
+            for (int slot = 0; slot < size && samples.size() < sampleSize; slot += step) {
+                samples.add(getVector(slot));
+            }
+            quantizer.train(samples);
+        }
+        this.quantizer = quantizer;
+        for (int slot = 0; slot < size; slot++) {
+            encode(slot, getVector(slot));
+        }
+    }
+
+    public boolean isQuantized() {
+        return quantizer != null;
+    }
+
+    private void encode(int slot, float[] vector) {
+        int codeSize = quantizer.codeSize();
+        int page = slot >>> pageShift;
+        int offset = (slot & pageMask) * codeSize;
+        if (page == codePages.length) {
+            codePages = Arrays.copyOf(codePages, page + 1);
+            codePages[page] = new byte[Math.min(INITIAL_CAPACITY, pageMask + 1) * codeSize];
+        } else if (offset + codeSize > codePages[page].length) {
+            codePages[page] = Arrays.copyOf(codePages[page],
+                    Math.min(codePages[page].length * 2, (pageMask + 1) * codeSize));
+        }
+        quantizer.encode(vector, codePages[page], offset);
+    }
+
+    public boolean isDeleted(int slot) {
+        return deleted.get(slot);
+    }
+
+    /**
+     * Search the nearest neighbors of the query, reranking exactly as many candidates as neighbors if quantized.
+     *
+     * @see #search(float[], int, int, IntPredicate)
+     */
+    public List<Pair<Integer, Float>> search(float[] query, int k, IntPredicate filter) {
+        return search(query, k, k, filter);
+    }
+
+    /**
+     * Search the nearest neighbors of the query. The search is exact unless the index is quantized, then the
+     * candidates with the best approximate scores are reranked on the full-precision vectors.
+     *
+     * @param query      the query vector
+     * @param k          number of neighbors to return
+     * @param candidates number of candidates reranked when quantized, more candidates trade speed for recall
+     * @param filter     slots must satisfy the filter to be returned, null accepts every slot
+     * @return pairs of slot and exact similarity score, ordered from the most similar
+     */
+    public List<Pair<Integer, Float>> search(float[] query, int k, int candidates, IntPredicate filter) {
+        return search(List.of(query), k, candidates, filter).get(0);
+    }
+
+    /**
+     * Search the nearest neighbors of many queries in one pass over the index, every stored vector is loaded once
+     * and scored against all queries.
+     *
+     * @param queries    the query vectors
+     * @param k          number of neighbors to return for each query
+     * @param candidates number of candidates reranked when quantized, more candidates trade speed for recall
+     * @param filter     slots must satisfy the filter to be returned, null accepts every slot
+     * @return the neighbors of each query as pairs of slot and exact similarity score, ordered from the most similar
+     */
+    public List<List<Pair<Integer, Float>>> search(List<float[]> queries, int k, int candidates,
+            IntPredicate filter) {
+        float[][] values = new float[queries.size()][];
+        for (int i = 0; i < values.length; i++) {
+            float[] query = queries.get(i);
+            checkArgument(query.length == dimension, "Expected query of dimension %s, got %s", dimension,
+                    query.length);
+            values[i] = distanceStrategy.requiresNormalization() ? normalize(query) : query;
+        }
+        if (size == 0 || k <= 0) {
+            return Collections.nCopies(values.length, List.of());
+        }
+
+        NeighborQueue[] topK;
+        if (quantizer == null) {
+            topK = size <= partitionSize
+                    ? scoreRange(values, 0, size, k, filter)
+                    : forkJoinPool.invoke(new SearchTask(values, null, 0, size, k, filter));
+        } else {
+            CodeScorer[] scorers = new CodeScorer[values.length];
+            for (int i = 0; i < values.length; i++) {
+                scorers[i] = quantizer.scorer(values[i], distanceStrategy);
+            }
+            int coarseK = Math.max(k, candidates);
+            topK = size <= partitionSize
+                    ? scoreCodes(scorers, 0, size, coarseK, filter)
+                    : forkJoinPool.invoke(new SearchTask(values, scorers, 0, size, coarseK, filter));
+            for (int i = 0; i < values.length; i++) {
+                topK[i] = rerank(values[i], topK[i], k);
+            }
+        }
+
+        List<List<Pair<Integer, Float>>> results = new ArrayList<>(values.length);
+        for (NeighborQueue queue : topK) {
+            int count = queue.size();
+            int[] slots = new int[count];
+            float[] scores = new float[count];
+            queue.drainDescending(slots, scores);
+
+            List<Pair<Integer, Float>> neighbors = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                neighbors.add(Pair.of(slots[i], scores[i]));
+            }
+            results.add(neighbors);
+        }
+        return results;
+    }
+
+    private NeighborQueue[] scoreRange(float[][] queries, int start, int end, int k, IntPredicate filter) {
+        NeighborQueue[] topK = newQueues(queries.length, k);
+        int slot = start;
+        if (slot < mappedSize) {
+            int mappedEnd = Math.min(end, mappedSize);
+            float[] block = new float[Math.min(MAPPED_BLOCK_SIZE, mappedEnd - slot) * dimension];
+            for (int page = mappedPage(slot); slot < mappedEnd; page++) {
+                FloatBuffer buffer = mappedPages.get(page);
+                int pageEnd = Math.min(mappedEnd, mappedStarts[page] + buffer.limit() / dimension);
+                while (slot < pageEnd) {
+                    int count = Math.min(MAPPED_BLOCK_SIZE, pageEnd - slot);
+                    buffer.get((slot - mappedStarts[page]) * dimension, block, 0, count * dimension);
+                    for (int i = 0; i < count; i++, slot++) {
+                        if (accept(slot, filter)) {
+                            offer(topK, queries, slot, block, i * dimension, k);
+                        }
+                    }
+                }
+            }
+        }
+        for (; slot < end; slot++) {
+            if (accept(slot, filter)) {
+                int heapSlot = slot - mappedSize;
+                offer(topK, queries, slot, pages[heapSlot >>> pageShift], (heapSlot & pageMask) * dimension, k);
+            }
+        }
+        return topK;
+    }
+
+    private void offer(NeighborQueue[] topK, float[][] queries, int slot, float[] data, int offset, int k) {
+        for (int q = 0; q < queries.length; q++) {
+            topK[q].offer(slot, score(queries[q], data, offset), k);
+        }
+    }
+
+    private NeighborQueue[] scoreCodes(CodeScorer[] scorers, int start, int end, int k, IntPredicate filter) {
+        NeighborQueue[] topK = newQueues(scorers.length, k);
+        int codeSize = quantizer.codeSize();
+        for (int slot = start; slot < end; slot++) {
+            if (accept(slot, filter)) {
+                byte[] codes = codePages[slot >>> pageShift];
+                int offset = (slot & pageMask) * codeSize;
+                for (int q = 0; q < scorers.length; q++) {
+                    topK[q].offer(slot, scorers[q].score(codes, offset), k);
+                }
+            }
+        }
+        return topK;
+    }
+
+    private static NeighborQueue[] newQueues(int count, int k) {
+        NeighborQueue[] queues = new NeighborQueue[count];
+        for (int i = 0; i < count; i++) {
+            queues[i] = new NeighborQueue(k, false);
+        }
+        return queues;
+    }
+
+    /**
+     * Rescore the candidates exactly and keep the k best.
+     */
+    private NeighborQueue rerank(float[] query, NeighborQueue candidates, int k) {
+        NeighborQueue topK = new NeighborQueue(k, false);
+        float[] vector = new float[dimension];
+        while (!candidates.isEmpty()) {
+            int slot = candidates.pop();
+            if (slot < mappedSize) {
+                int page = mappedPage(slot);
+                mappedPages.get(page).get((slot - mappedStarts[page]) * dimension, vector);
+                topK.offer(slot, score(query, vector, 0), k);
+            } else {
+                int heapSlot = slot - mappedSize;
+                topK.offer(slot, score(query, pages[heapSlot >>> pageShift], (heapSlot & pageMask) * dimension), k);
+            }
+        }
+        return topK;
+    }
+
+    private boolean accept(int slot, IntPredicate filter) {
+        return !deleted.get(slot) && (filter == null || filter.test(slot));
+    }
+
+    private float score(float[] query, float[] data, int offset) {
+        return switch (distanceStrategy) {
+            case EUCLIDEAN_DISTANCE -> -squaredEuclideanDistance(query, 0, data, offset, dimension);
+            case MAX_INNER_PRODUCT, COSINE -> dotProduct(query, 0, data, offset, dimension);
+        };
+    }
+
+    /**
+     * Return the mapped page holding the slot.
+     */
+    private int mappedPage(int slot) {
+        int page = Arrays.binarySearch(mappedStarts, slot);
+        return page >= 0 ? page : -page - 2;
+    }
+
+    /**
+     * Scores a range of slots for all queries, splitting it in halves until a partition is small enough. The slots
+     * are scored on their codes when code scorers are given, on the full vectors otherwise.
+     */
+    private class SearchTask extends RecursiveTask<NeighborQueue[]> {
+
+        private final transient float[][] queries;
+
+        private final transient CodeScorer[] scorers;
+
+        private final int start;
+
+        private final int end;
+
+        private final int k;
+
+        private final transient IntPredicate filter;
+
+        SearchTask(float[][] queries, CodeScorer[] scorers, int start, int end, int k, IntPredicate filter) {
+            this.queries = queries;
+            this.scorers = scorers;
+            this.start = start;
+            this.end = end;
+            this.k = k;
+            this.filter = filter;
+        }
+
+        @Override
+        protected NeighborQueue[] compute() {
+            if (end - start <= partitionSize) {
+                return scorers == null
+                        ? scoreRange(queries, start, end, k, filter)
+                        : scoreCodes(scorers, start, end, k, filter);
+            }
+            int middle = (start + end) >>> 1;
+            SearchTask left = new SearchTask(queries, scorers, start, middle, k, filter);
+            left.fork();
+            NeighborQueue[] merged = new SearchTask(queries, scorers, middle, end, k, filter).compute();
+            NeighborQueue[] others = left.join();
+            for (int q = 0; q < merged.length; q++) {
+                NeighborQueue other = others[q];
+                while (!other.isEmpty()) {
+                    float score = other.topScore();
+                    merged[q].offer(other.pop(), score, k);
+                }
+            }
+            return merged;
+        }
+    }
+}
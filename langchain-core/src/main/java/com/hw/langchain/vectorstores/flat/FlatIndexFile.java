@@ -0,0 +1,530 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.flat;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.io.CountingOutputStream;
+import com.hw.langchain.docstore.in.memory.InMemoryDocstore;
+import com.hw.langchain.exception.LangChainException;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Getter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static com.hw.langchain.chains.query.constructor.JsonUtils.convertFromJsonStr;
+import static com.hw.langchain.chains.query.constructor.JsonUtils.writeValueAsString;
+
+/**
+ * Versioned binary file persisting a {@link FlatIndex} together with the documents of its slots.
+ * <p>
+ * The file starts with a 64 bytes header followed by segments, each aligned to 64 bytes:
+ * <pre>
+ * header:  magic | version | dimension | distance strategy name length | distance strategy name | padding
+ * segment: magic | count | tombstone count | padding | vectors length | entries length | records length
+ *          | vectors crc32 | records crc32 | padding
+ *          vectors  count * dimension little-endian floats, padded to 64 bytes
+ *          records  entries  id, text and json metadata of every live slot, then the id of every earlier slot
+ *                            removed since the previous segment, each field as length and UTF-8 bytes
+ *                   offsets  per slot and tombstone, offset of its entry in the records or -1 for a removed slot,
+ *                            aligned to 8 bytes, padded to 64 bytes
+ * </pre>
+ * Saving appends a segment holding only the slots added since the last save, the file is never rewritten. The
+ * segment header is written last, once the rest of the segment is forced to disk, so a crash during append leaves
+ * a segment without a valid header, which is ignored and overwritten by the next append. The checksums cover the
+ * vectors and the records, and are verified on open with one sequential pass over each segment.
+ * <p>
+ * Opening maps the vectors and records read-only with {@link FileChannel#map}, so they stay off-heap and are paged
+ * in by the OS on first access. Only the ids are read into the heap, the text and metadata of a document are
+ * decoded from the mapped records whenever it is read. The records are mapped in chunks of 1 GiB that no entry
+ * crosses, so a segment is not bound by the 2 GB limit of a buffer.
+ *
+ * @author HamaWhite
+ */
+public class FlatIndexFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlatIndexFile.class);
+
+    private static final int MAGIC = 0x4C435646;
+
+    private static final int SEGMENT_MAGIC = 0x5345474D;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 64;
+
+    private static final int ALIGNMENT = 64;
+
+    /**
+     * Records are mapped in chunks of 1 GiB, an entry larger than a chunk cannot be persisted.
+     */
+    private static final int CHUNK_SHIFT = 30;
+
+    private static final long CHUNK_BYTES = 1L << CHUNK_SHIFT;
+
+    /**
+     * Number of floats written through the direct buffer at once.
+     */
+    private static final int WRITE_BUFFER_FLOATS = 1 << 18;
+
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private final Path path;
+
+    private final int dimension;
+
+    private final DistanceStrategy distanceStrategy;
+
+    /**
+     * Segments read on open, keyed by their first slot.
+     */
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+
+    /**
+     * Number of slots persisted in the file.
+     */
+    private int size;
+
+    /**
+     * Offset just past the last complete segment, where the next segment is appended.
+     */
+    private long end;
+
+    private FlatIndexFile(Path path, int dimension, DistanceStrategy distanceStrategy, int size, long end) {
+        this.path = path;
+        this.dimension = dimension;
+        this.distanceStrategy = distanceStrategy;
+        this.size = size;
+        this.end = end;
+    }
+
+    /**
+     * Create an empty index file, replacing any existing file at the path. The header is written to a temporary file
+     * moved over the path, so a store still mapping the replaced file keeps reading it instead of a truncated one.
+     */
+    public static FlatIndexFile create(Path path, int dimension, DistanceStrategy distanceStrategy) {
+        // the strategy is persisted by name, so reordering the enum constants keeps existing files readable
+        byte[] strategy = distanceStrategy.name().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(dimension)
+                .putInt(strategy.length)
+                .put(strategy);
+        header.clear();
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writeFully(channel, header);
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new LangChainException("Failed to create index file " + path, e);
+        }
+        return new FlatIndexFile(path, dimension, distanceStrategy, 0, HEADER_SIZE);
+    }
+
+    /**
+     * Open an existing index file and validate its header, the segments are read by {@link #readSegments}.
+     */
+    public static FlatIndexFile open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new LangChainException("Index file %s is too short to be valid.", path);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new LangChainException("File %s is not a vector index file.", path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new LangChainException("Unsupported index file version %s in %s.", version, path);
+            }
+            int dimension = header.getInt();
+            byte[] strategy = new byte[header.getInt()];
+            header.get(strategy);
+            DistanceStrategy distanceStrategy = distanceStrategy(new String(strategy, StandardCharsets.US_ASCII));
+            return new FlatIndexFile(path, dimension, distanceStrategy, 0, HEADER_SIZE);
+        } catch (IOException e) {
+            throw new LangChainException("Failed to open index file " + path, e);
+        }
+    }
+
+    /**
+     * Read the complete segments of the file in order, this must be called once right after {@link #open}.
+     */
+    public void readSegments(Consumer<Segment> consumer) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            Segment segment;
+            while ((segment = readSegment(channel, fileSize)) != null) {
+                consumer.accept(segment);
+            }
+        } catch (IOException e) {
+            throw new LangChainException("Failed to read index file " + path, e);
+        }
+    }
+
+    /**
+     * Decode the document of a slot read by {@link #readSegments} from the mapped records.
+     *
+     * @return the document, or null if the slot was removed when its segment was appended
+     */
+    public Document document(int slot) {
+        Map.Entry<Integer, Segment> entry = segments.floorEntry(slot);
+        return entry.getValue().getDocument(slot - entry.getKey());
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public DistanceStrategy distanceStrategy() {
+        return distanceStrategy;
+    }
+
+    /**
+     * Number of slots persisted in the file.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Append a segment holding the index slots added since the last append.
+     *
+     * @param index      the index whose first {@link #size()} slots are already persisted
+     * @param docstore   the documents of the index slots
+     * @param tombstones ids of persisted documents removed since the last append
+     */
+    public void append(FlatIndex index, InMemoryDocstore docstore, List<String> tombstones) {
+        int count = index.size() - size;
+        long vectorsLength = (long) count * dimension * Float.BYTES;
+        CRC32 vectorsCrc = new CRC32();
+        CRC32 recordsCrc = new CRC32();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            // drop a torn segment left by a previous crash
+            channel.truncate(end);
+            channel.position(end + HEADER_SIZE);
+            writeVectors(channel, index, size, index.size(), vectorsCrc);
+            writeFully(channel, ByteBuffer.allocate(padding(vectorsLength)));
+            long recordsOffset = channel.position();
+            long entriesLength = writeRecords(channel, docstore, size, index.size(), tombstones, recordsCrc);
+            long recordsLength = channel.position() - recordsOffset;
+            writeFully(channel, ByteBuffer.allocate(padding(recordsLength)));
+            long segmentEnd = channel.position();
+            channel.force(true);
+
+            // the header commits the segment, it is only written once the rest of the segment is on disk
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(SEGMENT_MAGIC)
+                    .putInt(count)
+                    .putInt(tombstones.size())
+                    .putInt(0)
+                    .putLong(vectorsLength)
+                    .putLong(entriesLength)
+                    .putLong(recordsLength)
+                    .putLong(vectorsCrc.getValue())
+                    .putLong(recordsCrc.getValue());
+            header.clear();
+            channel.position(end);
+            writeFully(channel, header);
+            channel.force(true);
+            end = segmentEnd;
+        } catch (IOException e) {
+            throw new LangChainException("Failed to append segment to index file " + path, e);
+        }
+        size += count;
+    }
+
+    private Segment readSegment(FileChannel channel, long fileSize) throws IOException {
+        if (end + HEADER_SIZE > fileSize) {
+            return null;
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, end, HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != SEGMENT_MAGIC) {
+            LOG.warn("Ignoring invalid segment at offset {} of {}.", end, path);
+            return null;
+        }
+        int count = header.getInt();
+        int tombstoneCount = header.getInt();
+        header.getInt();
+        long vectorsLength = header.getLong();
+        long entriesLength = header.getLong();
+        long recordsLength = header.getLong();
+        long vectorsChecksum = header.getLong();
+        long recordsChecksum = header.getLong();
+
+        long vectorsOffset = end + HEADER_SIZE;
+        long recordsOffset = vectorsOffset + vectorsLength + padding(vectorsLength);
+        long segmentEnd = recordsOffset + recordsLength + padding(recordsLength);
+        if (segmentEnd > fileSize) {
+            LOG.warn("Ignoring torn segment at offset {} of {}.", end, path);
+            return null;
+        }
+
+        List<ByteBuffer> vectorPages = new ArrayList<>();
+        long pageBytes = ((long) dimension << FlatIndex.pageShift(dimension)) * Float.BYTES;
+        for (long offset = 0; offset < vectorsLength; offset += pageBytes) {
+            vectorPages.add(channel.map(FileChannel.MapMode.READ_ONLY, vectorsOffset + offset,
+                    Math.min(pageBytes, vectorsLength - offset)));
+        }
+        ByteBuffer[] chunks = new ByteBuffer[(int) ((recordsLength + CHUNK_BYTES - 1) >>> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            long offset = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, recordsOffset + offset,
+                    Math.min(CHUNK_BYTES, recordsLength - offset));
+        }
+        if (checksum(vectorPages) != vectorsChecksum || checksum(Arrays.asList(chunks)) != recordsChecksum) {
+            LOG.warn("Ignoring corrupted segment at offset {} of {}.", end, path);
+            return null;
+        }
+
+        List<FloatBuffer> vectors = vectorPages.stream()
+                .map(page -> page.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer())
+                .toList();
+        Segment segment = new Segment(vectors, chunks, entriesLength, count, tombstoneCount);
+        segments.put(size, segment);
+        size += count;
+        end = segmentEnd;
+        return segment;
+    }
+
+    private static long checksum(List<ByteBuffer> buffers) {
+        CRC32 crc = new CRC32();
+        buffers.forEach(buffer -> crc.update(buffer.duplicate()));
+        return crc.getValue();
+    }
+
+    private void writeVectors(FileChannel channel, FlatIndex index, int from, int to, CRC32 crc)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(WRITE_BUFFER_FLOATS, dimension) * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (int slot = from; slot < to; slot++) {
+            if (floats.remaining() < dimension) {
+                buffer.limit(floats.position() * Float.BYTES);
+                crc.update(buffer.duplicate());
+                writeFully(channel, buffer);
+                buffer.clear();
+                floats.clear();
+            }
+            floats.put(index.getVector(slot));
+        }
+        buffer.limit(floats.position() * Float.BYTES);
+        crc.update(buffer.duplicate());
+        writeFully(channel, buffer);
+    }
+
+    /**
+     * Write the records of a segment at the channel position, no entry crosses a chunk boundary.
+     *
+     * @return the length of the entries padded to 8 bytes, where the offsets start
+     */
+    private static long writeRecords(FileChannel channel, InMemoryDocstore docstore, int from, int to,
+            List<String> tombstones, CRC32 crc) throws IOException {
+        // the stream is not closed, which would close the channel
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Channels.newOutputStream(channel), crc), WRITE_BUFFER_BYTES));
+        DataOutputStream out = new DataOutputStream(counter);
+        long[] offsets = new long[to - from + tombstones.size()];
+        for (int slot = from; slot < to; slot++) {
+            Document document = docstore.search(slot);
+            if (document == null) {
+                offsets[slot - from] = -1;
+                continue;
+            }
+            String id = docstore.getId(slot);
+            offsets[slot - from] = writeEntry(out, counter, id, id, document.getPageContent(),
+                    writeValueAsString(document.getMetadata()));
+        }
+        for (int i = 0; i < tombstones.size(); i++) {
+            String id = tombstones.get(i);
+            offsets[to - from + i] = writeEntry(out, counter, id, id);
+        }
+        writeZeros(out, (Long.BYTES - counter.getCount() % Long.BYTES) % Long.BYTES);
+        long entriesLength = counter.getCount();
+        for (long offset : offsets) {
+            out.writeLong(offset);
+        }
+        out.flush();
+        return entriesLength;
+    }
+
+    /**
+     * Write the fields as length and UTF-8 bytes, starting at the next chunk if they do not fit in the current one.
+     *
+     * @return the offset of the entry in the records
+     */
+    private static long writeEntry(DataOutputStream out, CountingOutputStream counter, String id, String... fields)
+            throws IOException {
+        byte[][] values = new byte[fields.length][];
+        long length = 0;
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + values[i].length;
+        }
+        if (length > CHUNK_BYTES) {
+            throw new LangChainException("Document %s exceeds the %s bytes limit of a record.", id, CHUNK_BYTES);
+        }
+        long room = CHUNK_BYTES - (counter.getCount() & (CHUNK_BYTES - 1));
+        if (length > room) {
+            writeZeros(out, room);
+        }
+        long offset = counter.getCount();
+        for (byte[] value : values) {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+        return offset;
+    }
+
+    private static void writeZeros(DataOutputStream out, long length) throws IOException {
+        byte[] zeros = new byte[(int) Math.min(length, WRITE_BUFFER_BYTES)];
+        for (long remaining = length; remaining > 0; remaining -= zeros.length) {
+            out.write(zeros, 0, (int) Math.min(remaining, zeros.length));
+        }
+    }
+
+    private static DistanceStrategy distanceStrategy(String name) {
+        try {
+            return DistanceStrategy.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new LangChainException("Unknown distance strategy %s in index file.", name);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int padding(long length) {
+        return (int) ((ALIGNMENT - length % ALIGNMENT) % ALIGNMENT);
+    }
+
+    /**
+     * Slots persisted by one append, a removed slot has a null id and document. Only the ids and tombstones are held
+     * on the heap, the documents are decoded from the mapped records on each read.
+     */
+    public static class Segment {
+
+        /**
+         * Read-only mapped vectors, split in buffers of at most one index page each.
+         */
+        @Getter
+        private final List<FloatBuffer> vectors;
+
+        @Getter
+        private final List<String> ids;
+
+        @Getter
+        private final List<String> tombstones;
+
+        /**
+         * Read-only mapped records, split in chunks of {@link #CHUNK_BYTES}.
+         */
+        private final ByteBuffer[] records;
+
+        private final long entriesLength;
+
+        private Segment(List<FloatBuffer> vectors, ByteBuffer[] records, long entriesLength, int count,
+                int tombstoneCount) {
+            this.vectors = vectors;
+            this.records = records;
+            this.entriesLength = entriesLength;
+            this.ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long offset = offset(i);
+                ids.add(offset < 0 ? null : readString(offset));
+            }
+            this.tombstones = new ArrayList<>(tombstoneCount);
+            for (int i = 0; i < tombstoneCount; i++) {
+                tombstones.add(readString(offset(count + i)));
+            }
+        }
+
+        /**
+         * Decode the document of the i-th slot of the segment, or null if it was removed.
+         */
+        public Document getDocument(int i) {
+            long offset = offset(i);
+            if (offset < 0) {
+                return null;
+            }
+            offset += Integer.BYTES + getInt(offset);
+            String text = readString(offset);
+            offset += Integer.BYTES + getInt(offset);
+            Map<String, Object> metadata = convertFromJsonStr(readString(offset), new TypeReference<>() {
+            });
+            return new Document(text, metadata);
+        }
+
+        private long offset(int i) {
+            long position = entriesLength + (long) i * Long.BYTES;
+            return records[(int) (position >>> CHUNK_SHIFT)].getLong((int) (position & (CHUNK_BYTES - 1)));
+        }
+
+        private int getInt(long position) {
+            return records[(int) (position >>> CHUNK_SHIFT)].getInt((int) (position & (CHUNK_BYTES - 1)));
+        }
+
+        private String readString(long position) {
+            ByteBuffer chunk = records[(int) (position >>> CHUNK_SHIFT)];
+            int index = (int) (position & (CHUNK_BYTES - 1));
+            byte[] bytes = new byte[chunk.getInt(index)];
+            chunk.get(index + Integer.BYTES, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
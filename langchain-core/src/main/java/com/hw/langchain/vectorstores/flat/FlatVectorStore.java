@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.flat;
+
+import com.google.common.collect.Maps;
+import com.hw.langchain.docstore.in.memory.InMemoryDocstore;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.base.VectorStore;
+import com.hw.langchain.vectorstores.quantization.VectorQuantizer;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+import com.hw.langchain.vectorstores.utils.MetadataIndex;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import lombok.Builder;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.hw.langchain.vectorstores.utils.Utils.maximalMarginalRelevance;
+
+/**
+ * In-process vector store that performs exact brute-force search over all embeddings.
+ * <p>
+ * Every query is scored against the whole collection on all cores, which gives perfect recall and serves as the
+ * ground truth for approximate stores. The index is created with the dimension of the first added embedding.
+ * <p>
+ * The store can be persisted with {@link #save(Path)} and reopened with {@link #load(Path, Embeddings)}, the
+ * vectors and documents of a loaded store are memory-mapped and stay off-heap, only their ids are read into the
+ * heap. Saving again to the same file only appends the changes since the previous save.
+ * <p>
+ * With a {@link VectorQuantizer}, the index is quantized once it holds {@code trainingSize} vectors. Searches then
+ * scan the compact codes and rerank {@code rerankFactor * k} candidates on the full vectors. Combined with a loaded
+ * store, only the codes are kept on the heap.
+ *
+ * @author HamaWhite
+ */
+@Builder
+public class FlatVectorStore extends VectorStore {
+
+    /**
+     * Function used to embed the text.
+     */
+    private Embeddings embeddingFunction;
+
+    @Builder.Default
+    private DistanceStrategy distanceStrategy = DistanceStrategy.COSINE;
+
+    /**
+     * Minimum number of vectors scored by a single fork/join task.
+     */
+    @Builder.Default
+    private int partitionSize = 16384;
+
+    /**
+     * The pool running the partitioned search.
+     */
+    @Builder.Default
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+    /**
+     * Optional quantizer of the vectors, null keeps the search exact.
+     */
+    private VectorQuantizer quantizer;
+
+    /**
+     * Number of vectors required to train the quantizer, also the maximum training sample.
+     */
+    @Builder.Default
+    private int trainingSize = 10000;
+
+    /**
+     * Number of candidates per requested document reranked on the full vectors when quantized.
+     */
+    @Builder.Default
+    private int rerankFactor = 10;
+
+    private FlatIndex index;
+
+    /**
+     * The file the store was last saved to or loaded from.
+     */
+    private FlatIndexFile file;
+
+    private final InMemoryDocstore docstore = new InMemoryDocstore();
+
+    private final MetadataIndex metadataIndex = new MetadataIndex();
+
+    /**
+     * Number of leading slots loaded from a file whose metadata is not indexed yet, it is decoded from the file on
+     * the first filtered search instead of on load.
+     */
+    private int unindexedSlots;
+
+    /**
+     * Ids of persisted documents deleted since the last save.
+     */
+    private final List<String> tombstones = new ArrayList<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public List<String> addTexts(List<String> texts, List<Map<String, Object>> metadatas) {
+        return addTexts(texts, embeddingFunction, metadatas);
+    }
+
+    private List<String> addTexts(List<String> texts, Embeddings embedding, List<Map<String, Object>> metadatas) {
+        List<float[]> embeddings = embedding.embedDocumentVectors(texts);
+        if (embeddings.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> ids = new ArrayList<>(texts.size());
+        lock.writeLock().lock();
+        try {
+            if (index == null) {
+                index = new FlatIndex(embeddings.get(0).length, distanceStrategy, partitionSize, forkJoinPool);
+            }
+            for (int i = 0; i < texts.size(); i++) {
+                Map<String, Object> metadata = metadatas == null ? Maps.newHashMap() : new HashMap<>(metadatas.get(i));
+                String id = UUID.randomUUID().toString();
+                int slot = index.add(embeddings.get(i));
+                docstore.add(id, new Document(texts.get(i), metadata));
+                metadataIndex.add(slot, metadata);
+                ids.add(id);
+            }
+            quantizeIfTrainable();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return ids;
+    }
+
+    @Override
+    public void delete(List<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer slot = removeDocument(id);
+                if (slot != null) {
+                    index.markDeleted(slot);
+                    if (file != null && slot < file.size()) {
+                        tombstones.add(id);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Persist the store to a file. Saving to the file the store was loaded from or last saved to appends a segment
+     * with the changes since then, any other path is created from scratch.
+     *
+     * @param path the index file
+     */
+    public void save(Path path) {
+        lock.writeLock().lock();
+        try {
+            checkState(index != null, "Cannot save an empty vector store.");
+            if (file == null || !file.getPath().equals(path)) {
+                file = FlatIndexFile.create(path, index.dimension(), distanceStrategy);
+                tombstones.clear();
+            }
+            if (index.size() > file.size() || !tombstones.isEmpty()) {
+                file.append(index, docstore, tombstones);
+                tombstones.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Load a store saved by {@link #save(Path)}, the vectors and documents are memory-mapped instead of read into
+     * the heap.
+     *
+     * @param path      the index file
+     * @param embedding function used to embed queries and new texts
+     * @return the loaded store, using the distance strategy the file was saved with
+     */
+    public static FlatVectorStore load(Path path, Embeddings embedding) {
+        return load(path, FlatVectorStore.builder().embeddingFunction(embedding));
+    }
+
+    /**
+     * Load a store saved by {@link #save(Path)} with the options of the given builder, such as the quantizer,
+     * trainingSize and rerankFactor. With a quantizer, a store holding trainingSize vectors is quantized on load,
+     * only the codes are held on the heap while the full vectors stay memory-mapped for reranking.
+     *
+     * @param path    the index file
+     * @param builder the configured builder, its distance strategy is replaced by the one of the file
+     * @return the loaded store, using the distance strategy the file was saved with
+     */
+    public static FlatVectorStore load(Path path, FlatVectorStoreBuilder builder) {
+        FlatIndexFile file = FlatIndexFile.open(path);
+        FlatVectorStore store = builder.distanceStrategy(file.distanceStrategy()).build();
+        store.file = file;
+        store.index = new FlatIndex(file.dimension(), store.distanceStrategy, store.partitionSize,
+                store.forkJoinPool);
+        store.docstore.setPersistedReader(file::document);
+        file.readSegments(store::addSegment);
+        store.quantizeIfTrainable();
+        return store;
+    }
+
+    /**
+     * Quantize the index once it holds enough vectors to train the quantizer.
+     */
+    private void quantizeIfTrainable() {
+        if (quantizer != null && !index.isQuantized() && index.size() >= trainingSize) {
+            index.quantize(quantizer, trainingSize);
+        }
+    }
+
+    /**
+     * Whether searches scan the quantized codes.
+     */
+    boolean isQuantized() {
+        return index != null && index.isQuantized();
+    }
+
+    private void addSegment(FlatIndexFile.Segment segment) {
+        segment.getVectors().forEach(index::addMapped);
+        for (int i = 0; i < segment.getIds().size(); i++) {
+            String id = segment.getIds().get(i);
+            if (id == null) {
+                index.markDeleted(docstore.addRemoved());
+            } else {
+                docstore.addPersisted(id);
+            }
+        }
+        unindexedSlots = docstore.size();
+        for (String id : segment.getTombstones()) {
+            Integer slot = removeDocument(id);
+            if (slot != null) {
+                index.markDeleted(slot);
+            }
+        }
+    }
+
+    /**
+     * Remove the document from the docstore and the metadata index.
+     *
+     * @return the slot of the removed document, or null if the id does not exist
+     */
+    private Integer removeDocument(String id) {
+        Integer slot = docstore.getSlot(id);
+        if (slot != null) {
+            if (slot >= unindexedSlots) {
+                metadataIndex.remove(slot, docstore.search(slot).getMetadata());
+            }
+            docstore.remove(id);
+        }
+        return slot;
+    }
+
+    /**
+     * Resolve the filter on the metadata index, the returned predicate restricts the scan before any scoring.
+     */
+    private IntPredicate toPredicate(Map<String, Object> filter) {
+        if (filter == null || filter.isEmpty()) {
+            return null;
+        }
+        // searches hold the read lock only, so concurrent searches index the loaded metadata under the monitor
+        synchronized (metadataIndex) {
+            for (int slot = 0; slot < unindexedSlots; slot++) {
+                Document document = docstore.search(slot);
+                if (document != null) {
+                    metadataIndex.add(slot, document.getMetadata());
+                }
+            }
+            unindexedSlots = 0;
+            return metadataIndex.filter(filter)::get;
+        }
+    }
+
+    /**
+     * Return documents most similar to the embedding, along with similarity scores.
+     *
+     * @param embedding Embedding to look up documents similar to.
+     * @param k         Number of Documents to return.
+     * @param filter    Metadata filter that a document must match, resolved on the metadata index before scoring.
+     * @return List of Documents most similar to the embedding and score for each
+     */
+    private List<Pair<Document, Float>> similaritySearchWithScoreByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+            return index.search(embedding, k, k * rerankFactor, toPredicate(filter)).stream()
+                    .map(neighbor -> Pair.of(docstore.search(neighbor.getLeft()), neighbor.getRight()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Embeddings getEmbeddings() {
+        return embeddingFunction;
+    }
+
+    @Override
+    public List<Document> similaritySearch(String query, int k, Map<String, Object> filter) {
+        return similarSearchByVector(embeddingFunction.embedQueryVector(query), k, filter);
+    }
+
+    @Override
+    protected List<Pair<Document, Float>> innerSimilaritySearchWithRelevanceScores(String query, int k) {
+        float[] embedding = embeddingFunction.embedQueryVector(query);
+        return similaritySearchWithRelevanceScoresByVector(embedding, k, null);
+    }
+
+    @Override
+    public List<Pair<Document, Float>> similaritySearchWithRelevanceScoresByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        return similaritySearchWithScoreByVector(embedding, k, filter).stream()
+                .map(pair -> Pair.of(pair.getLeft(), distanceStrategy.relevanceScore(pair.getRight())))
+                .toList();
+    }
+
+    @Override
+    public List<Document> similarSearchByVector(float[] embedding, int k, Map<String, Object> kwargs) {
+        return similaritySearchWithScoreByVector(embedding, k, kwargs).stream()
+                .map(Pair::getLeft)
+                .toList();
+    }
+
+    /**
+     * Search all embeddings in a single pass over the index, scoring each stored vector against every query.
+     */
+    @Override
+    public List<List<Document>> similaritySearchByVectors(List<float[]> embeddings, int k,
+            Map<String, Object> kwargs) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return Collections.nCopies(embeddings.size(), List.of());
+            }
+            return index.search(embeddings, k, k * rerankFactor, toPredicate(kwargs)).stream()
+                    .map(neighbors -> neighbors.stream()
+                            .map(neighbor -> docstore.search(neighbor.getLeft()))
+                            .toList())
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult) {
+        float[] embedding = embeddingFunction.embedQueryVector(query);
+        return maxMarginalRelevanceSearchByVector(embedding, k, fetchK, lambdaMult);
+    }
+
+    @Override
+    public List<Document> maxMarginalRelevanceSearchByVector(float[] embedding, int k, int fetchK,
+            float lambdaMult) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+            List<Pair<Integer, Float>> neighbors = index.search(embedding, fetchK, fetchK * rerankFactor, null);
+            if (neighbors.isEmpty()) {
+                return List.of();
+            }
+            List<float[]> candidates = neighbors.stream()
+                    .map(neighbor -> index.getVector(neighbor.getLeft()))
+                    .toList();
+            return maximalMarginalRelevance(embedding, candidates, k, lambdaMult).stream()
+                    .map(i -> docstore.search(neighbors.get(i).getLeft()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int fromTexts(List<String> texts, Embeddings embedding, List<Map<String, Object>> metadatas) {
+        return addTexts(texts, embedding, metadatas).size();
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.hnsw;
+
+import com.hw.langchain.vectorstores.flat.FlatIndex;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+import com.hw.langchain.vectorstores.utils.NeighborQueue;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.hw.langchain.math.utils.MathUtils.dotProduct;
+import static com.hw.langchain.math.utils.MathUtils.normalize;
+import static com.hw.langchain.math.utils.MathUtils.squaredEuclideanDistance;
+
+/**
+ * Hierarchical Navigable Small World graph over vectors packed contiguously into primitive float pages, laid out
+ * like the pages of {@link FlatIndex} so that no page exceeds {@link FlatIndex#MAX_PAGE_FLOATS} floats.
+ * <p>
+ * Nodes are identified by dense int ids in insertion order. Deleted nodes stay in the graph to keep it navigable,
+ * but are never returned from a search. The index is not thread-safe, writes must be guarded by the caller.
+ * <p>
+ * See <a href="https://arxiv.org/abs/1603.09320">Efficient and robust approximate nearest neighbor search using
+ * Hierarchical Navigable Small World graphs</a>
+ *
+ * @author HamaWhite
+ */
+public class HnswIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int dimension;
+
+    /**
+     * Maximum number of connections per node on the upper levels.
+     */
+    private final int m;
+
+    /**
+     * Maximum number of connections per node on level 0.
+     */
+    private final int maxM0;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    private final DistanceStrategy distanceStrategy;
+
+    private final Random random;
+
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    private final BitSet deleted = new BitSet();
+
+    /**
+     * Number of vectors of a page is {@code 1 << pageShift}.
+     */
+    private final int pageShift;
+
+    private final int pageMask;
+
+    private float[][] pages = new float[0][];
+
+    /**
+     * links[node][level] holds the neighbor count at index 0, followed by the neighbor ids.
+     */
+    private int[][][] links;
+
+    private int size;
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction, DistanceStrategy distanceStrategy, long seed) {
+        checkArgument(dimension > 0 && dimension <= FlatIndex.MAX_PAGE_FLOATS, "dimension must be in (0, %s], got %s",
+                FlatIndex.MAX_PAGE_FLOATS, dimension);
+        checkArgument(m > 1, "m must be greater than 1, got %s", m);
+        checkArgument(efConstruction > 0, "efConstruction must be positive, got %s", efConstruction);
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.distanceStrategy = distanceStrategy;
+        this.random = new Random(seed);
+        this.pageShift = FlatIndex.pageShift(dimension);
+        this.pageMask = (1 << pageShift) - 1;
+        this.links = new int[INITIAL_CAPACITY][][];
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Number of nodes in the graph, including deleted ones.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Insert a vector into the graph.
+     *
+     * @param vector the vector to insert
+     * @return the node id of the inserted vector
+     */
+    public int add(float[] vector) {
+        checkArgument(vector.length == dimension, "Expected vector of dimension %s, got %s", dimension,
+                vector.length);
+        float[] value = distanceStrategy.requiresNormalization() ? normalize(vector) : vector;
+
+        int node = size;
+        ensureCapacity(node + 1);
+        int page = node >>> pageShift;
+        int offset = (node & pageMask) * dimension;
+        if (page == pages.length) {
+            pages = Arrays.copyOf(pages, page + 1);
+            pages[page] = new float[Math.min(INITIAL_CAPACITY, pageMask + 1) * dimension];
+        } else if (offset + dimension > pages[page].length) {
+            pages[page] = Arrays.copyOf(pages[page], Math.min(pages[page].length * 2, (pageMask + 1) * dimension));
+        }
+        System.arraycopy(value, 0, pages[page], offset, dimension);
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + maxConnections(l)];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedySearch(value, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NeighborQueue results = searchLayer(value, current, efConstruction, l, null);
+            int count = results.size();
+            int[] candidates = new int[count];
+            float[] scores = new float[count];
+            results.drainDescending(candidates, scores);
+
+            for (int neighbor : selectNeighbors(candidates, scores, count, m)) {
+                connect(node, neighbor, l);
+                connect(neighbor, node, l);
+            }
+            current = candidates[0];
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * Mark a node as deleted, it is still used for navigation but no longer returned from a search.
+     */
+    public void markDeleted(int node) {
+        checkArgument(node >= 0 && node < size, "Node %s does not exist.", node);
+        deleted.set(node);
+    }
+
+    public boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    /**
+     * Return a copy of the stored vector, normalized if the distance strategy requires it.
+     */
+    public float[] getVector(int node) {
+        int offset = (node & pageMask) * dimension;
+        return Arrays.copyOfRange(pages[node >>> pageShift], offset, offset + dimension);
+    }
+
+    /**
+     * Search the approximate nearest neighbors of the query.
+     *
+     * @param query  the query vector
+     * @param k      number of neighbors to return
+     * @param ef     size of the dynamic candidate list, larger values trade speed for recall
+     * @param filter nodes must satisfy the filter to be returned, null accepts every node
+     * @return pairs of node id and similarity score, ordered from the most similar
+     */
+    public List<Pair<Integer, Float>> search(float[] query, int k, int ef, IntPredicate filter) {
+        checkArgument(query.length == dimension, "Expected query of dimension %s, got %s", dimension,
+                query.length);
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        float[] value = distanceStrategy.requiresNormalization() ? normalize(query) : query;
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedySearch(value, current, l);
+        }
+        IntPredicate accept = filter == null ? node -> !deleted.get(node) : node -> !deleted.get(node)
+                && filter.test(node);
+        NeighborQueue results = searchLayer(value, current, Math.max(ef, k), 0, accept);
+        while (results.size() > k) {
+            results.pop();
+        }
+        return toNeighbors(results);
+    }
+
+    /**
+     * Search the exact nearest neighbors among the candidate nodes, scoring each of them without walking the graph.
+     * Preferred when a filter accepts so few nodes that the graph search would rarely reach them.
+     *
+     * @param query      the query vector
+     * @param k          number of neighbors to return
+     * @param candidates the nodes to score, deleted nodes are skipped
+     * @return pairs of node id and similarity score, ordered from the most similar
+     */
+    public List<Pair<Integer, Float>> search(float[] query, int k, BitSet candidates) {
+        checkArgument(query.length == dimension, "Expected query of dimension %s, got %s", dimension,
+                query.length);
+        if (k <= 0) {
+            return List.of();
+        }
+        float[] value = distanceStrategy.requiresNormalization() ? normalize(query) : query;
+
+        NeighborQueue results = new NeighborQueue(k + 1, false);
+        for (int node = candidates.nextSetBit(0); node >= 0 && node < size; node = candidates.nextSetBit(node + 1)) {
+            if (!deleted.get(node)) {
+                results.offer(node, score(value, node), k);
+            }
+        }
+        return toNeighbors(results);
+    }
+
+    private static List<Pair<Integer, Float>> toNeighbors(NeighborQueue results) {
+        int count = results.size();
+        int[] nodes = new int[count];
+        float[] scores = new float[count];
+        results.drainDescending(nodes, scores);
+
+        List<Pair<Integer, Float>> neighbors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            neighbors.add(Pair.of(nodes[i], scores[i]));
+        }
+        return neighbors;
+    }
+
+    private int greedySearch(float[] query, int entry, int level) {
+        int current = entry;
+        float currentScore = score(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float score = score(query, neighbors[i]);
+                if (score > currentScore) {
+                    current = neighbors[i];
+                    currentScore = score;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on a single level, returns a min-heap of at most ef accepted nodes.
+     */
+    private NeighborQueue searchLayer(float[] query, int entry, int ef, int level, IntPredicate accept) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(size);
+
+        NeighborQueue candidates = new NeighborQueue(ef, true);
+        NeighborQueue results = new NeighborQueue(ef + 1, false);
+
+        float entryScore = score(query, entry);
+        visited.visit(entry);
+        candidates.add(entry, entryScore);
+        if (accept == null || accept.test(entry)) {
+            results.add(entry, entryScore);
+        }
+
+        while (!candidates.isEmpty()) {
+            if (results.size() >= ef && candidates.topScore() < results.topScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            int[] neighbors = links[candidate][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (!visited.visit(neighbor)) {
+                    continue;
+                }
+                float score = score(query, neighbor);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.add(neighbor, score);
+                    if (accept == null || accept.test(neighbor)) {
+                        results.offer(neighbor, score, ef);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Heuristic neighbor selection, a candidate is kept only if it is closer to the base node than to every
+     * neighbor selected so far, which keeps the graph connected across clusters.
+     *
+     * @param candidates candidate nodes ordered from the most similar to the base node
+     * @param scores     similarity of each candidate to the base node
+     */
+    private int[] selectNeighbors(int[] candidates, float[] scores, int count, int maxConnections) {
+        int[] selected = new int[Math.min(count, maxConnections)];
+        int selectedCount = 0;
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            int candidate = candidates[i];
+            boolean good = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (score(candidate, selected[j]) > scores[i]) {
+                    good = false;
+                    break;
+                }
+            }
+            if (good) {
+                selected[selectedCount++] = candidate;
+            }
+        }
+        return Arrays.copyOf(selected, selectedCount);
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] neighbors = links[from][level];
+        int count = neighbors[0];
+        int maxConnections = neighbors.length - 1;
+        if (count < maxConnections) {
+            neighbors[++count] = to;
+            neighbors[0] = count;
+            return;
+        }
+
+        // the list is full, re-select among the existing neighbors and the new one
+        NeighborQueue queue = new NeighborQueue(count + 1, false);
+        queue.add(to, score(from, to));
+        for (int i = 1; i <= count; i++) {
+            queue.add(neighbors[i], score(from, neighbors[i]));
+        }
+        int total = queue.size();
+        int[] candidates = new int[total];
+        float[] scores = new float[total];
+        queue.drainDescending(candidates, scores);
+
+        int[] selected = selectNeighbors(candidates, scores, total, maxConnections);
+        System.arraycopy(selected, 0, neighbors, 1, selected.length);
+        neighbors[0] = selected.length;
+    }
+
+    private float score(float[] query, int node) {
+        float[] vectors = pages[node >>> pageShift];
+        int offset = (node & pageMask) * dimension;
+        return switch (distanceStrategy) {
+            case EUCLIDEAN_DISTANCE -> -squaredEuclideanDistance(query, 0, vectors, offset, dimension);
+            case MAX_INNER_PRODUCT, COSINE -> dotProduct(query, 0, vectors, offset, dimension);
+        };
+    }
+
+    private float score(int a, int b) {
+        float[] aVectors = pages[a >>> pageShift];
+        float[] bVectors = pages[b >>> pageShift];
+        int aOffset = (a & pageMask) * dimension;
+        int bOffset = (b & pageMask) * dimension;
+        return switch (distanceStrategy) {
+            case EUCLIDEAN_DISTANCE -> -squaredEuclideanDistance(aVectors, aOffset, bVectors, bOffset, dimension);
+            case MAX_INNER_PRODUCT, COSINE -> dotProduct(aVectors, aOffset, bVectors, bOffset, dimension);
+        };
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > links.length) {
+            int newCapacity = Math.max(capacity, links.length + (links.length >> 1));
+            links = Arrays.copyOf(links, newCapacity);
+        }
+    }
+
+    /**
+     * Visited marks reused across searches of one thread, an epoch counter avoids clearing the array.
+     */
+    private static class VisitedSet {
+
+        private int[] marks = new int[0];
+
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length + (marks.length >> 1))];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * Mark the node as visited and return true if it was not visited before.
+         */
+        boolean visit(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
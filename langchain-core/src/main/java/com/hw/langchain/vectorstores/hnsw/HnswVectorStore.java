@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.hnsw;
+
+import com.google.common.collect.Maps;
+import com.hw.langchain.docstore.in.memory.InMemoryDocstore;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.base.VectorStore;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+import com.hw.langchain.vectorstores.utils.MetadataIndex;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import lombok.Builder;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.hw.langchain.vectorstores.utils.Utils.maximalMarginalRelevance;
+
+/**
+ * In-process vector store backed by an HNSW graph, searches are served from memory without a network round trip.
+ * <p>
+ * Embeddings are kept as primitive floats packed into a single array. The graph is created with the dimension of
+ * the first added embedding.
+ *
+ * @author HamaWhite
+ */
+@Builder
+public class HnswVectorStore extends VectorStore {
+
+    /**
+     * Function used to embed the text.
+     */
+    private Embeddings embeddingFunction;
+
+    @Builder.Default
+    private DistanceStrategy distanceStrategy = DistanceStrategy.COSINE;
+
+    /**
+     * Maximum number of connections per node, level 0 allows twice as many.
+     */
+    @Builder.Default
+    private int m = 16;
+
+    /**
+     * Size of the dynamic candidate list while building the graph, larger values build a better graph slower.
+     */
+    @Builder.Default
+    private int efConstruction = 200;
+
+    /**
+     * Size of the dynamic candidate list while searching, larger values trade speed for recall.
+     */
+    @Builder.Default
+    private int efSearch = 50;
+
+    /**
+     * Seed for the random level generator, which makes the graph construction reproducible.
+     */
+    @Builder.Default
+    private long seed = 42L;
+
+    /**
+     * Filters matching at most this many documents are searched exactly over the matches instead of in the graph,
+     * where so few accepted nodes would be hard to reach.
+     */
+    @Builder.Default
+    private int exactSearchThreshold = 1000;
+
+    private HnswIndex index;
+
+    /**
+     * Documents are stored at the node id of the graph.
+     */
+    private final InMemoryDocstore docstore = new InMemoryDocstore();
+
+    private final MetadataIndex metadataIndex = new MetadataIndex();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public List<String> addTexts(List<String> texts, List<Map<String, Object>> metadatas) {
+        return addTexts(texts, embeddingFunction, metadatas);
+    }
+
+    private List<String> addTexts(List<String> texts, Embeddings embedding, List<Map<String, Object>> metadatas) {
+        List<float[]> embeddings = embedding.embedDocumentVectors(texts);
+        if (embeddings.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> ids = new ArrayList<>(texts.size());
+        lock.writeLock().lock();
+        try {
+            if (index == null) {
+                index = new HnswIndex(embeddings.get(0).length, m, efConstruction, distanceStrategy, seed);
+            }
+            for (int i = 0; i < texts.size(); i++) {
+                Map<String, Object> metadata = metadatas == null ? Maps.newHashMap() : new HashMap<>(metadatas.get(i));
+                String id = UUID.randomUUID().toString();
+                int node = index.add(embeddings.get(i));
+                docstore.add(id, new Document(texts.get(i), metadata));
+                metadataIndex.add(node, metadata);
+                ids.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return ids;
+    }
+
+    @Override
+    public void delete(List<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer node = docstore.getSlot(id);
+                if (node != null) {
+                    metadataIndex.remove(node, docstore.search(node).getMetadata());
+                    docstore.remove(id);
+                    index.markDeleted(node);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return documents most similar to the embedding, along with similarity scores.
+     *
+     * @param embedding Embedding to look up documents similar to.
+     * @param k         Number of Documents to return.
+     * @param filter    Metadata filter that a document must match, resolved on the metadata index before the search.
+     * @return List of Documents most similar to the embedding and score for each
+     */
+    private List<Pair<Document, Float>> similaritySearchWithScoreByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+            List<Pair<Integer, Float>> neighbors;
+            if (filter == null || filter.isEmpty()) {
+                neighbors = index.search(embedding, k, efSearch, null);
+            } else {
+                BitSet candidates = metadataIndex.filter(filter);
+                neighbors = candidates.cardinality() <= exactSearchThreshold
+                        ? index.search(embedding, k, candidates)
+                        : index.search(embedding, k, efSearch, candidates::get);
+            }
+            return neighbors.stream()
+                    .map(neighbor -> Pair.of(docstore.search(neighbor.getLeft()), neighbor.getRight()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Embeddings getEmbeddings() {
+        return embeddingFunction;
+    }
+
+    @Override
+    public List<Document> similaritySearch(String query, int k, Map<String, Object> filter) {
+        return similarSearchByVector(embeddingFunction.embedQueryVector(query), k, filter);
+    }
+
+    @Override
+    protected List<Pair<Document, Float>> innerSimilaritySearchWithRelevanceScores(String query, int k) {
+        float[] embedding = embeddingFunction.embedQueryVector(query);
+        return similaritySearchWithRelevanceScoresByVector(embedding, k, null);
+    }
+
+    @Override
+    public List<Pair<Document, Float>> similaritySearchWithRelevanceScoresByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        return similaritySearchWithScoreByVector(embedding, k, filter).stream()
+                .map(pair -> Pair.of(pair.getLeft(), distanceStrategy.relevanceScore(pair.getRight())))
+                .toList();
+    }
+
+    @Override
+    public List<Document> similarSearchByVector(float[] embedding, int k, Map<String, Object> kwargs) {
+        return similaritySearchWithScoreByVector(embedding, k, kwargs).stream()
+                .map(Pair::getLeft)
+                .toList();
+    }
+
+    @Override
+    public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult) {
+        float[] embedding = embeddingFunction.embedQueryVector(query);
+        return maxMarginalRelevanceSearchByVector(embedding, k, fetchK, lambdaMult);
+    }
+
+    @Override
+    public List<Document> maxMarginalRelevanceSearchByVector(float[] embedding, int k, int fetchK,
+            float lambdaMult) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+            List<Pair<Integer, Float>> neighbors = index.search(embedding, fetchK, Math.max(efSearch, fetchK), null);
+            if (neighbors.isEmpty()) {
+                return List.of();
+            }
+            List<float[]> candidates = neighbors.stream()
+                    .map(neighbor -> index.getVector(neighbor.getLeft()))
+                    .toList();
+            return maximalMarginalRelevance(embedding, candidates, k, lambdaMult).stream()
+                    .map(i -> docstore.search(neighbors.get(i).getLeft()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int fromTexts(List<String> texts, Embeddings embedding, List<Map<String, Object>> metadatas) {
+        return addTexts(texts, embedding, metadatas).size();
+    }
+}
@@ -19,9 +19,13 @@
 package com.hw.langchain.vectorstores.milvus;
 
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Floats;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.exception.LangChainException;
 import com.hw.langchain.schema.Document;
 import com.hw.langchain.vectorstores.base.VectorStore;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -35,16 +39,21 @@ import io.milvus.grpc.*;
 import io.milvus.param.*;
 import io.milvus.param.collection.*;
 import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.QueryParam;
 import io.milvus.param.dml.SearchParam;
 import io.milvus.param.index.CreateIndexParam;
 import io.milvus.param.index.DescribeIndexParam;
 import io.milvus.response.DescIndexResponseWrapper;
+import io.milvus.response.QueryResultsWrapper;
 import io.milvus.response.SearchResultsWrapper;
 import lombok.Builder;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.hw.langchain.chains.query.constructor.JsonUtils.writeValueAsString;
+import static com.hw.langchain.vectorstores.utils.Utils.maximalMarginalRelevance;
 
 /**
  * Initialize wrapper around the milvus vector database.
@@ -86,6 +95,12 @@ public class Milvus extends VectorStore {
     @Builder.Default
     private int batchSize = 1000;
 
+    /**
+     * Maximum number of insert batches in flight while the next batch is embedded.
+     */
+    @Builder.Default
+    private int maxInFlightBatches = 4;
+
     private MilvusClient milvusClient;
 
     /**
@@ -113,6 +128,11 @@ public class Milvus extends VectorStore {
 
     private Map<String, Object> searchParams;
 
+    /**
+     * Whether the collection schema, index and search params are known and the collection is loaded.
+     */
+    private final AtomicBoolean initialized = new AtomicBoolean();
+
     public Milvus init() {
         milvusClient = new MilvusServiceClient(connectParam);
         // default search params when one is not provided.
@@ -125,6 +145,10 @@ public class Milvus extends VectorStore {
                             .withCollectionName(collectionName)
                             .build());
         }
+        // initialize the existing collection so that it can be searched right away
+        if (hasCollection()) {
+            innerInit(List.of(), null);
+        }
         return this;
     }
 
@@ -174,23 +198,36 @@ public class Milvus extends VectorStore {
         return milvusClient.hasCollection(requestParam).getData();
     }
 
-    private void innerInit(List<List<Float>> embeddings, List<Map<String, Object>> metadatas) {
-        if (CollectionUtils.isNotEmpty(embeddings)) {
-            createCollection(embeddings, metadatas);
+    /**
+     * Create the collection if needed and cache its schema and search params, this runs only once per instance.
+     * Concurrent callers wait for the first one, so the collection and index are never created twice.
+     */
+    private void innerInit(List<float[]> embeddings, List<Map<String, Object>> metadatas) {
+        if (initialized.get()) {
+            return;
+        }
+        synchronized (this) {
+            if (initialized.get()) {
+                return;
+            }
+            if (CollectionUtils.isNotEmpty(embeddings) && !hasCollection()) {
+                createCollection(embeddings, metadatas);
+            }
+            extractFields();
+            createIndex();
+            createSearchParams();
+            load();
+            initialized.set(true);
         }
-        extractFields();
-        createIndex();
-        createSearchParams();
-        load();
     }
 
-    public void createCollection(List<List<Float>> embeddings, List<Map<String, Object>> metadatas) {
+    public void createCollection(List<float[]> embeddings, List<Map<String, Object>> metadatas) {
         CreateCollectionParam.Builder builder = CreateCollectionParam.newBuilder()
                 .withCollectionName(collectionName)
                 .withEnableDynamicField(true);
 
         // determine embedding dim
-        int dim = embeddings.get(0).size();
+        int dim = embeddings.get(0).length;
         // determine metadata schema
         if (CollectionUtils.isNotEmpty(metadatas)) {
             // create FieldSchema for each entry in metadata.
@@ -318,21 +355,56 @@ public class Milvus extends VectorStore {
         milvusClient.loadCollection(requestParam);
     }
 
+    /**
+     * Insert text data into Milvus.
+     * <p>
+     * Texts are embedded and inserted in batches of batchSize. Inserts are sent asynchronously, so the next batch is
+     * embedded while up to maxInFlightBatches previous batches are being inserted.
+     *
+     * @param texts     The texts to embed.
+     * @param metadatas Metadata dicts attached to each of the texts.
+     * @return The resulting keys for each inserted element, in the order of the texts.
+     */
     @Override
     public List<String> addTexts(List<String> texts, List<Map<String, Object>> metadatas) {
-        List<List<Float>> embeddings = embeddingFunction.embedDocuments(texts);
-        if (embeddings.isEmpty()) {
+        if (texts.isEmpty()) {
             LOG.warn("Nothing to insert, skipping.");
             return List.of();
         }
 
-        // if the collection hasn't been initialized yet, perform all steps to take so
-        innerInit(embeddings, metadatas);
+        // total insert count
+        int totalCount = texts.size();
+        List<String> pks = new ArrayList<>(totalCount);
+        Deque<ListenableFuture<R<MutationResult>>> inFlight = new ArrayDeque<>();
+        for (int i = 0; i < totalCount; i += batchSize) {
+            // grab end index
+            int end = Math.min(i + batchSize, totalCount);
+            List<String> batchTexts = texts.subList(i, end);
+            List<Map<String, Object>> batchMetadatas = CollectionUtils.isEmpty(metadatas) ? null : metadatas.subList(i, end);
+            List<float[]> embeddings = embeddingFunction.embedDocumentVectors(batchTexts);
+
+            // if the collection hasn't been initialized yet, perform all steps to take so
+            innerInit(embeddings, batchMetadatas);
 
+            // bound the in-flight batches, waiting for the oldest one keeps the keys in order
+            if (inFlight.size() >= maxInFlightBatches) {
+                pks.addAll(awaitInsert(inFlight.poll()));
+            }
+            inFlight.add(milvusClient.insertAsync(createInsertParam(batchTexts, embeddings, batchMetadatas)));
+        }
+        while (!inFlight.isEmpty()) {
+            pks.addAll(awaitInsert(inFlight.poll()));
+        }
+        return pks;
+    }
+
+    private InsertParam createInsertParam(List<String> texts, List<float[]> embeddings,
+            List<Map<String, Object>> metadatas) {
         // dict to hold all insert columns
         Map<String, List<?>> insertDict = Maps.newHashMap();
         insertDict.put(textField, texts);
-        insertDict.put(vectorField, embeddings);
+        // the Milvus SDK only accepts boxed vectors, so they are wrapped as list views at the boundary
+        insertDict.put(vectorField, embeddings.stream().map(Floats::asList).toList());
 
         // collect the metadata into the insert dict.
         if (metadatas != null) {
@@ -340,51 +412,114 @@ public class Milvus extends VectorStore {
                 meta.forEach((key, value) -> {
                     if (fields.contains(key)) {
                         @SuppressWarnings("unchecked")
-                        List<Object> dict = (List<Object>) insertDict.get(key);
-                        if (dict == null) {
-                            dict = new ArrayList<>();
-                            insertDict.put(key, dict);
-                        }
+                        List<Object> dict = (List<Object>) insertDict.computeIfAbsent(key, k -> new ArrayList<>());
                         dict.add(value);
                     }
                 });
             }
         }
 
-        // total insert count
-        int totalCount = embeddings.size();
-        List<String> pks = new ArrayList<>();
-        for (int i = 0; i < totalCount; i += batchSize) {
-            // grab end index
-            int end = Math.min(i + batchSize, totalCount);
-            // convert map to batch list for insertion
-            List<InsertParam.Field> insertFields = new ArrayList<>();
-            for (String field : fields) {
-                insertFields.add(new InsertParam.Field(field, insertDict.get(field).subList(i, end)));
-            }
-            // insert into the collection.
-            InsertParam insertParam = InsertParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withFields(insertFields)
-                    .build();
-            var res = milvusClient.insert(insertParam);
-            pks.addAll(res.getData().getIDs().getStrId().getDataList());
+        // convert map to batch list for insertion
+        List<InsertParam.Field> insertFields = new ArrayList<>();
+        for (String field : fields) {
+            insertFields.add(new InsertParam.Field(field, insertDict.get(field)));
+        }
+        return InsertParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFields(insertFields)
+                .build();
+    }
+
+    private List<String> awaitInsert(ListenableFuture<R<MutationResult>> future) {
+        try {
+            R<MutationResult> res = future.get();
+            checkResponse(res, "insert");
+            IDs ids = res.getData().getIDs();
+            return ids.hasIntId()
+                    ? ids.getIntId().getDataList().stream().map(String::valueOf).toList()
+                    : ids.getStrId().getDataList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LangChainException("Interrupted while inserting into Milvus.", e);
+        } catch (ExecutionException e) {
+            throw new LangChainException("Milvus insert failed.", e.getCause());
         }
-        return pks;
     }
 
     @Override
     public void delete(List<String> ids) {
     }
 
-    private List<Pair<Document, Float>> similaritySearchWithScore(String query, int k, Map<String, Object> filter) {
+    /**
+     * Perform a search on a query string and return results with score.
+     *
+     * @param query  The text being searched.
+     * @param k      The amount of results to return.
+     * @param filter Metadata key-value pairs that a result must match.
+     * @return List of result doc and score.
+     */
+    public List<Pair<Document, Float>> similaritySearchWithScore(String query, int k, Map<String, Object> filter) {
         // embed the query text.
-        List<Float> embedding = embeddingFunction.embedQuery(query);
+        float[] embedding = embeddingFunction.embedQueryVector(query);
+        return similaritySearchWithScoreByVector(embedding, k, filter);
+    }
 
+    /**
+     * Perform a search on a query vector and return results with score.
+     *
+     * @param embedding The embedding vector being searched.
+     * @param k         The amount of results to return.
+     * @param filter    Metadata key-value pairs that a result must match.
+     * @return List of result doc and score.
+     */
+    public List<Pair<Document, Float>> similaritySearchWithScoreByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        return similaritySearchWithScoreByVectors(List.of(embedding), k, filter).get(0);
+    }
+
+    /**
+     * Perform a search for many query vectors, sending up to batchSize vectors in each search request.
+     *
+     * @param embeddings The embedding vectors being searched.
+     * @param k          The amount of results to return for each vector.
+     * @param filter     Metadata key-value pairs that a result must match.
+     * @return List of result doc and score for each vector, in the order of the vectors.
+     */
+    public List<List<Pair<Document, Float>>> similaritySearchWithScoreByVectors(List<float[]> embeddings, int k,
+            Map<String, Object> filter) {
         // determine result metadata fields.
-        List<String> outputFields = new ArrayList<>(fields);
-        outputFields.remove(vectorField);
+        List<String> outputFields = outputFields();
+        String expr = buildExpression(filter);
+
+        List<List<Pair<Document, Float>>> ret = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i += batchSize) {
+            List<float[]> batch = embeddings.subList(i, Math.min(i + batchSize, embeddings.size()));
+            SearchResultsWrapper wrapperSearch = search(batch, k, outputFields, expr);
+            // organize results.
+            for (int j = 0; j < batch.size(); j++) {
+                ret.add(toHits(wrapperSearch, j, outputFields));
+            }
+        }
+        return ret;
+    }
 
+    /**
+     * Perform a search for many query vectors, sending up to batchSize vectors in each search request.
+     *
+     * @param embeddings The embedding vectors being searched.
+     * @param k          The amount of results to return for each vector.
+     * @param filter     Metadata key-value pairs that a result must match.
+     * @return Document results for each vector, in the order of the vectors.
+     */
+    @Override
+    public List<List<Document>> similaritySearchByVectors(List<float[]> embeddings, int k,
+            Map<String, Object> filter) {
+        return similaritySearchWithScoreByVectors(embeddings, k, filter).stream()
+                .map(docsAndScores -> docsAndScores.stream().map(Pair::getLeft).toList())
+                .toList();
+    }
+
+    private SearchResultsWrapper search(List<float[]> embeddings, int k, List<String> outputFields, String expr) {
         // perform the search.
         SearchParam searchParam = SearchParam.newBuilder()
                 .withCollectionName(collectionName)
@@ -392,27 +527,83 @@ public class Milvus extends VectorStore {
                 .withMetricType(MetricType.valueOf(searchParams.get(METRIC_TYPE).toString()))
                 .withOutFields(outputFields)
                 .withTopK(k)
-                .withVectors(List.of(embedding))
+                // the Milvus SDK only accepts boxed vectors, so they are wrapped as list views at the boundary
+                .withVectors(embeddings.stream().map(Floats::asList).toList())
                 .withVectorFieldName(vectorField)
+                .withExpr(expr)
                 .withParams(writeValueAsString(searchParams.get("params")))
                 .build();
         R<SearchResults> respSearch = milvusClient.search(searchParam);
-        SearchResultsWrapper wrapperSearch = new SearchResultsWrapper(respSearch.getData().getResults());
+        checkResponse(respSearch, "search");
+        return new SearchResultsWrapper(respSearch.getData().getResults());
+    }
 
-        // organize results.
-        List<Pair<Document, Float>> ret = new ArrayList<>();
-        for (var result : wrapperSearch.getRowRecords()) {
+    private List<String> outputFields() {
+        List<String> outputFields = new ArrayList<>(fields);
+        outputFields.remove(vectorField);
+        return outputFields;
+    }
+
+    /**
+     * Organize the hits of the index-th query vector, reading each output field column by column.
+     */
+    private List<Pair<Document, Float>> toHits(SearchResultsWrapper wrapperSearch, int index,
+            List<String> outputFields) {
+        List<SearchResultsWrapper.IDScore> idScores = wrapperSearch.getIDScore(index);
+        Map<String, List<?>> columns = Maps.newHashMapWithExpectedSize(outputFields.size());
+        for (String x : outputFields) {
+            columns.put(x, wrapperSearch.getFieldData(x, index));
+        }
+
+        List<Pair<Document, Float>> ret = new ArrayList<>(idScores.size());
+        for (int i = 0; i < idScores.size(); i++) {
             Map<String, Object> meta = Maps.newHashMap();
-            for (String x : outputFields) {
-                meta.put(x, result.get(x));
+            for (var entry : columns.entrySet()) {
+                meta.put(entry.getKey(), entry.getValue().get(i));
             }
             Document doc = new Document((String) meta.remove(textField), meta);
-            Pair<Document, Float> pair = Pair.of(doc, (Float) result.get("distance"));
-            ret.add(pair);
+            ret.add(Pair.of(doc, idScores.get(i).getScore()));
         }
         return ret;
     }
 
+    /**
+     * Build a boolean expression requiring every metadata key to equal its value, or to be one of its values when
+     * the value is a collection.
+     */
+    static String buildExpression(Map<String, Object> filter) {
+        if (filter == null || filter.isEmpty()) {
+            return "";
+        }
+        List<String> conditions = new ArrayList<>(filter.size());
+        filter.forEach((key, value) -> {
+            if (value instanceof Collection<?> values) {
+                conditions.add(key + " in " + values.stream().map(Milvus::toLiteral).toList());
+            } else {
+                conditions.add(key + " == " + toLiteral(value));
+            }
+        });
+        return String.join(" and ", conditions);
+    }
+
+    private static String toLiteral(Object value) {
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        return "\"" + value.toString().replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static void checkResponse(R<?> response, String operation) {
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            throw new LangChainException("Milvus %s failed: %s", operation, response.getMessage());
+        }
+    }
+
+    @Override
+    public Embeddings getEmbeddings() {
+        return embeddingFunction;
+    }
+
     @Override
     public List<Document> similaritySearch(String query, int k, Map<String, Object> filter) {
         List<Pair<Document, Float>> docsAndScores = similaritySearchWithScore(query, k, filter);
@@ -421,23 +612,96 @@ public class Milvus extends VectorStore {
 
     @Override
     protected List<Pair<Document, Float>> innerSimilaritySearchWithRelevanceScores(String query, int k) {
-        return null;
+        return similaritySearchWithRelevanceScoresByVector(embeddingFunction.embedQueryVector(query), k, null);
     }
 
     @Override
-    public List<Document> similarSearchByVector(List<Float> embedding, int k, Map<String, Object> kwargs) {
-        return null;
+    public List<Pair<Document, Float>> similaritySearchWithRelevanceScoresByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        return similaritySearchWithScoreByVector(embedding, k, filter).stream()
+                .map(pair -> Pair.of(pair.getLeft(), relevanceScore(pair.getRight())))
+                .toList();
+    }
+
+    /**
+     * Normalize the distance returned by Milvus to a relevance score in [0, 1], L2 distances are squared.
+     */
+    private float relevanceScore(float distance) {
+        String metricType = searchParams.get(METRIC_TYPE).toString();
+        return switch (metricType) {
+            case "L2" -> DistanceStrategy.EUCLIDEAN_DISTANCE.relevanceScore(-distance);
+            case "IP" -> DistanceStrategy.MAX_INNER_PRODUCT.relevanceScore(distance);
+            case "COSINE" -> DistanceStrategy.COSINE.relevanceScore(distance);
+            default -> throw new IllegalArgumentException("No relevance score for metric type " + metricType + ".");
+        };
+    }
+
+    @Override
+    public List<Document> similarSearchByVector(float[] embedding, int k, Map<String, Object> kwargs) {
+        return similaritySearchWithScoreByVector(embedding, k, kwargs).stream()
+                .map(Pair::getLeft)
+                .toList();
     }
 
     @Override
     public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult) {
-        return null;
+        float[] embedding = embeddingFunction.embedQueryVector(query);
+        return maxMarginalRelevanceSearchByVector(embedding, k, fetchK, lambdaMult);
     }
 
     @Override
-    public List<Document> maxMarginalRelevanceSearchByVector(List<Float> embedding, int k, int fetchK,
+    public List<Document> maxMarginalRelevanceSearchByVector(float[] embedding, int k, int fetchK,
             float lambdaMult) {
-        return null;
+        List<String> outputFields = outputFields();
+        SearchResultsWrapper wrapperSearch = search(List.of(embedding), fetchK, outputFields, "");
+        List<Pair<Document, Float>> hits = toHits(wrapperSearch, 0, outputFields);
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        // the search does not return vectors, so they are fetched by primary key.
+        List<Long> ids = wrapperSearch.getIDScore(0).stream()
+                .map(SearchResultsWrapper.IDScore::getLongID)
+                .toList();
+        Map<Long, float[]> vectors = queryVectors(ids);
+
+        // entities deleted between the search and the query are no longer candidates.
+        List<Document> docs = new ArrayList<>(ids.size());
+        List<float[]> candidates = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            float[] vector = vectors.get(ids.get(i));
+            if (vector == null) {
+                LOG.warn("Skipping MMR candidate {}, its vector is no longer in collection {}.", ids.get(i),
+                        collectionName);
+                continue;
+            }
+            docs.add(hits.get(i).getLeft());
+            candidates.add(vector);
+        }
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        return maximalMarginalRelevance(embedding, candidates, k, lambdaMult).stream()
+                .map(docs::get)
+                .toList();
+    }
+
+    private Map<Long, float[]> queryVectors(List<Long> ids) {
+        QueryParam queryParam = QueryParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withConsistencyLevel(consistencyLevel)
+                .withExpr(primaryField + " in " + ids)
+                .withOutFields(List.of(primaryField, vectorField))
+                .build();
+        R<QueryResults> respQuery = milvusClient.query(queryParam);
+        checkResponse(respQuery, "query");
+
+        Map<Long, float[]> vectors = Maps.newHashMapWithExpectedSize(ids.size());
+        for (var result : new QueryResultsWrapper(respQuery.getData()).getRowRecords()) {
+            @SuppressWarnings("unchecked")
+            List<Float> vector = (List<Float>) result.get(vectorField);
+            vectors.put((Long) result.get(primaryField), Floats.toArray(vector));
+        }
+        return vectors;
     }
 
     @Override
@@ -19,9 +19,12 @@
 package com.hw.langchain.vectorstores.pinecone;
 
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Floats;
 import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.exception.LangChainException;
 import com.hw.langchain.schema.Document;
 import com.hw.langchain.vectorstores.base.VectorStore;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
 import com.hw.pinecone.IndexClient;
 import com.hw.pinecone.PineconeClient;
 import com.hw.pinecone.entity.vector.*;
@@ -33,14 +36,26 @@ import org.slf4j.LoggerFactory;
 
 import lombok.Builder;
 import lombok.Getter;
+import reactor.adapter.rxjava.RxJava2Adapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.hw.langchain.vectorstores.utils.Nd4jUtils.createFromList;
+import static com.hw.langchain.utils.Resilience4jRetryUtils.retryWithExponentialBackoff;
+import static com.hw.langchain.utils.ThreadPoolUtil.BLOCKING_IO_EXECUTOR;
+import static com.hw.langchain.utils.ThreadPoolUtil.mapBounded;
 import static com.hw.langchain.vectorstores.utils.Utils.maximalMarginalRelevance;
 
 /**
@@ -60,6 +75,12 @@ public class Pinecone extends VectorStore {
 
     private Function<String, List<Float>> embeddingFunction;
 
+    /**
+     * Optional embeddings, when set texts are embedded a batch per request and queries through
+     * {@link Embeddings#embedQueryVector}, instead of one embeddingFunction call per text.
+     */
+    private Embeddings embedding;
+
     @Builder.Default
     private String textKey = "text";
 
@@ -69,6 +90,41 @@ public class Pinecone extends VectorStore {
     @Builder.Default
     private String namespace = "";
 
+    /**
+     * The metric of the index, used to normalize the query scores to relevance scores.
+     */
+    @Builder.Default
+    private DistanceStrategy distanceStrategy = DistanceStrategy.COSINE;
+
+    /**
+     * Maximum number of batches embedded and upserted concurrently, also the number of concurrent queries.
+     */
+    @Builder.Default
+    private int maxConcurrency = 4;
+
+    /**
+     * Maximum number of attempts to upsert a batch.
+     */
+    @Builder.Default
+    private int maxRetries = 3;
+
+    /**
+     * Wait before the first retry of a failed upsert, doubled for each further retry up to four times this value.
+     */
+    @Builder.Default
+    private Duration retryInterval = Duration.ofSeconds(4);
+
+    /**
+     * The executor running the concurrent upserts and queries, up to maxConcurrency of them per call.
+     */
+    @Builder.Default
+    private Executor executor = BLOCKING_IO_EXECUTOR;
+
+    /**
+     * Optional listener called after each upserted batch with the number of upserted and total texts.
+     */
+    private BiConsumer<Integer, Integer> progressListener;
+
     /**
      * Validate parameters and init client
      */
@@ -89,9 +145,18 @@ public class Pinecone extends VectorStore {
         return this;
     }
 
+    /**
+     * Run more texts through the embeddings and add to the vectorstore.
+     *
+     * @param texts     Strings to add to the vectorstore.
+     * @param metadatas Optional list of metadatas associated with the texts.
+     * @return List of ids from adding the texts into the vectorstore.
+     */
     @Override
     public List<String> addTexts(List<String> texts, List<Map<String, Object>> metadatas) {
-        return null;
+        List<String> ids = createIdsBatch(texts.size());
+        upsertTexts(texts, metadatas, ids, this::embedTexts);
+        return ids;
     }
 
     @Override
@@ -103,6 +168,28 @@ public class Pinecone extends VectorStore {
         index.delete(deleteRequest);
     }
 
+    private float[] embedQuery(String text) {
+        return embedding != null ? embedding.embedQueryVector(text) : Floats.toArray(embeddingFunction.apply(text));
+    }
+
+    private List<float[]> embedTexts(List<String> texts) {
+        if (embedding != null) {
+            return embedding.embedDocumentVectors(texts);
+        }
+        return texts.stream().map(this::embedQuery).toList();
+    }
+
+    /**
+     * Embed the texts without blocking when embedding is set, the embedding function can only run on
+     * {@link Schedulers#boundedElastic()}.
+     */
+    private Mono<List<float[]>> embedTextsAsync(List<String> texts) {
+        if (embedding != null) {
+            return embedding.embedDocumentsAsync(texts);
+        }
+        return Mono.fromCallable(() -> embedTexts(texts)).subscribeOn(Schedulers.boundedElastic());
+    }
+
     /**
      * Return pinecone documents most similar to query, along with scores.
      *
@@ -112,16 +199,33 @@ public class Pinecone extends VectorStore {
      * @return List of Documents most similar to the query and score for each
      */
     private List<Pair<Document, Float>> similaritySearchWithScore(String query, int k, Map<String, Object> filter) {
-        List<Float> queryObj = embeddingFunction.apply(query);
-        QueryRequest queryRequest = QueryRequest.builder()
-                .vector(queryObj)
+        return similaritySearchWithScoreByVector(embedQuery(query), k, filter);
+    }
+
+    /**
+     * Return pinecone documents most similar to embedding, along with scores.
+     *
+     * @param embedding Embedding to look up documents similar to.
+     * @param k         Number of Documents to return.
+     * @param filter    Dictionary of argument(s) to filter on metadata
+     * @return List of Documents most similar to the embedding and score for each
+     */
+    private List<Pair<Document, Float>> similaritySearchWithScoreByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        return toDocuments(index.query(createQueryRequest(embedding, k, filter)));
+    }
+
+    private QueryRequest createQueryRequest(float[] embedding, int k, Map<String, Object> filter) {
+        return QueryRequest.builder()
+                .vector(embedding)
                 .topK(k)
                 .filter(filter)
                 .namespace(namespace)
                 .includeMetadata(true)
                 .build();
-        QueryResponse results = index.query(queryRequest);
+    }
 
+    private List<Pair<Document, Float>> toDocuments(QueryResponse results) {
         List<Pair<Document, Float>> docs = new ArrayList<>();
         for (var res : results.getMatches()) {
             var metadata = res.getMetadata();
@@ -150,24 +254,90 @@ public class Pinecone extends VectorStore {
         return docsAndScores.stream().map(Pair::getLeft).toList();
     }
 
+    /**
+     * Embed the query on {@link Schedulers#boundedElastic()}, the embedding function is blocking, and query Pinecone
+     * without blocking.
+     */
+    @Override
+    public Mono<List<Document>> similaritySearchAsync(String query, int k, Map<String, Object> filter) {
+        return Mono.fromCallable(() -> embedQuery(query))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(embedding -> similarSearchByVectorAsync(embedding, k, filter));
+    }
+
+    @Override
+    public Mono<List<Document>> similarSearchByVectorAsync(float[] embedding, int k, Map<String, Object> kwargs) {
+        return RxJava2Adapter.singleToMono(index.queryAsync(createQueryRequest(embedding, k, kwargs)))
+                .map(results -> toDocuments(results).stream().map(Pair::getLeft).toList());
+    }
+
+    /**
+     * Embed all queries in one call when embedding is set, and search the vectors concurrently.
+     */
+    @Override
+    public List<List<Document>> similaritySearch(List<String> queries, int k, Map<String, Object> filter) {
+        return similaritySearchByVectors(embedTexts(queries), k, filter);
+    }
+
+    /**
+     * Search the embeddings concurrently, Pinecone has no batched query endpoint.
+     */
+    @Override
+    public List<List<Document>> similaritySearchByVectors(List<float[]> embeddings, int k,
+            Map<String, Object> kwargs) {
+        return concurrently(embeddings, embedding -> similarSearchByVector(embedding, k, kwargs));
+    }
+
+    private <T> List<List<Document>> concurrently(List<T> inputs, Function<T, List<Document>> search) {
+        try {
+            return mapBounded(inputs, search, maxConcurrency, executor);
+        } catch (CompletionException e) {
+            throw new LangChainException("Failed to query Pinecone.", e.getCause());
+        }
+    }
+
+    @Override
+    public Embeddings getEmbeddings() {
+        return embedding;
+    }
+
     @Override
     protected List<Pair<Document, Float>> innerSimilaritySearchWithRelevanceScores(String query, int k) {
-        return null;
+        return similaritySearchWithRelevanceScoresByVector(embedQuery(query), k, null);
     }
 
     @Override
-    public List<Document> similarSearchByVector(List<Float> embedding, int k, Map<String, Object> kwargs) {
-        return null;
+    public List<Pair<Document, Float>> similaritySearchWithRelevanceScoresByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        return similaritySearchWithScoreByVector(embedding, k, filter).stream()
+                .map(pair -> Pair.of(pair.getLeft(), relevanceScore(pair.getRight())))
+                .toList();
+    }
+
+    /**
+     * Normalize the score returned by Pinecone to a relevance score in [0, 1], euclidean scores are squared
+     * distances.
+     */
+    private float relevanceScore(float score) {
+        return distanceStrategy == DistanceStrategy.EUCLIDEAN_DISTANCE
+                ? distanceStrategy.relevanceScore(-score)
+                : distanceStrategy.relevanceScore(score);
+    }
+
+    @Override
+    public List<Document> similarSearchByVector(float[] embedding, int k, Map<String, Object> kwargs) {
+        List<Pair<Document, Float>> docsAndScores = similaritySearchWithScoreByVector(embedding, k, kwargs);
+        return docsAndScores.stream().map(Pair::getLeft).toList();
     }
 
     @Override
     public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult) {
-        List<Float> embedding = embeddingFunction.apply(query);
+        float[] embedding = embedQuery(query);
         return maxMarginalRelevanceSearchByVector(embedding, k, fetchK, lambdaMult);
     }
 
     @Override
-    public List<Document> maxMarginalRelevanceSearchByVector(List<Float> embedding, int k, int fetchK,
+    public List<Document> maxMarginalRelevanceSearchByVector(float[] embedding, int k, int fetchK,
             float lambdaMult) {
         QueryRequest queryRequest = QueryRequest.builder()
                 .vector(embedding)
@@ -179,8 +349,8 @@ public class Pinecone extends VectorStore {
         QueryResponse results = index.query(queryRequest);
 
         List<Integer> mmrSelected = maximalMarginalRelevance(
-                createFromList(embedding),
-                results.getMatches().stream().map(ScoredVector::getValues).toList(),
+                embedding,
+                results.getMatches().stream().map(ScoredVector::getValuesArray).toList(),
                 k,
                 lambdaMult);
 
@@ -194,26 +364,82 @@ public class Pinecone extends VectorStore {
                 .toList();
     }
 
+    /**
+     * Embed and upsert the texts in batches without blocking, up to maxConcurrency batches are in flight and a
+     * failed upsert is retried for its batch only.
+     */
+    @Override
+    public Mono<List<String>> addTextsAsync(List<String> texts, List<Map<String, Object>> metadatas) {
+        List<String> ids = createIdsBatch(texts.size());
+        AtomicInteger upserted = new AtomicInteger();
+        int batches = (texts.size() + batchSize - 1) / batchSize;
+        return Flux.range(0, batches)
+                .flatMap(batch -> {
+                    int start = batch * batchSize;
+                    int end = Math.min(start + batchSize, texts.size());
+                    return embedTextsAsync(texts.subList(start, end))
+                            .map(embeds -> createVectors(ids.subList(start, end), embeds,
+                                    createMetadata(texts.subList(start, end), metadatas, start, end)))
+                            .flatMap(vectors -> RxJava2Adapter.singleToMono(
+                                    index.upsertAsync(new UpsertRequest(vectors, namespace)))
+                                    .retryWhen(Retry.backoff(maxRetries - 1L, retryInterval)
+                                            .maxBackoff(retryInterval.multipliedBy(4))
+                                            .onRetryExhaustedThrow((spec, signal) -> signal.failure())))
+                            .doOnNext(response -> reportProgress(upserted.addAndGet(end - start), texts.size()));
+                }, maxConcurrency)
+                .then(Mono.just(ids));
+    }
+
     @Override
     public int fromTexts(List<String> texts, Embeddings embedding, List<Map<String, Object>> metadatas) {
-        int total = 0;
-        for (int i = 0; i < texts.size(); i += batchSize) {
-            // set end position of batch
-            int iEnd = Math.min(i + batchSize, texts.size());
-            // get batch of texts and ids
-            List<String> linesBatch = texts.subList(i, iEnd);
-            // create ids if not provided
-            List<String> idsBatch = createIdsBatch(iEnd - i);
-            // create embeddings
-            var embeds = embedding.embedDocuments(linesBatch);
-            // prepare metadata and upsert batch
-            var metadata = createMetadata(linesBatch, metadatas, i, iEnd);
-            List<Vector> vectors = createVectors(idsBatch, embeds, metadata);
-            // upsert to Pinecone
-            var response = index.upsert(new UpsertRequest(vectors, namespace));
-            total += response.getUpsertedCount();
+        return upsertTexts(texts, metadatas, createIdsBatch(texts.size()), embedding::embedDocumentVectors);
+    }
+
+    /**
+     * Embed and upsert the texts in batches of batchSize, running up to maxConcurrency batches concurrently.
+     * A failed upsert is retried for its batch only.
+     *
+     * @return the number of upserted vectors
+     */
+    private int upsertTexts(List<String> texts, List<Map<String, Object>> metadatas, List<String> ids,
+            Function<List<String>, List<float[]>> embedder) {
+        AtomicInteger upserted = new AtomicInteger();
+        List<Integer> starts = IntStream.iterate(0, i -> i < texts.size(), i -> i + batchSize).boxed().toList();
+        try {
+            return mapBounded(starts, start -> {
+                // set end position of batch
+                int iEnd = Math.min(start + batchSize, texts.size());
+                int count = upsertBatch(texts, metadatas, ids, start, iEnd, embedder);
+                reportProgress(upserted.addAndGet(iEnd - start), texts.size());
+                return count;
+            }, maxConcurrency, executor).stream().mapToInt(Integer::intValue).sum();
+        } catch (CompletionException e) {
+            throw new LangChainException("Failed to upsert texts to Pinecone.", e.getCause());
+        }
+    }
+
+    private int upsertBatch(List<String> texts, List<Map<String, Object>> metadatas, List<String> ids, int start,
+            int end, Function<List<String>, List<float[]>> embedder) {
+        // get batch of texts and ids
+        List<String> linesBatch = texts.subList(start, end);
+        List<String> idsBatch = ids.subList(start, end);
+        // create embeddings
+        var embeds = embedder.apply(linesBatch);
+        // prepare metadata and upsert batch
+        var metadata = createMetadata(linesBatch, metadatas, start, end);
+        List<Vector> vectors = createVectors(idsBatch, embeds, metadata);
+        // upsert to Pinecone
+        UpsertRequest request = new UpsertRequest(vectors, namespace);
+        var response = retryWithExponentialBackoff(maxRetries, () -> index.upsert(request), retryInterval, 2,
+                retryInterval.multipliedBy(4));
+        return response.getUpsertedCount();
+    }
+
+    private void reportProgress(int upserted, int total) {
+        LOG.debug("Upserted {} of {} texts to Pinecone.", upserted, total);
+        if (progressListener != null) {
+            progressListener.accept(upserted, total);
         }
-        return total;
     }
 
     private List<String> createIdsBatch(int batchSize) {
@@ -227,7 +453,8 @@ public class Pinecone extends VectorStore {
             int start, int end) {
         List<Map<String, Object>> metadata = new ArrayList<>();
         if (metadatas != null) {
-            metadata.addAll(metadatas.subList(start, end));
+            // copy the metadata, it may be immutable and must not be changed for the caller
+            metadatas.subList(start, end).forEach(meta -> metadata.add(new HashMap<>(meta)));
         } else {
             for (int i = 0; i < linesBatch.size(); i++) {
                 metadata.add(Maps.newHashMap());
@@ -239,7 +466,7 @@ public class Pinecone extends VectorStore {
         return metadata;
     }
 
-    private List<Vector> createVectors(List<String> idsBatch, List<List<Float>> embeds,
+    private List<Vector> createVectors(List<String> idsBatch, List<float[]> embeds,
             List<Map<String, Object>> metadata) {
         return IntStream.range(0, idsBatch.size())
                 .mapToObj(k -> new Vector(idsBatch.get(k), embeds.get(k), metadata.get(k)))
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.quantization;
+
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.hw.langchain.math.utils.MathUtils.dotProduct;
+import static com.hw.langchain.math.utils.MathUtils.squaredEuclideanDistance;
+
+/**
+ * Product quantizer splitting vectors into equal subspaces, each encoded by the id of its nearest centroid in a
+ * k-means codebook of at most 256 centroids.
+ * <p>
+ * A vector of dimension d is stored in {@code subspaces} bytes, e.g. 1536 dimensions in 96 subspaces compress 64x.
+ * Scoring uses asymmetric distance computation: the query is compared once with every centroid, and a code is scored
+ * by summing one table lookup per subspace.
+ *
+ * @author HamaWhite
+ */
+public class ProductQuantizer implements VectorQuantizer {
+
+    private static final int MAX_CENTROIDS = 256;
+
+    private final int subspaces;
+
+    private final int iterations;
+
+    private final long seed;
+
+    private int subDimension;
+
+    private int centroids;
+
+    /**
+     * Centroids of each subspace, stored contiguously.
+     */
+    private float[][] codebooks;
+
+    public ProductQuantizer(int subspaces) {
+        this(subspaces, 10, 42L);
+    }
+
+    /**
+     * @param subspaces  number of subspaces, which is the code size in bytes
+     * @param iterations number of k-means iterations
+     * @param seed       seed of the centroid initialization
+     */
+    public ProductQuantizer(int subspaces, int iterations, long seed) {
+        checkArgument(subspaces > 0, "subspaces must be positive, got %s", subspaces);
+        checkArgument(iterations > 0, "iterations must be positive, got %s", iterations);
+        this.subspaces = subspaces;
+        this.iterations = iterations;
+        this.seed = seed;
+    }
+
+    @Override
+    public void train(List<float[]> vectors) {
+        checkArgument(!vectors.isEmpty(), "Cannot train on empty vectors.");
+        int dimension = vectors.get(0).length;
+        checkArgument(dimension % subspaces == 0, "Dimension %s is not divisible by %s subspaces", dimension,
+                subspaces);
+        this.subDimension = dimension / subspaces;
+        this.centroids = Math.min(MAX_CENTROIDS, vectors.size());
+
+        Random random = new Random(seed);
+        float[][] trained = new float[subspaces][];
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            trained[subspace] = kMeans(vectors, subspace * subDimension, random);
+        }
+        this.codebooks = trained;
+    }
+
+    /**
+     * Lloyd's k-means on one subspace, initialized with distinct random samples.
+     */
+    private float[] kMeans(List<float[]> vectors, int offset, Random random) {
+        int n = vectors.size();
+        float[] codebook = new float[centroids * subDimension];
+        int[] samples = random.ints(0, n).distinct().limit(centroids).toArray();
+        for (int c = 0; c < centroids; c++) {
+            System.arraycopy(vectors.get(samples[c]), offset, codebook, c * subDimension, subDimension);
+        }
+
+        int[] assignments = new int[n];
+        float[] sums = new float[centroids * subDimension];
+        int[] counts = new int[centroids];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < n; i++) {
+                assignments[i] = nearest(codebook, vectors.get(i), offset);
+            }
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                float[] vector = vectors.get(i);
+                int base = assignments[i] * subDimension;
+                for (int d = 0; d < subDimension; d++) {
+                    sums[base + d] += vector[offset + d];
+                }
+                counts[assignments[i]]++;
+            }
+            for (int c = 0; c < centroids; c++) {
+                if (counts[c] == 0) {
+                    // reseed an empty cluster with a random sample
+                    System.arraycopy(vectors.get(random.nextInt(n)), offset, codebook, c * subDimension,
+                            subDimension);
+                    continue;
+                }
+                for (int d = 0; d < subDimension; d++) {
+                    codebook[c * subDimension + d] = sums[c * subDimension + d] / counts[c];
+                }
+            }
+        }
+        return codebook;
+    }
+
+    private int nearest(float[] codebook, float[] vector, int offset) {
+        int best = 0;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < centroids; c++) {
+            float distance = squaredEuclideanDistance(vector, offset, codebook, c * subDimension, subDimension);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return codebooks != null;
+    }
+
+    @Override
+    public int codeSize() {
+        return subspaces;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] codes, int offset) {
+        checkState(isTrained(), "The quantizer is not trained.");
+        checkArgument(vector.length == subspaces * subDimension, "Expected vector of dimension %s, got %s",
+                subspaces * subDimension, vector.length);
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            codes[offset + subspace] = (byte) nearest(codebooks[subspace], vector, subspace * subDimension);
+        }
+    }
+
+    @Override
+    public CodeScorer scorer(float[] query, DistanceStrategy distanceStrategy) {
+        checkState(isTrained(), "The quantizer is not trained.");
+        checkArgument(query.length == subspaces * subDimension, "Expected query of dimension %s, got %s",
+                subspaces * subDimension, query.length);
+        float[] table = new float[subspaces * centroids];
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            int queryOffset = subspace * subDimension;
+            for (int c = 0; c < centroids; c++) {
+                table[subspace * centroids + c] = distanceStrategy == DistanceStrategy.EUCLIDEAN_DISTANCE
+                        ? -squaredEuclideanDistance(query, queryOffset, codebooks[subspace], c * subDimension,
+                                subDimension)
+                        : dotProduct(query, queryOffset, codebooks[subspace], c * subDimension, subDimension);
+            }
+        }
+        return (codes, offset) -> {
+            float sum = 0;
+            for (int subspace = 0; subspace < subspaces; subspace++) {
+                sum += table[subspace * centroids + (codes[offset + subspace] & 0xFF)];
+            }
+            return sum;
+        };
+    }
+}
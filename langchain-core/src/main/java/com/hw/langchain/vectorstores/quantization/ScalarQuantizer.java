@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.quantization;
+
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Scalar quantizer mapping every dimension linearly onto an unsigned byte between its trained minimum and maximum,
+ * which compresses float vectors 4x.
+ *
+ * @author HamaWhite
+ */
+public class ScalarQuantizer implements VectorQuantizer {
+
+    private static final int LEVELS = 255;
+
+    private float[] min;
+
+    private float[] scale;
+
+    @Override
+    public void train(List<float[]> vectors) {
+        checkArgument(!vectors.isEmpty(), "Cannot train on empty vectors.");
+        int dimension = vectors.get(0).length;
+        float[] lower = new float[dimension];
+        float[] upper = new float[dimension];
+        Arrays.fill(lower, Float.POSITIVE_INFINITY);
+        Arrays.fill(upper, Float.NEGATIVE_INFINITY);
+        for (float[] vector : vectors) {
+            for (int i = 0; i < dimension; i++) {
+                lower[i] = Math.min(lower[i], vector[i]);
+                upper[i] = Math.max(upper[i], vector[i]);
+            }
+        }
+        float[] step = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            step[i] = (upper[i] - lower[i]) / LEVELS;
+        }
+        this.min = lower;
+        this.scale = step;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return min != null;
+    }
+
+    @Override
+    public int codeSize() {
+        checkState(isTrained(), "The quantizer is not trained.");
+        return min.length;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] codes, int offset) {
+        checkArgument(vector.length == codeSize(), "Expected vector of dimension %s, got %s", codeSize(),
+                vector.length);
+        for (int i = 0; i < vector.length; i++) {
+            int level = scale[i] == 0 ? 0 : Math.round((vector[i] - min[i]) / scale[i]);
+            codes[offset + i] = (byte) Math.max(0, Math.min(LEVELS, level));
+        }
+    }
+
+    @Override
+    public CodeScorer scorer(float[] query, DistanceStrategy distanceStrategy) {
+        int dimension = codeSize();
+        checkArgument(query.length == dimension, "Expected query of dimension %s, got %s", dimension, query.length);
+        if (distanceStrategy == DistanceStrategy.EUCLIDEAN_DISTANCE) {
+            // ||q - (min + scale * c)||^2 with the query shifted by min once
+            float[] shifted = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                shifted[i] = query[i] - min[i];
+            }
+            return (codes, offset) -> {
+                float sum = 0;
+                for (int i = 0; i < dimension; i++) {
+                    float diff = shifted[i] - scale[i] * (codes[offset + i] & 0xFF);
+                    sum += diff * diff;
+                }
+                return -sum;
+            };
+        }
+        // q . (min + scale * c) = q . min + (q * scale) . c
+        float bias = 0;
+        float[] weights = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            bias += query[i] * min[i];
+            weights[i] = query[i] * scale[i];
+        }
+        float constant = bias;
+        return (codes, offset) -> {
+            float sum = constant;
+            for (int i = 0; i < dimension; i++) {
+                sum += weights[i] * (codes[offset + i] & 0xFF);
+            }
+            return sum;
+        };
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.quantization;
+
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+
+import java.util.List;
+
+/**
+ * Lossy compression of vectors into fixed-size byte codes that can be scored directly against a query.
+ * <p>
+ * A quantizer must be trained on a sample of the vectors before encoding. Implementations are not thread-safe for
+ * training, encoding and scoring are safe once trained.
+ *
+ * @author HamaWhite
+ */
+public interface VectorQuantizer {
+
+    /**
+     * Learn the quantization parameters from sample vectors.
+     */
+    void train(List<float[]> vectors);
+
+    boolean isTrained();
+
+    /**
+     * Number of bytes of the code of a vector.
+     */
+    int codeSize();
+
+    /**
+     * Encode the vector into the codes array starting at the offset.
+     */
+    void encode(float[] vector, byte[] codes, int offset);
+
+    /**
+     * Create a scorer estimating the similarity between the query and encoded vectors, the score has the same
+     * meaning as the exact score of the distance strategy, higher is more similar.
+     */
+    CodeScorer scorer(float[] query, DistanceStrategy distanceStrategy);
+
+    /**
+     * Approximate similarity between a fixed query and encoded vectors.
+     */
+    @FunctionalInterface
+    interface CodeScorer {
+
+        float score(byte[] codes, int offset);
+    }
+}
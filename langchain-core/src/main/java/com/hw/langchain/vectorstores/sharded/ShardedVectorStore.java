@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.sharded;
+
+import com.google.common.hash.Hashing;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.exception.LangChainException;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.base.VectorStore;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Builder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import static com.hw.langchain.utils.ThreadPoolUtil.BLOCKING_IO_EXECUTOR;
+
+/**
+ * Composite vector store that hash-partitions documents across several backing stores.
+ * <p>
+ * Each text is routed to a shard by the consistent hash of its content, the returned ids are prefixed with the
+ * shard number so that {@link #delete(List)} reaches the owning shard. Searches embed the query once, query all
+ * shards in parallel and merge the per-shard top-k on their relevance scores, so the shards must implement
+ * {@link VectorStore#similaritySearchWithRelevanceScoresByVector} and share the same embeddings.
+ * <p>
+ * A shard that fails or does not answer within {@code shardTimeout} is left out of the result, a slow shard
+ * lowers the recall of a query instead of delaying it. Only when no shard answers does the search fail, so that an
+ * outage is not mistaken for an empty result. Writes are never dropped, they wait for every shard.
+ *
+ * @author HamaWhite
+ */
+@Builder
+public class ShardedVectorStore extends VectorStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedVectorStore.class);
+
+    private static final String ID_SEPARATOR = ":";
+
+    /**
+     * The backing stores, the order must stay the same for the ids and routing to remain valid.
+     */
+    private List<VectorStore> shards;
+
+    /**
+     * Function used to embed the queries, once for all shards.
+     */
+    private Embeddings embeddingFunction;
+
+    /**
+     * The executor running the per-shard requests, one task per shard.
+     */
+    @Builder.Default
+    private Executor executor = BLOCKING_IO_EXECUTOR;
+
+    /**
+     * Maximum time to wait for a shard to answer a search.
+     */
+    @Builder.Default
+    private Duration shardTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Return the shard a text is routed to.
+     */
+    int shardOf(String text) {
+        return Hashing.consistentHash(Hashing.murmur3_128().hashString(text, StandardCharsets.UTF_8), shards.size());
+    }
+
+    @Override
+    public List<String> addTexts(List<String> texts, List<Map<String, Object>> metadatas) {
+        List<List<Integer>> partitions = partition(texts);
+        List<List<String>> shardIds = write(shard -> shards.get(shard).addTexts(
+                select(texts, partitions.get(shard)),
+                metadatas == null ? null : select(metadatas, partitions.get(shard))));
+
+        String[] ids = new String[texts.size()];
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<Integer> positions = partitions.get(shard);
+            for (int i = 0; i < positions.size(); i++) {
+                ids[positions.get(i)] = shard + ID_SEPARATOR + shardIds.get(shard).get(i);
+            }
+        }
+        return Arrays.asList(ids);
+    }
+
+    /**
+     * Delete by the ids returned from {@link #addTexts}, ids without a shard prefix are deleted on every shard.
+     */
+    @Override
+    public void delete(List<String> ids) {
+        List<List<String>> shardIds = new ArrayList<>(shards.size());
+        shards.forEach(shard -> shardIds.add(new ArrayList<>()));
+        for (String id : ids) {
+            int index = id.indexOf(ID_SEPARATOR);
+            Integer shard = index > 0 ? parseShard(id.substring(0, index)) : null;
+            if (shard != null) {
+                shardIds.get(shard).add(id.substring(index + 1));
+            } else {
+                shardIds.forEach(list -> list.add(id));
+            }
+        }
+        write(shard -> {
+            if (!shardIds.get(shard).isEmpty()) {
+                shards.get(shard).delete(shardIds.get(shard));
+            }
+            return null;
+        });
+    }
+
+    private Integer parseShard(String prefix) {
+        try {
+            int shard = Integer.parseInt(prefix);
+            return shard < shards.size() ? shard : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Embeddings getEmbeddings() {
+        return embeddingFunction;
+    }
+
+    @Override
+    public List<Document> similaritySearch(String query, int k, Map<String, Object> filter) {
+        return similarSearchByVector(embeddingFunction.embedQueryVector(query), k, filter);
+    }
+
+    @Override
+    protected List<Pair<Document, Float>> innerSimilaritySearchWithRelevanceScores(String query, int k) {
+        return similaritySearchWithRelevanceScoresByVector(embeddingFunction.embedQueryVector(query), k, null);
+    }
+
+    /**
+     * Query every shard for its top k and keep the k best of their union in a bounded min-heap.
+     */
+    @Override
+    public List<Pair<Document, Float>> similaritySearchWithRelevanceScoresByVector(float[] embedding, int k,
+            Map<String, Object> filter) {
+        PriorityQueue<Pair<Document, Float>> heap = new PriorityQueue<>(Comparator.comparing(Pair::getRight));
+        for (List<Pair<Document, Float>> results : scatter(
+                shard -> shard.similaritySearchWithRelevanceScoresByVector(embedding, k, filter))) {
+            for (Pair<Document, Float> result : results) {
+                heap.offer(result);
+                if (heap.size() > k) {
+                    heap.poll();
+                }
+            }
+        }
+        List<Pair<Document, Float>> merged = new ArrayList<>(heap);
+        merged.sort(Comparator.comparing(Pair<Document, Float>::getRight).reversed());
+        return merged;
+    }
+
+    @Override
+    public List<Document> similarSearchByVector(float[] embedding, int k, Map<String, Object> kwargs) {
+        return similaritySearchWithRelevanceScoresByVector(embedding, k, kwargs).stream()
+                .map(Pair::getLeft)
+                .toList();
+    }
+
+    @Override
+    public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult) {
+        float[] embedding = embeddingFunction.embedQueryVector(query);
+        return maxMarginalRelevanceSearchByVector(embedding, k, fetchK, lambdaMult);
+    }
+
+    /**
+     * Run MMR on every shard and interleave the per-shard selections round-robin. The diversity is only enforced
+     * within a shard, which approximates a global MMR over the union of the shards.
+     */
+    @Override
+    public List<Document> maxMarginalRelevanceSearchByVector(float[] embedding, int k, int fetchK,
+            float lambdaMult) {
+        List<List<Document>> results = scatter(
+                shard -> shard.maxMarginalRelevanceSearchByVector(embedding, k, fetchK, lambdaMult));
+        List<Document> merged = new ArrayList<>(k);
+        for (int i = 0; merged.size() < k; i++) {
+            boolean found = false;
+            for (List<Document> documents : results) {
+                if (i < documents.size() && merged.size() < k) {
+                    merged.add(documents.get(i));
+                    found = true;
+                }
+            }
+            if (!found) {
+                break;
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public int fromTexts(List<String> texts, Embeddings embedding, List<Map<String, Object>> metadatas) {
+        List<List<Integer>> partitions = partition(texts);
+        return write(shard -> shards.get(shard).fromTexts(
+                select(texts, partitions.get(shard)),
+                embedding,
+                metadatas == null ? null : select(metadatas, partitions.get(shard))))
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    /**
+     * Group the positions of the texts by the shard they are routed to.
+     */
+    private List<List<Integer>> partition(List<String> texts) {
+        List<List<Integer>> partitions = new ArrayList<>(shards.size());
+        shards.forEach(shard -> partitions.add(new ArrayList<>()));
+        for (int i = 0; i < texts.size(); i++) {
+            partitions.get(shardOf(texts.get(i))).add(i);
+        }
+        return partitions;
+    }
+
+    private static <T> List<T> select(List<T> values, List<Integer> positions) {
+        return positions.stream().map(values::get).toList();
+    }
+
+    /**
+     * Run a write on every shard in parallel and wait for all of them, the first failure is rethrown.
+     */
+    private <T> List<T> write(IntFunction<T> task) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int index = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(index), executor));
+        }
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            throw new LangChainException("Failed to write to the shards.", e.getCause());
+        }
+    }
+
+    /**
+     * Run a search on every shard in parallel, shards that fail or time out are logged and left out. The searches
+     * still running at the deadline are cancelled, which interrupts their threads. If none of the shards answers, a
+     * {@link LangChainException} is thrown with the shard failures suppressed in it.
+     */
+    private <T> List<T> scatter(Function<VectorStore, T> search) {
+        List<FutureTask<T>> futures = new ArrayList<>(shards.size());
+        for (VectorStore store : shards) {
+            FutureTask<T> future = new FutureTask<>(() -> search.apply(store));
+            executor.execute(future);
+            futures.add(future);
+        }
+        long deadline = System.nanoTime() + shardTimeout.toNanos();
+        List<T> results = new ArrayList<>(shards.size());
+        List<Throwable> failures = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < futures.size(); shard++) {
+                try {
+                    results.add(futures.get(shard).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+                } catch (ExecutionException | TimeoutException e) {
+                    Throwable failure = e instanceof ExecutionException ? e.getCause() : e;
+                    LOG.warn("Shard {} skipped from the search results.", shard, failure);
+                    failures.add(failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LangChainException("Interrupted while searching the shards.", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        if (results.isEmpty() && !failures.isEmpty()) {
+            LangChainException exception = new LangChainException("All shards failed or timed out.");
+            failures.forEach(exception::addSuppressed);
+            throw exception;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.utils;
+
+/**
+ * Enumerator of the distance strategies for calculating distances between vectors.
+ * <p>
+ * Local vector stores work with similarity scores where a higher value means more similar, so the euclidean
+ * strategy is scored as the negative squared distance.
+ *
+ * @author HamaWhite
+ */
+public enum DistanceStrategy {
+
+    /**
+     * Euclidean (L2) distance.
+     */
+    EUCLIDEAN_DISTANCE("euclidean_distance"),
+
+    /**
+     * Inner product, vectors are used as they are.
+     */
+    MAX_INNER_PRODUCT("max_inner_product"),
+
+    /**
+     * Cosine similarity, vectors are normalized before they are stored or searched.
+     */
+    COSINE("cosine");
+
+    private final String value;
+
+    DistanceStrategy(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Whether vectors must be normalized to unit length before they are stored or searched.
+     */
+    public boolean requiresNormalization() {
+        return this == COSINE;
+    }
+
+    /**
+     * Convert a similarity score produced under this strategy to a relevance score in the range [0, 1].
+     *
+     * @param score similarity score, higher is more similar
+     * @return relevance score, 0 is dissimilar, 1 is most similar
+     */
+    public float relevanceScore(float score) {
+        return switch (this) {
+            // assumes embeddings are normalized to unit length, so the squared distance lies in [0, 4]
+            case EUCLIDEAN_DISTANCE -> 1.0f - (float) Math.sqrt(-score) / (float) Math.sqrt(2);
+            case MAX_INNER_PRODUCT, COSINE -> (1.0f + score) / 2.0f;
+        };
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.utils;
+
+import com.hw.langchain.chains.query.constructor.ir.Comparator;
+import com.hw.langchain.chains.query.constructor.ir.Comparison;
+import com.hw.langchain.chains.query.constructor.ir.FilterDirective;
+import com.hw.langchain.chains.query.constructor.ir.Operation;
+import com.hw.langchain.chains.query.constructor.ir.Operator;
+import com.hw.langchain.chains.query.constructor.ir.StringEnum;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index from metadata values to the slots of the documents holding them, used to restrict a vector search
+ * to the matching documents before any vector is scored.
+ * <p>
+ * Every attribute keeps its values in sorted order, each value pointing to a bitmap of slots. Equality is a single
+ * lookup and ranges union the bitmaps of the values in range, a collection value is indexed by each element.
+ * <p>
+ * Filters are either {@link FilterDirective} trees or their map form, as produced by the self-query translator:
+ * <pre>{@code
+ * {"tenant": "acme", "year": {"$gte": 2020, "$lt": 2023}, "$or": [{"genre": "drama"}, {"rating": {"$gt": 8.5}}]}
+ * }</pre>
+ * A plain value means equality and the entries of a map are combined with {@code $and}. {@code $not} matches the
+ * documents that match none of its arguments.
+ * <p>
+ * The index is not thread-safe, the owning vector store guards it together with its vector index.
+ *
+ * @author HamaWhite
+ */
+public class MetadataIndex {
+
+    private static final String OPERATOR_PREFIX = "$";
+
+    private final Map<String, NavigableMap<Object, BitSet>> postings = new HashMap<>();
+
+    /**
+     * Slots of the indexed documents, the complement of {@code $not} is taken against it.
+     */
+    private final BitSet live = new BitSet();
+
+    /**
+     * Index the metadata of the document stored at the slot.
+     */
+    public void add(int slot, Map<String, Object> metadata) {
+        live.set(slot);
+        if (metadata == null) {
+            return;
+        }
+        metadata.forEach((attribute, value) -> {
+            NavigableMap<Object, BitSet> values = postings.computeIfAbsent(attribute,
+                    key -> new TreeMap<>(MetadataIndex::compareKeys));
+            for (Object element : elements(value)) {
+                values.computeIfAbsent(normalize(element), key -> new BitSet()).set(slot);
+            }
+        });
+    }
+
+    /**
+     * Remove the document stored at the slot, the metadata must be the one it was added with.
+     */
+    public void remove(int slot, Map<String, Object> metadata) {
+        live.clear(slot);
+        if (metadata == null) {
+            return;
+        }
+        metadata.forEach((attribute, value) -> {
+            NavigableMap<Object, BitSet> values = postings.get(attribute);
+            if (values == null) {
+                return;
+            }
+            for (Object element : elements(value)) {
+                Object key = normalize(element);
+                BitSet slots = values.get(key);
+                if (slots != null) {
+                    slots.clear(slot);
+                    if (slots.isEmpty()) {
+                        values.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Return the slots of the documents matching the filter in its map form.
+     */
+    public BitSet filter(Map<String, Object> filter) {
+        BitSet result = compile(filter);
+        result.and(live);
+        return result;
+    }
+
+    /**
+     * Return the slots of the documents matching the filter directive.
+     */
+    public BitSet filter(FilterDirective directive) {
+        BitSet result = compile(directive);
+        result.and(live);
+        return result;
+    }
+
+    private BitSet compile(FilterDirective directive) {
+        if (directive instanceof Comparison comparison) {
+            return compare(comparison.getAttribute(), comparison.getComparator(), comparison.getValue());
+        }
+        if (directive instanceof Operation operation) {
+            List<BitSet> operands = operation.getArguments().stream().map(this::compile).toList();
+            return combine(operation.getOperator(), operands);
+        }
+        throw new IllegalArgumentException("Unsupported filter directive: " + directive);
+    }
+
+    private BitSet compile(Map<String, Object> filter) {
+        List<BitSet> operands = new ArrayList<>(filter.size());
+        for (Map.Entry<String, Object> entry : filter.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(OPERATOR_PREFIX)) {
+                operands.add(combine(parse(Operator.values(), key), compileArguments(entry.getValue())));
+            } else if (isOperatorMap(entry.getValue())) {
+                ((Map<?, ?>) entry.getValue()).forEach((comparator, value) -> operands.add(
+                        compare(key, parse(Comparator.values(), comparator.toString()), value)));
+            } else {
+                operands.add(compare(key, Comparator.EQ, entry.getValue()));
+            }
+        }
+        return combine(Operator.AND, operands);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BitSet> compileArguments(Object arguments) {
+        if (arguments instanceof Map<?, ?> map) {
+            return List.of(compile((Map<String, Object>) map));
+        }
+        if (arguments instanceof Collection<?> collection) {
+            return collection.stream().map(argument -> compile((Map<String, Object>) argument)).toList();
+        }
+        throw new IllegalArgumentException("Expected a filter or a list of filters, got: " + arguments);
+    }
+
+    private BitSet combine(Operator operator, List<BitSet> operands) {
+        if (operator == Operator.AND) {
+            if (operands.isEmpty()) {
+                return (BitSet) live.clone();
+            }
+            BitSet result = operands.get(0);
+            for (int i = 1; i < operands.size() && !result.isEmpty(); i++) {
+                result.and(operands.get(i));
+            }
+            return result;
+        }
+        BitSet union = new BitSet();
+        operands.forEach(union::or);
+        if (operator == Operator.OR) {
+            return union;
+        }
+        BitSet result = (BitSet) live.clone();
+        result.andNot(union);
+        return result;
+    }
+
+    /**
+     * Return a new bitmap of the slots whose attribute compares to the value, the caller may modify it.
+     */
+    private BitSet compare(String attribute, Comparator comparator, Object value) {
+        NavigableMap<Object, BitSet> values = postings.get(attribute);
+        BitSet result = new BitSet();
+        if (values == null) {
+            return result;
+        }
+        Object key = normalize(value);
+        switch (comparator) {
+            case EQ -> {
+                BitSet slots = values.get(key);
+                if (slots != null) {
+                    result.or(slots);
+                }
+            }
+            case GT -> union(result, values.tailMap(key, false), key);
+            case GTE -> union(result, values.tailMap(key, true), key);
+            case LT -> union(result, values.headMap(key, false).descendingMap(), key);
+            case LTE -> union(result, values.headMap(key, true).descendingMap(), key);
+            case CONTAIN -> {
+                if (!(key instanceof String text)) {
+                    return compare(attribute, Comparator.EQ, value);
+                }
+                values.forEach((candidate, slots) -> {
+                    if (candidate instanceof String s && s.contains(text)) {
+                        result.or(slots);
+                    }
+                });
+            }
+            case LIKE -> {
+                Pattern pattern = likePattern(String.valueOf(value));
+                values.forEach((candidate, slots) -> {
+                    if (candidate instanceof String s && pattern.matcher(s).matches()) {
+                        result.or(slots);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Union the slots of the values in the range view, stopping at the first value of another type than the bound.
+     */
+    private static void union(BitSet result, NavigableMap<Object, BitSet> range, Object bound) {
+        for (Map.Entry<Object, BitSet> entry : range.entrySet()) {
+            if (rank(entry.getKey()) != rank(bound)) {
+                break;
+            }
+            result.or(entry.getValue());
+        }
+    }
+
+    /**
+     * Translate a SQL LIKE pattern, where {@code %} matches any sequence and {@code _} any single character.
+     */
+    private static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : like.toCharArray()) {
+            if (c == '%' || c == '_') {
+                regex.append(Pattern.quote(literal.toString())).append(c == '%' ? ".*" : ".");
+                literal.setLength(0);
+            } else {
+                literal.append(c);
+            }
+        }
+        return Pattern.compile(regex.append(Pattern.quote(literal.toString())).toString(), Pattern.DOTALL);
+    }
+
+    private static boolean isOperatorMap(Object value) {
+        return value instanceof Map<?, ?> map && !map.isEmpty()
+                && map.keySet().stream().allMatch(key -> key.toString().startsWith(OPERATOR_PREFIX));
+    }
+
+    private static <E extends Enum<E> & StringEnum<E>> E parse(E[] values, String key) {
+        String name = key.startsWith(OPERATOR_PREFIX) ? key.substring(OPERATOR_PREFIX.length()) : key;
+        return Arrays.stream(values)
+                .filter(value -> value.value().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported filter operator: " + key));
+    }
+
+    private static Collection<?> elements(Object value) {
+        if (value == null) {
+            return List.of();
+        }
+        return value instanceof Collection<?> collection ? collection : List.of(value);
+    }
+
+    /**
+     * Numbers are compared by value whatever their boxed type, so that 1, 1L and 1.0 are the same key.
+     */
+    private static Object normalize(Object value) {
+        return value instanceof Number number ? (Object) number.doubleValue() : value;
+    }
+
+    /**
+     * Keys are ordered by type first, numbers, strings, booleans and then any other value.
+     */
+    private static int rank(Object key) {
+        if (key instanceof Double) {
+            return 0;
+        }
+        if (key instanceof String) {
+            return 1;
+        }
+        return key instanceof Boolean ? 2 : 3;
+    }
+
+    private static int compareKeys(Object a, Object b) {
+        int rank = Integer.compare(rank(a), rank(b));
+        if (rank != 0) {
+            return rank;
+        }
+        return switch (rank(a)) {
+            case 0 -> Double.compare((Double) a, (Double) b);
+            case 1 -> ((String) a).compareTo((String) b);
+            case 2 -> Boolean.compare((Boolean) a, (Boolean) b);
+            default -> a.toString().compareTo(b.toString());
+        };
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.utils;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (node, score) pairs backed by primitive arrays, so that graph traversal and top-k selection do
+ * not box a {@code Float} for every scored vector.
+ *
+ * @author HamaWhite
+ */
+public class NeighborQueue {
+
+    private final boolean maxHeap;
+
+    private int[] nodes;
+
+    private float[] scores;
+
+    private int size;
+
+    /**
+     * @param initialCapacity initial capacity, the queue grows when needed
+     * @param maxHeap         true if the node with the highest score is on top, false for the lowest score
+     */
+    public NeighborQueue(int initialCapacity, boolean maxHeap) {
+        int capacity = Math.max(initialCapacity, 1);
+        this.nodes = new int[capacity];
+        this.scores = new float[capacity];
+        this.maxHeap = maxHeap;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(int node, float score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        nodes[size] = node;
+        scores[size] = score;
+        siftUp(size++);
+    }
+
+    /**
+     * Add the entry to a min-heap bounded to {@code maxSize} entries, the lowest score is evicted on overflow.
+     *
+     * @return true if the entry was kept
+     */
+    public boolean offer(int node, float score, int maxSize) {
+        if (size < maxSize) {
+            add(node, score);
+            return true;
+        }
+        if (before(scores[0], score)) {
+            nodes[0] = node;
+            scores[0] = score;
+            siftDown(0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drain a min-heap into the arrays, ordered from the highest score.
+     */
+    public void drainDescending(int[] nodeArray, float[] scoreArray) {
+        for (int i = size - 1; i >= 0; i--) {
+            scoreArray[i] = scores[0];
+            nodeArray[i] = pop();
+        }
+    }
+
+    public int topNode() {
+        return nodes[0];
+    }
+
+    public float topScore() {
+        return scores[0];
+    }
+
+    /**
+     * Remove the top entry and return its node.
+     */
+    public int pop() {
+        int node = nodes[0];
+        size--;
+        nodes[0] = nodes[size];
+        scores[0] = scores[size];
+        siftDown(0);
+        return node;
+    }
+
+    private boolean before(float a, float b) {
+        return maxHeap ? a > b : a < b;
+    }
+
+    private void siftUp(int index) {
+        int node = nodes[index];
+        float score = scores[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(score, scores[parent])) {
+                break;
+            }
+            nodes[index] = nodes[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        nodes[index] = node;
+        scores[index] = score;
+    }
+
+    private void siftDown(int index) {
+        int node = nodes[index];
+        float score = scores[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && before(scores[right], scores[child])) {
+                child = right;
+            }
+            if (!before(scores[child], score)) {
+                break;
+            }
+            nodes[index] = nodes[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        nodes[index] = node;
+        scores[index] = score;
+    }
+}
@@ -18,17 +18,15 @@
 
 package com.hw.langchain.vectorstores.utils;
 
-import com.google.common.collect.Lists;
-
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.ops.transforms.Transforms;
+import com.google.common.primitives.Floats;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import static com.hw.langchain.math.utils.MathUtils.cosineSimilarity;
-import static com.hw.langchain.vectorstores.utils.Nd4jUtils.createFromList;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.hw.langchain.math.utils.MathUtils.dotProduct;
+import static com.hw.langchain.math.utils.MathUtils.normalize;
 import static java.lang.Float.NEGATIVE_INFINITY;
 
 /**
@@ -43,38 +41,86 @@ public class Utils {
 
     /**
      * Calculate maximal marginal relevance.
+     * <p>
+     * Candidates are normalized once into a contiguous matrix and the maximum similarity of every candidate to the
+     * selected ones is maintained incrementally, each pick costs a single dot product per remaining candidate, which
+     * makes the selection O(k * n * dim) overall.
+     *
+     * @param queryEmbedding Query embedding.
+     * @param embeddingList  Candidate embeddings.
+     * @param k              Number of candidates to select.
+     * @param lambdaMult     Number between 0 and 1 that determines the degree of diversity, with 0 corresponding
+     *                       to maximum diversity and 1 to minimum diversity.
+     * @return Indices of the selected candidates, in selection order.
      */
-    public static List<Integer> maximalMarginalRelevance(INDArray queryEmbedding, List<List<Float>> embeddingList,
-            int k, float lambdaMult) {
-        if (Math.min(k, embeddingList.size()) <= 0) {
+    public static List<Integer> maximalMarginalRelevance(float[] queryEmbedding, List<float[]> embeddingList, int k,
+            float lambdaMult) {
+        int size = embeddingList.size();
+        int count = Math.min(k, size);
+        if (count <= 0) {
             return new ArrayList<>();
         }
-        if (queryEmbedding.rank() == 1) {
-            queryEmbedding = Nd4j.expandDims(queryEmbedding, 0);
+        int dimension = queryEmbedding.length;
+        float[] query = normalize(queryEmbedding);
+        float[] candidates = new float[size * dimension];
+        float[] similarityToQuery = new float[size];
+        for (int i = 0; i < size; i++) {
+            float[] embedding = embeddingList.get(i);
+            checkArgument(embedding.length == dimension, "Expected embedding of dimension %s, got %s", dimension,
+                    embedding.length);
+            System.arraycopy(normalize(embedding), 0, candidates, i * dimension, dimension);
+            similarityToQuery[i] = dotProduct(query, 0, candidates, i * dimension, dimension);
         }
-        INDArray similarityToQuery = cosineSimilarity(queryEmbedding, embeddingList).getRow(0);
-        int mostSimilar = Nd4j.argMax(similarityToQuery).getInt(0);
-        List<Integer> idxs = Lists.newArrayList(mostSimilar);
-        INDArray selected = createFromList(embeddingList.get(mostSimilar));
 
-        while (idxs.size() < Math.min(k, embeddingList.size())) {
+        float[] similarityToSelected = new float[size];
+        Arrays.fill(similarityToSelected, NEGATIVE_INFINITY);
+        boolean[] selected = new boolean[size];
+        List<Integer> idxs = new ArrayList<>(count);
+
+        int idxToAdd = argMax(similarityToQuery);
+        while (idxToAdd >= 0) {
+            idxs.add(idxToAdd);
+            selected[idxToAdd] = true;
+            if (idxs.size() == count) {
+                break;
+            }
+            int selectedOffset = idxToAdd * dimension;
             float bestScore = NEGATIVE_INFINITY;
-            int idxToAdd = -1;
-            INDArray similarityToSelected = cosineSimilarity(embeddingList, selected);
-            for (int i = 0; i < similarityToQuery.columns(); i++) {
-                if (idxs.contains(i)) {
+            idxToAdd = -1;
+            for (int i = 0; i < size; i++) {
+                if (selected[i]) {
                     continue;
                 }
-                float redundantScore = Transforms.max(similarityToSelected.getRow(i), 0).getFloat(0);
-                float equationScore = lambdaMult * similarityToQuery.getFloat(i) - (1 - lambdaMult) * redundantScore;
+                float similarity = dotProduct(candidates, i * dimension, candidates, selectedOffset, dimension);
+                similarityToSelected[i] = Math.max(similarityToSelected[i], similarity);
+                float equationScore = lambdaMult * similarityToQuery[i] - (1 - lambdaMult) * similarityToSelected[i];
                 if (equationScore > bestScore) {
                     bestScore = equationScore;
                     idxToAdd = i;
                 }
             }
-            idxs.add(idxToAdd);
-            selected = Nd4j.vstack(selected, createFromList(embeddingList.get(idxToAdd)));
         }
         return idxs;
     }
+
+    private static int argMax(float[] values) {
+        int index = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[index]) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Calculate maximal marginal relevance.
+     *
+     * @see #maximalMarginalRelevance(float[], List, int, float)
+     */
+    public static List<Integer> maximalMarginalRelevance(List<Float> queryEmbedding, List<List<Float>> embeddingList,
+            int k, float lambdaMult) {
+        List<float[]> embeddings = embeddingList.stream().map(Floats::toArray).toList();
+        return maximalMarginalRelevance(Floats.toArray(queryEmbedding), embeddings, k, lambdaMult);
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test Embeddings functionality.
+ *
+ * @author HamaWhite
+ */
+class EmbeddingsTest {
+
+    /**
+     * Embeddings written against the list based methods only.
+     */
+    private static class ListEmbeddings implements Embeddings {
+
+        @Override
+        public List<List<Float>> embedDocuments(List<String> texts) {
+            return texts.stream().map(this::embedQuery).toList();
+        }
+
+        @Override
+        public List<Float> embedQuery(String text) {
+            return List.of((float) text.length(), 1.0f);
+        }
+    }
+
+    @Test
+    void testPrimitiveMethodsDefaultToListMethods() {
+        Embeddings embeddings = new ListEmbeddings();
+
+        assertArrayEquals(new float[] {3.0f, 1.0f}, embeddings.embedQueryVector("foo"));
+        List<float[]> vectors = embeddings.embedDocumentVectors(List.of("a", "bb"));
+        assertEquals(2, vectors.size());
+        assertArrayEquals(new float[] {2.0f, 1.0f}, vectors.get(1));
+        assertArrayEquals(new float[] {1.0f, 1.0f}, embeddings.embedDocumentsAsync(List.of("a")).block().get(0));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.cache;
+
+import com.hw.langchain.embeddings.base.Embeddings;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test CacheBackedEmbeddings functionality.
+ *
+ * @author HamaWhite
+ */
+class CacheBackedEmbeddingsTest {
+
+    /**
+     * Embeds a text as its length and records the texts sent to it.
+     */
+    private static class RecordingEmbeddings implements Embeddings {
+
+        private final List<String> embedded = new ArrayList<>();
+
+        @Override
+        public List<float[]> embedDocumentVectors(List<String> texts) {
+            embedded.addAll(texts);
+            return texts.stream().map(this::embedQueryVector).toList();
+        }
+
+        @Override
+        public float[] embedQueryVector(String text) {
+            return new float[] {text.length(), 1.0f};
+        }
+    }
+
+    @Test
+    void testOnlyMissesAreEmbedded(@TempDir Path tempDir) {
+        RecordingEmbeddings underlying = new RecordingEmbeddings();
+        MappedEmbeddingCache diskCache = MappedEmbeddingCache.open(tempDir.resolve("embeddings.cache"));
+        CacheBackedEmbeddings embeddings = CacheBackedEmbeddings.builder()
+                .underlyingEmbeddings(underlying)
+                .namespace("test-model")
+                .diskCache(diskCache)
+                .build();
+
+        List<float[]> first = embeddings.embedDocumentVectors(List.of("a", "bb", "a"));
+        assertEquals(List.of("a", "bb"), underlying.embedded);
+        assertArrayEquals(new float[] {1.0f, 1.0f}, first.get(2));
+
+        List<float[]> second = embeddings.embedDocumentVectors(List.of("bb", "ccc"));
+        assertEquals(List.of("a", "bb", "ccc"), underlying.embedded);
+        assertArrayEquals(new float[] {2.0f, 1.0f}, second.get(0));
+        assertArrayEquals(new float[] {3.0f, 1.0f}, second.get(1));
+        diskCache.close();
+
+        // a new instance without memory tier is served from the reopened file
+        RecordingEmbeddings reopened = new RecordingEmbeddings();
+        diskCache = MappedEmbeddingCache.open(tempDir.resolve("embeddings.cache"));
+        embeddings = CacheBackedEmbeddings.builder()
+                .underlyingEmbeddings(reopened)
+                .namespace("test-model")
+                .memoryCache(null)
+                .diskCache(diskCache)
+                .build();
+        List<float[]> third = embeddings.embedDocumentVectors(List.of("ccc", "a"));
+        assertEquals(List.of(), reopened.embedded);
+        assertArrayEquals(new float[] {3.0f, 1.0f}, third.get(0));
+        diskCache.close();
+    }
+
+    @Test
+    void testNamespaceIsRequired() {
+        CacheBackedEmbeddings embeddings = CacheBackedEmbeddings.builder()
+                .underlyingEmbeddings(new RecordingEmbeddings())
+                .build();
+        List<String> texts = List.of("a");
+
+        assertThrows(IllegalStateException.class, () -> embeddings.embedDocumentVectors(texts));
+    }
+
+    @Test
+    void testResultsDoNotShareArrays() {
+        CacheBackedEmbeddings embeddings = CacheBackedEmbeddings.builder()
+                .underlyingEmbeddings(new RecordingEmbeddings())
+                .namespace("test-model")
+                .build();
+
+        List<float[]> first = embeddings.embedDocumentVectors(List.of("a", "a"));
+        first.get(0)[0] = 42.0f;
+        assertArrayEquals(new float[] {1.0f, 1.0f}, first.get(1));
+
+        List<float[]> second = embeddings.embedDocumentVectors(List.of("a"));
+        assertArrayEquals(new float[] {1.0f, 1.0f}, second.get(0));
+        second.get(0)[0] = 42.0f;
+        assertArrayEquals(new float[] {1.0f, 1.0f}, embeddings.embedDocumentVectors(List.of("a")).get(0));
+    }
+}
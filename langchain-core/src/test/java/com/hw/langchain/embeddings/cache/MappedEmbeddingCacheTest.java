@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.cache;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Test MappedEmbeddingCache functionality.
+ *
+ * @author HamaWhite
+ */
+class MappedEmbeddingCacheTest {
+
+    private static HashCode key(String text) {
+        return Hashing.sha256().hashString(text, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testInterleavedWritesAndLookups(@TempDir Path tempDir) {
+        Path path = tempDir.resolve("embeddings.cache");
+        try (MappedEmbeddingCache cache = MappedEmbeddingCache.open(path)) {
+            for (int i = 0; i < 100; i++) {
+                // the first lookup maps the region, the records appended after it are read from the channel
+                cache.putAll(Map.of(key("text-" + i), new float[] {i, -i}));
+                assertArrayEquals(new float[] {i, -i}, cache.get(key("text-" + i)));
+                assertArrayEquals(new float[] {0, 0}, cache.get(key("text-0")));
+            }
+            assertNull(cache.get(key("missing")));
+        }
+
+        try (MappedEmbeddingCache cache = MappedEmbeddingCache.open(path)) {
+            assertEquals(100, cache.size());
+            assertArrayEquals(new float[] {99, -99}, cache.get(key("text-99")));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.ollama;
+
+import com.hw.langchain.exception.LangChainException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs {@link OllamaEmbeddings} against a local HTTP server standing in for Ollama.
+ *
+ * @author HamaWhite
+ */
+class OllamaEmbeddingsServerTest {
+
+    private static final String PLAIN_NOT_FOUND = "404 page not found";
+
+    private HttpServer server;
+
+    private final List<String> paths = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testBatchEndpoint() {
+        route("/api/embed", 200, "application/json", "{\"embeddings\":[[0.1,0.2],[0.3,0.4]]}");
+
+        List<float[]> result = embeddings().embedDocumentVectors(List.of("foo", "bar"));
+
+        assertThat(result).containsExactly(new float[]{0.1f, 0.2f}, new float[]{0.3f, 0.4f});
+        assertThat(paths).containsExactly("/api/embed");
+    }
+
+    @Test
+    void testPlainNotFoundFallsBackToLegacyEndpoint() {
+        route("/api/embed", 404, "text/plain", PLAIN_NOT_FOUND);
+        route("/api/embeddings", 200, "application/json", "{\"embedding\":[3.0,4.0]}");
+
+        OllamaEmbeddings embeddings = embeddings();
+        List<float[]> result = embeddings.embedDocumentVectors(List.of("foo", "bar"));
+
+        // the legacy vectors are returned raw
+        assertThat(result).containsExactly(new float[]{3.0f, 4.0f}, new float[]{3.0f, 4.0f});
+        assertThat(paths).containsExactly("/api/embed", "/api/embeddings", "/api/embeddings");
+
+        // the batch endpoint is not probed again once the server turned out not to expose it
+        paths.clear();
+        embeddings.embedQueryVector("baz");
+        assertThat(paths).containsExactly("/api/embeddings");
+    }
+
+    @Test
+    void testNormalizeLegacyVectors() {
+        route("/api/embed", 404, "text/plain", PLAIN_NOT_FOUND);
+        route("/api/embeddings", 200, "application/json", "{\"embedding\":[3.0,4.0]}");
+
+        OllamaEmbeddings embeddings = OllamaEmbeddings.builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .normalizeLegacy(true)
+                .build()
+                .init();
+
+        assertThat(embeddings.embedQueryVector("foo")).containsExactly(0.6f, 0.8f);
+    }
+
+    @Test
+    void testJsonNotFoundIsRaised() {
+        route("/api/embed", 404, "application/json", "{\"error\":\"model 'llama2' not found, try pulling it first\"}");
+
+        OllamaEmbeddings embeddings = embeddings();
+        List<String> texts = List.of("foo");
+
+        LangChainException exception = assertThrows(LangChainException.class,
+                () -> embeddings.embedDocumentVectors(texts));
+        assertThat(exception.getMessage()).contains("404", "model 'llama2' not found");
+        assertThat(paths).containsExactly("/api/embed");
+    }
+
+    private OllamaEmbeddings embeddings() {
+        return OllamaEmbeddings.builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .build()
+                .init();
+    }
+
+    private void route(String path, int status, String contentType, String body) {
+        server.createContext(path, exchange -> respond(exchange, status, contentType, body));
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        paths.add(exchange.getRequestURI().getPath());
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hw.langchain.embeddings.openai;
+
+import com.hw.openai.OpenAiClient;
+import com.hw.openai.entity.embeddings.Embedding;
+import com.hw.openai.entity.embeddings.EmbeddingData;
+import com.hw.openai.entity.embeddings.EmbeddingResp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the chunking and batching of OpenAIEmbeddings without calling the API.
+ *
+ * @author HamaWhite
+ */
+class OpenAIEmbeddingsTest {
+
+    private static List<List<Integer>> chunks(int... sizes) {
+        return Arrays.stream(sizes).mapToObj(size -> Collections.nCopies(size, 0)).toList();
+    }
+
+    private static List<Integer> batchSizes(List<List<List<Integer>>> batches) {
+        return batches.stream().map(List::size).toList();
+    }
+
+    @Test
+    void testChunkSplitsLongTexts() {
+        OpenAIEmbeddings embeddings = OpenAIEmbeddings.builder().embeddingCtxLength(3).build();
+        OpenAIEmbeddings.Chunks chunks = embeddings.chunk(List.of("a a a a a a a", "hello"));
+
+        assertEquals(List.of(3, 3, 1, 1), chunks.tokens().stream().map(List::size).toList());
+        assertEquals(List.of(0, 0, 0, 1), chunks.indices());
+    }
+
+    @Test
+    void testPackBatchesCapsInputs() {
+        OpenAIEmbeddings embeddings = OpenAIEmbeddings.builder().chunkSize(2).build();
+        assertEquals(List.of(2, 2, 1), batchSizes(embeddings.packBatches(chunks(1, 1, 1, 1, 1))));
+    }
+
+    @Test
+    void testPackBatchesCapsTokens() {
+        OpenAIEmbeddings embeddings = OpenAIEmbeddings.builder().maxTokensPerRequest(10).build();
+        assertEquals(List.of(2, 2), batchSizes(embeddings.packBatches(chunks(4, 4, 4, 4))));
+    }
+
+    /**
+     * A chunk using the whole budget gets a batch of its own, no empty batch is emitted.
+     */
+    @Test
+    void testPackBatchesChunkEqualToBudget() {
+        OpenAIEmbeddings embeddings = OpenAIEmbeddings.builder().maxTokensPerRequest(4).build();
+        assertEquals(List.of(1, 1, 1), batchSizes(embeddings.packBatches(chunks(4, 4, 1))));
+    }
+
+    /**
+     * Concurrent batches complete out of order, the embeddings are still returned in the order of the texts.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testConcurrentBatchesKeepTextOrder() {
+        OpenAiClient client = mock(OpenAiClient.class);
+        when(client.createEmbedding(any(Embedding.class))).thenAnswer(invocation -> {
+            List<?> input = ((Embedding) invocation.getArgument(0)).getInput();
+            List<Integer> tokens = (List<Integer>) input.get(0);
+            // later texts answer first
+            TimeUnit.MILLISECONDS.sleep(Math.max(0, 40 - tokens.size() * 4L));
+            return embeddingResp(tokens.size());
+        });
+        List<String> texts = IntStream.range(1, 9).mapToObj(i -> "a ".repeat(i).trim()).toList();
+
+        List<float[]> concurrent = OpenAIEmbeddings.builder()
+                .client(client)
+                .chunkSize(1)
+                .maxConcurrency(4)
+                .build()
+                .embedDocumentVectors(texts);
+
+        assertEquals(texts.size(), concurrent.size());
+        for (int i = 0; i < texts.size(); i++) {
+            // the embedding of the text with i + 1 tokens is the unit vector along the token count
+            float[] expected = {(i + 1) / (float) Math.hypot(i + 1, 1), 1 / (float) Math.hypot(i + 1, 1)};
+            assertArrayEquals(expected, concurrent.get(i), 1e-6f);
+        }
+    }
+
+    /**
+     * A query within the context length is sent as the raw string and returned as the server embedded it.
+     */
+    @Test
+    void testEmbedShortQueryAsString() {
+        OpenAiClient client = mock(OpenAiClient.class);
+        List<List<?>> inputs = new ArrayList<>();
+        when(client.createEmbedding(any(Embedding.class))).thenAnswer(invocation -> {
+            inputs.add(((Embedding) invocation.getArgument(0)).getInput());
+            return embeddingResp(3);
+        });
+        OpenAIEmbeddings embeddings = OpenAIEmbeddings.builder().client(client).build();
+
+        assertArrayEquals(new float[] {3, 1}, embeddings.embedQueryVector("hello world"));
+        assertArrayEquals(new float[] {3, 1}, embeddings.embedQueryVector(""));
+        assertEquals(List.of(List.of("hello world"), List.of("")), inputs);
+    }
+
+    private static EmbeddingResp embeddingResp(int tokenCount) {
+        EmbeddingData data = new EmbeddingData();
+        data.setIndex(0);
+        data.setEmbedding(new float[] {tokenCount, 1});
+        EmbeddingResp resp = new EmbeddingResp();
+        resp.setData(List.of(data));
+        return resp;
+    }
+}
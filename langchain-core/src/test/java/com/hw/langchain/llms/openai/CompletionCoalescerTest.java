@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.llms.openai;
+
+import com.hw.openai.entity.completions.Choice;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test CompletionCoalescer functionality.
+ *
+ * @author HamaWhite
+ */
+class CompletionCoalescerTest {
+
+    private final List<List<String>> requests = new ArrayList<>();
+
+    /**
+     * Answers each prompt with its text, returning the choices in reverse order of their index.
+     */
+    private CompletableFuture<List<Choice>> send(List<String> prompts, List<String> stop) {
+        synchronized (requests) {
+            requests.add(List.copyOf(prompts));
+        }
+        List<Choice> choices = new ArrayList<>();
+        for (int i = prompts.size() - 1; i >= 0; i--) {
+            Choice choice = new Choice();
+            choice.setIndex(i);
+            choice.setText(prompts.get(i).toUpperCase());
+            choices.add(choice);
+        }
+        return CompletableFuture.completedFuture(choices);
+    }
+
+    @Test
+    void testCoalesceConcurrentCalls() {
+        var coalescer = new CompletionCoalescer(this::send, 20, 1, Duration.ofMillis(50));
+
+        var first = coalescer.submit(List.of("a"), null);
+        var second = coalescer.submit(List.of("b", "c"), null);
+        var other = coalescer.submit(List.of("d"), List.of("\n"));
+
+        assertEquals(List.of("A"), first.join().stream().map(Choice::getText).toList());
+        assertEquals(List.of("B", "C"), second.join().stream().map(Choice::getText).toList());
+        assertEquals(List.of("D"), other.join().stream().map(Choice::getText).toList());
+        assertEquals(2, requests.size());
+        assertEquals(List.of("a", "b", "c"), requests.get(0));
+    }
+
+    @Test
+    void testSendFullBatchEarly() {
+        var coalescer = new CompletionCoalescer(this::send, 2, 1, Duration.ofMinutes(1));
+
+        var first = coalescer.submit(List.of("a"), null);
+        var second = coalescer.submit(List.of("b"), null);
+
+        assertEquals("A", first.join().get(0).getText());
+        assertEquals("B", second.join().get(0).getText());
+        assertEquals(List.of(List.of("a", "b")), requests);
+    }
+}
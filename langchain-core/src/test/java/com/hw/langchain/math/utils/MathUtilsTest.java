@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.math.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.hw.langchain.math.utils.MathUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author HamaWhite
+ */
+class MathUtilsTest {
+
+    @Test
+    void testCosineSimilarity() {
+        float[][] x = {{1, 0}, {0, 1}, {1, 1}};
+        float[][] y = {{1, 0}, {0, 0}};
+
+        float[][] similarity = cosineSimilarity(x, y);
+        assertThat(similarity[0]).containsExactly(1.0f, 0.0f);
+        assertThat(similarity[1]).containsExactly(0.0f, 0.0f);
+        assertThat(similarity[2][0]).isCloseTo(0.7071f, within(1e-4f));
+    }
+
+    @Test
+    void testDotProductMatchesScalarLoop() {
+        float[] a = new float[1000];
+        float[] b = new float[1000];
+        double expected = 0;
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (i % 7) / 7.0f;
+            b[i] = (i % 5) / 5.0f;
+            expected += a[i] * b[i];
+        }
+        assertThat(dotProduct(a, b)).isCloseTo((float) expected, within(1e-2f));
+        assertThat(norm(normalize(a))).isCloseTo(1.0f, within(1e-5f));
+    }
+
+    @Test
+    void testWeightedAverage() {
+        float[] average = weightedAverage(List.of(new float[] {1, 0}, new float[] {0, 1}), new float[] {3, 1});
+        assertThat(average).containsExactly(0.75f, 0.25f);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.retrievers.bm25;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the WAND search of {@link BM25Index} against exhaustive scoring.
+ *
+ * @author HamaWhite
+ */
+class BM25IndexTest {
+
+    private static final float K1 = 1.5f;
+
+    private static final float B = 0.75f;
+
+    private static final int VOCABULARY_SIZE = 200;
+
+    private static final float TOLERANCE = 1e-4f;
+
+    @Test
+    void testSearchMatchesBruteForce() {
+        Random random = new Random(0);
+        List<List<String>> documents = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int length = 5 + random.nextInt(40);
+            List<String> tokens = new ArrayList<>(length);
+            for (int j = 0; j < length; j++) {
+                tokens.add(randomTerm(random));
+            }
+            documents.add(tokens);
+        }
+        BM25Index index = new BM25Index(documents, K1, B);
+        BruteForce bruteForce = new BruteForce(documents);
+
+        // every posting list spans several skip blocks, so that advancing over whole blocks is exercised
+        for (int term = 0; term < VOCABULARY_SIZE; term++) {
+            assertTrue(bruteForce.documentFrequencies.get("t" + term) > 128, "t" + term);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            Set<String> terms = new LinkedHashSet<>();
+            int termCount = 1 + random.nextInt(5);
+            while (terms.size() < termCount) {
+                terms.add(randomTerm(random));
+            }
+            int k = List.of(1, 3, 10, 50).get(random.nextInt(4));
+
+            List<Pair<Integer, Float>> results = index.search(terms, k);
+            float[] expected = bruteForce.topScores(terms, k);
+
+            assertEquals(expected.length, results.size(), terms.toString());
+            for (int j = 0; j < expected.length; j++) {
+                Pair<Integer, Float> result = results.get(j);
+                assertEquals(expected[j], result.getRight(), TOLERANCE, terms + " rank " + j);
+                assertEquals(bruteForce.score(terms, result.getLeft()), result.getRight(), TOLERANCE,
+                        terms + " doc " + result.getLeft());
+            }
+        }
+    }
+
+    /**
+     * Skewed towards the first terms, so that common and rare terms get very different idf values.
+     */
+    private static String randomTerm(Random random) {
+        double skewed = Math.pow(random.nextDouble(), 3);
+        return "t" + (int) (skewed * VOCABULARY_SIZE);
+    }
+
+    /**
+     * Scores every document of the corpus against the query.
+     */
+    private static final class BruteForce {
+
+        private final List<Map<String, Integer>> frequencies = new ArrayList<>();
+
+        private final Map<String, Integer> documentFrequencies = new HashMap<>();
+
+        private final float averageLength;
+
+        private final int[] lengths;
+
+        private BruteForce(List<List<String>> documents) {
+            lengths = new int[documents.size()];
+            long totalLength = 0;
+            for (int doc = 0; doc < documents.size(); doc++) {
+                Map<String, Integer> counts = new HashMap<>();
+                documents.get(doc).forEach(token -> counts.merge(token, 1, Integer::sum));
+                counts.keySet().forEach(term -> documentFrequencies.merge(term, 1, Integer::sum));
+                frequencies.add(counts);
+                lengths[doc] = documents.get(doc).size();
+                totalLength += lengths[doc];
+            }
+            averageLength = (float) totalLength / documents.size();
+        }
+
+        private float score(Set<String> terms, int doc) {
+            float score = 0;
+            for (String term : terms) {
+                int frequency = frequencies.get(doc).getOrDefault(term, 0);
+                if (frequency > 0) {
+                    int df = documentFrequencies.get(term);
+                    double idf = Math.log(1 + (lengths.length - df + 0.5) / (df + 0.5));
+                    double norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+                    score += (float) (idf * frequency * (K1 + 1) / (frequency + norm));
+                }
+            }
+            return score;
+        }
+
+        /**
+         * The k highest scores among the documents matching at least one term, in descending order.
+         */
+        private float[] topScores(Set<String> terms, int k) {
+            List<Float> scores = new ArrayList<>();
+            for (int doc = 0; doc < lengths.length; doc++) {
+                float score = score(terms, doc);
+                if (score > 0) {
+                    scores.add(score);
+                }
+            }
+            scores.sort(Comparator.reverseOrder());
+            float[] top = new float[Math.min(k, scores.size())];
+            for (int i = 0; i < top.length; i++) {
+                top[i] = scores.get(i);
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.retrievers.bm25;
+
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.text.splitter.CharacterTextSplitter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test BM25Retriever functionality.
+ *
+ * @author HamaWhite
+ */
+class BM25RetrieverTest {
+
+    @Test
+    void testBM25Retriever() {
+        List<String> texts = List.of(
+                "The connection failed with error code E1234.",
+                "Restart the service to apply the new configuration.",
+                "Error E1234 is raised when the connection pool is exhausted, raise the pool size.");
+        BM25Retriever retriever = BM25Retriever.fromTexts(texts, null);
+
+        assertEquals(List.of(new Document(texts.get(0)), new Document(texts.get(2))),
+                retriever.getRelevantDocuments("e1234 failed"));
+        assertEquals(List.of(), retriever.getRelevantDocuments("unknown"));
+    }
+
+    @Test
+    void testFromTextSplitter() {
+        var textSplitter = CharacterTextSplitter.builder().chunkSize(20).chunkOverlap(0).build();
+        Document document = new Document("apples and pears\n\nkiwis and plums", Map.of("source", "fruits"));
+        BM25Retriever retriever = BM25Retriever.fromDocuments(List.of(document), textSplitter);
+
+        assertEquals(List.of(new Document("kiwis and plums", Map.of("source", "fruits"))),
+                retriever.getRelevantDocuments("kiwis"));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.retrievers.hybrid;
+
+import com.hw.langchain.retrievers.bm25.BM25Retriever;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings;
+import com.hw.langchain.vectorstores.flat.FlatVectorStore;
+import com.hw.langchain.vectorstores.pinecone.Pinecone;
+import com.hw.pinecone.IndexClient;
+import com.hw.pinecone.entity.vector.QueryRequest;
+import com.hw.pinecone.entity.vector.QueryResponse;
+import com.hw.pinecone.entity.vector.ScoredVector;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test HybridRetriever functionality.
+ *
+ * @author HamaWhite
+ */
+class HybridRetrieverTest {
+
+    private static final List<String> TEXTS = List.of("foo", "bar", "restock SKU-4711 soon");
+
+    private HybridRetriever hybridRetriever(FusionStrategy fusionStrategy) {
+        FlatVectorStore vectorStore = FlatVectorStore.builder()
+                .embeddingFunction(new FakeEmbeddings())
+                .build();
+        vectorStore.fromTexts(TEXTS, new FakeEmbeddings(), null);
+        return HybridRetriever.builder()
+                .bm25Retriever(BM25Retriever.fromTexts(TEXTS, null))
+                .vectorStore(vectorStore)
+                .k(2)
+                .vectorWeight(0.4f)
+                .fusionStrategy(fusionStrategy)
+                .build();
+    }
+
+    /**
+     * The fake embeddings rank the identifier last, the lexical match lifts it to the top.
+     */
+    @Test
+    void testReciprocalRankFusion() {
+        List<Document> output = hybridRetriever(FusionStrategy.RECIPROCAL_RANK).getRelevantDocuments("sku-4711");
+        assertEquals(List.of(new Document("restock SKU-4711 soon"), new Document("foo")), output);
+    }
+
+    @Test
+    void testWeightedScoreFusion() {
+        List<Document> output = hybridRetriever(FusionStrategy.WEIGHTED_SCORE).getRelevantDocuments("sku-4711");
+        assertEquals(new Document("restock SKU-4711 soon"), output.get(0));
+    }
+
+    /**
+     * Pinecone normalizes its cosine query scores to relevance scores, which the weighted fusion combines.
+     */
+    @Test
+    void testRemoteVectorStoreRelevanceScores() {
+        IndexClient index = mock(IndexClient.class);
+        when(index.query(any(QueryRequest.class))).thenAnswer(invocation -> queryResponse(0.9f, 0.5f, 0.1f));
+        FakeEmbeddings embeddings = new FakeEmbeddings();
+        Pinecone vectorStore = Pinecone.builder()
+                .index(index)
+                .embeddingFunction(embeddings::embedQuery)
+                .build();
+        List<Float> relevanceScores = vectorStore.similaritySearchWithRelevanceScores("foo", 3).stream()
+                .map(Pair::getRight)
+                .toList();
+        assertEquals(List.of(0.95f, 0.75f, 0.55f), relevanceScores);
+
+        HybridRetriever retriever = HybridRetriever.builder()
+                .bm25Retriever(BM25Retriever.fromTexts(TEXTS, null))
+                .vectorStore(vectorStore)
+                .k(2)
+                .vectorWeight(0.4f)
+                .fusionStrategy(FusionStrategy.WEIGHTED_SCORE)
+                .build();
+        List<Document> output = retriever.getRelevantDocuments("sku-4711");
+        assertEquals(List.of(new Document("restock SKU-4711 soon"), new Document("foo")), output);
+    }
+
+    private static QueryResponse queryResponse(float... scores) {
+        QueryResponse response = new QueryResponse();
+        response.setMatches(IntStream.range(0, TEXTS.size()).mapToObj(i -> {
+            ScoredVector match = new ScoredVector();
+            match.setId(String.valueOf(i));
+            match.setScore(scores[i]);
+            match.setMetadata(new HashMap<>(Map.of("text", TEXTS.get(i))));
+            return match;
+        }).toList());
+        return response;
+    }
+}
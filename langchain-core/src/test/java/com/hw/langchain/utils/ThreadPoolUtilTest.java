@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hw.langchain.utils.ThreadPoolUtil.BLOCKING_IO_EXECUTOR;
+import static com.hw.langchain.utils.ThreadPoolUtil.mapBounded;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author HamaWhite
+ */
+class ThreadPoolUtilTest {
+
+    @Test
+    void testSubmitsNextTaskAsAnyCompletes() throws InterruptedException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CountDownLatch lastStarted = new CountDownLatch(1);
+        try {
+            // the first task only completes once the last one started, which needs the second one to finish first
+            List<Integer> results = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> mapBounded(List.of(0, 1, 2), input -> {
+                        if (input == 0) {
+                            await(lastStarted);
+                        } else if (input == 2) {
+                            lastStarted.countDown();
+                        }
+                        return input * 10;
+                    }, 2, executor));
+
+            assertEquals(List.of(0, 10, 20), results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailureCancelsOutstandingTasks() throws InterruptedException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CountDownLatch blockedStarted = new CountDownLatch(1);
+        CountDownLatch blockedInterrupted = new CountDownLatch(1);
+        AtomicInteger started = new AtomicInteger();
+        try {
+            CompletionException e = assertThrows(CompletionException.class,
+                    () -> mapBounded(List.of(0, 1, 2), input -> {
+                        started.incrementAndGet();
+                        if (input == 0) {
+                            blockedStarted.countDown();
+                            try {
+                                Thread.sleep(Long.MAX_VALUE);
+                            } catch (InterruptedException ignored) {
+                                blockedInterrupted.countDown();
+                            }
+                            return input;
+                        }
+                        await(blockedStarted);
+                        throw new IllegalStateException("failed " + input);
+                    }, 2, executor));
+
+            assertEquals("failed 1", e.getCause().getMessage());
+            assertTrue(blockedInterrupted.await(10, TimeUnit.SECONDS));
+            assertEquals(2, started.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testNestedBlockingIoTasksRunInline() {
+        List<Boolean> results = mapBounded(List.of(0, 1), outer -> {
+            Thread outerThread = Thread.currentThread();
+            List<Thread> innerThreads = mapBounded(List.of(0, 1, 2), inner -> Thread.currentThread(), 2,
+                    BLOCKING_IO_EXECUTOR);
+            return innerThreads.stream().allMatch(outerThread::equals);
+        }, 2, BLOCKING_IO_EXECUTOR);
+
+        assertEquals(List.of(true, true), results);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
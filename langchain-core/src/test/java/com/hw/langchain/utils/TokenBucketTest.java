@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hw.langchain.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author HamaWhite
+ */
+class TokenBucketTest {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void testReserveWithinCapacity() {
+        TokenBucket bucket = new TokenBucket(600);
+        assertEquals(0, bucket.reserve(600));
+
+        // the bucket is empty, 60 permits refill in about 6 seconds at 10 permits per second
+        long waitNanos = bucket.reserve(60);
+        assertTrue(waitNanos > TimeUnit.MILLISECONDS.toNanos(5_900) && waitNanos <= TimeUnit.SECONDS.toNanos(6),
+                "unexpected wait " + waitNanos);
+    }
+
+    /**
+     * A request larger than the capacity takes the whole capacity instead of waiting forever.
+     */
+    @Test
+    void testReserveOverCapacity() {
+        TokenBucket bucket = new TokenBucket(600);
+        assertEquals(0, bucket.reserve(10_000));
+        assertTrue(bucket.available() < 1);
+
+        long waitNanos = bucket.reserve(10_000);
+        assertTrue(waitNanos > NANOS_PER_MINUTE - TimeUnit.SECONDS.toNanos(1) && waitNanos <= NANOS_PER_MINUTE,
+                "unexpected wait " + waitNanos);
+    }
+
+    @Test
+    void testUpdateLowersAvailable() {
+        TokenBucket bucket = new TokenBucket(600);
+        bucket.update(100, Duration.ofSeconds(1));
+        assertTrue(bucket.available() <= 101);
+        assertEquals(0, bucket.reserve(100));
+    }
+
+    /**
+     * Nothing remains on the server, so no permit is granted before the reported reset.
+     */
+    @Test
+    void testUpdateWithNothingRemainingWaitsForReset() {
+        TokenBucket bucket = new TokenBucket(600);
+        bucket.update(0, Duration.ofSeconds(2));
+
+        long waitNanos = bucket.reserve(1);
+        // the reset plus the refill time of the requested permit
+        assertTrue(waitNanos > TimeUnit.SECONDS.toNanos(2) && waitNanos <= TimeUnit.MILLISECONDS.toNanos(2_100),
+                "unexpected wait " + waitNanos);
+    }
+}
@@ -21,6 +21,7 @@ package com.hw.langchain.vectorstores.fake.embeddings;
 import com.hw.langchain.embeddings.base.Embeddings;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -36,14 +37,12 @@ public class FakeEmbeddings implements Embeddings {
      * Return simple embeddings. Embeddings encode each text as its index.
      */
     @Override
-    public List<List<Float>> embedDocuments(List<String> texts) {
-        List<List<Float>> embeddings = new ArrayList<>();
+    public List<float[]> embedDocumentVectors(List<String> texts) {
+        List<float[]> embeddings = new ArrayList<>();
         for (int i = 0; i < texts.size(); i++) {
-            List<Float> embedding = new ArrayList<>();
-            for (int j = 0; j < 9; j++) {
-                embedding.add(1.0f);
-            }
-            embedding.add((float) i);
+            float[] embedding = new float[10];
+            Arrays.fill(embedding, 0, 9, 1.0f);
+            embedding[9] = i;
             embeddings.add(embedding);
         }
         return embeddings;
@@ -54,12 +53,9 @@ public class FakeEmbeddings implements Embeddings {
      * Distance to each text will be that text's index, as it was passed to embedDocuments.
      */
     @Override
-    public List<Float> embedQuery(String text) {
-        List<Float> embedding = new ArrayList<>();
-        for (int i = 0; i < 9; i++) {
-            embedding.add(1.0f);
-        }
-        embedding.add(0.0f);
+    public float[] embedQueryVector(String text) {
+        float[] embedding = new float[10];
+        Arrays.fill(embedding, 0, 9, 1.0f);
         return embedding;
     }
 }
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.flat;
+
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings;
+import com.hw.langchain.vectorstores.quantization.ScalarQuantizer;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings.FAKE_TEXTS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test FlatVectorStore functionality.
+ *
+ * @author HamaWhite
+ */
+class FlatVectorStoreTest {
+
+    private FlatVectorStore flatFromTexts(List<Map<String, Object>> metadatas) {
+        FlatVectorStore flat = FlatVectorStore.builder()
+                .embeddingFunction(new FakeEmbeddings())
+                .build();
+        flat.fromTexts(FAKE_TEXTS, new FakeEmbeddings(), metadatas);
+        return flat;
+    }
+
+    /**
+     * Test end to end construction and search.
+     */
+    @Test
+    void testFlatVectorStore() {
+        FlatVectorStore docSearch = flatFromTexts(null);
+        List<Document> output = docSearch.similaritySearch("foo", 1, Map.of());
+        assertEquals(List.of(new Document("foo")), output);
+    }
+
+    @Test
+    void testFlatVectorStoreWithFilter() {
+        List<Map<String, Object>> metadatas = IntStream.range(0, FAKE_TEXTS.size())
+                .mapToObj(i -> Map.<String, Object>of("page", i))
+                .toList();
+        FlatVectorStore docSearch = flatFromTexts(metadatas);
+        List<Document> output = docSearch.similaritySearch("foo", 1, Map.of("page", 1));
+        assertEquals(List.of(new Document("bar", Map.of("page", 1))), output);
+    }
+
+    @Test
+    void testSimilaritySearchAsync() {
+        FlatVectorStore docSearch = flatFromTexts(null);
+        List<Document> output = docSearch.similaritySearchAsync("foo", 1, Map.of()).block();
+        assertEquals(List.of(new Document("foo")), output);
+    }
+
+    @Test
+    void testBatchSimilaritySearch() {
+        FlatVectorStore docSearch = flatFromTexts(null);
+        // fake embeddings are indexed by position, so the query vectors are taken from the stored texts.
+        List<float[]> vectors = new FakeEmbeddings().embedDocumentVectors(FAKE_TEXTS);
+        List<float[]> embeddings = List.of(vectors.get(0), vectors.get(2));
+        List<List<Document>> output = docSearch.similaritySearchByVectors(embeddings, 1, Map.of());
+        assertEquals(List.of(List.of(new Document("foo")), List.of(new Document("baz"))), output);
+    }
+
+    @Test
+    void testSaveAndLoad(@TempDir Path tempDir) {
+        Path path = tempDir.resolve("flat.index");
+        List<Map<String, Object>> metadatas = IntStream.range(0, FAKE_TEXTS.size())
+                .mapToObj(i -> Map.<String, Object>of("page", i))
+                .toList();
+        FlatVectorStore docSearch = flatFromTexts(metadatas);
+        docSearch.save(path);
+
+        FlatVectorStore loaded = FlatVectorStore.load(path, new FakeEmbeddings());
+        assertEquals(docSearch.similaritySearch("bar", 2, Map.of()), loaded.similaritySearch("bar", 2, Map.of()));
+
+        // the second save appends a segment with the new text and the deletion
+        List<String> ids = loaded.addTexts(List.of("foo"), List.of(Map.of("page", 3)));
+        loaded.delete(ids);
+        loaded.save(path);
+
+        FlatVectorStore reloaded = FlatVectorStore.load(path, new FakeEmbeddings());
+        assertEquals(List.of(new Document("foo", Map.of("page", 0))), reloaded.similaritySearch("foo", 1, Map.of()));
+    }
+
+    /**
+     * The metadata of a loaded store is only decoded from the file by the first filtered search.
+     */
+    @Test
+    void testFilterLoadedStore(@TempDir Path tempDir) {
+        Path path = tempDir.resolve("flat.index");
+        List<Map<String, Object>> metadatas = IntStream.range(0, FAKE_TEXTS.size())
+                .mapToObj(i -> Map.<String, Object>of("page", i))
+                .toList();
+        flatFromTexts(metadatas).save(path);
+
+        FlatVectorStore loaded = FlatVectorStore.load(path, new FakeEmbeddings());
+        loaded.addTexts(List.of("qux"), List.of(Map.of("page", 1)));
+        List<Document> output = loaded.similaritySearch("foo", 4, Map.of("page", 1));
+        assertEquals(2, output.size());
+        assertTrue(output.contains(new Document(FAKE_TEXTS.get(1), Map.of("page", 1))));
+        assertTrue(output.contains(new Document("qux", Map.of("page", 1))));
+    }
+
+    /**
+     * A segment failing its checksum is left out, the segments before it are still loaded.
+     */
+    @Test
+    void testCorruptedSegmentIsIgnored(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("flat.index");
+        FlatVectorStore store = flatFromTexts(null);
+        store.save(path);
+        long firstSegmentEnd = Files.size(path);
+        store.addTexts(List.of("qux"), null);
+        store.save(path);
+
+        // flip a byte of the vectors of the second segment, right after its header
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, firstSegmentEnd + 64);
+            value.put(0, (byte) ~value.get(0)).rewind();
+            channel.write(value, firstSegmentEnd + 64);
+        }
+
+        FlatVectorStore loaded = FlatVectorStore.load(path, new FakeEmbeddings());
+        List<Document> output = loaded.similaritySearch("foo", FAKE_TEXTS.size() + 1, Map.of());
+        assertEquals(FAKE_TEXTS.size(), output.size());
+        assertFalse(output.contains(new Document("qux")));
+    }
+
+    @Test
+    void testSaveOverMappedFile(@TempDir Path tempDir) {
+        Path path = tempDir.resolve("flat.index");
+        Path copy = tempDir.resolve("copy.index");
+        flatFromTexts(null).save(path);
+
+        // the loaded store maps the vectors of the file it recreates by saving back to it
+        FlatVectorStore loaded = FlatVectorStore.load(path, new FakeEmbeddings());
+        List<Document> expected = loaded.similaritySearch("bar", 2, Map.of());
+        loaded.save(copy);
+        loaded.save(path);
+
+        assertEquals(expected, loaded.similaritySearch("bar", 2, Map.of()));
+        assertEquals(expected, FlatVectorStore.load(path, new FakeEmbeddings()).similaritySearch("bar", 2, Map.of()));
+    }
+
+    @Test
+    void testLoadQuantizesOnceTrainable(@TempDir Path tempDir) {
+        Path path = tempDir.resolve("flat.index");
+        flatFromTexts(null).save(path);
+
+        // the file holds fewer vectors than the training size, the loaded store stays exact
+        FlatVectorStore exact = FlatVectorStore.load(path, FlatVectorStore.builder()
+                .embeddingFunction(new FakeEmbeddings())
+                .quantizer(new ScalarQuantizer()));
+        assertFalse(exact.isQuantized());
+
+        FlatVectorStore quantized = FlatVectorStore.load(path, FlatVectorStore.builder()
+                .embeddingFunction(new FakeEmbeddings())
+                .quantizer(new ScalarQuantizer())
+                .trainingSize(FAKE_TEXTS.size()));
+        assertTrue(quantized.isQuantized());
+        assertEquals(exact.similaritySearch("bar", 2, Map.of()), quantized.similaritySearch("bar", 2, Map.of()));
+    }
+
+    /**
+     * Large dimensions get fewer vectors per page, so that a page stays mappable and addressable by an int.
+     */
+    @Test
+    void testPageSizeFitsDimension() {
+        assertEquals(16, FlatIndex.pageShift(1536));
+        assertEquals(15, FlatIndex.pageShift(8192));
+        assertEquals(13, FlatIndex.pageShift(32768));
+        for (int dimension : new int[] {1, 1000, 8192, 32768, 100_000, FlatIndex.MAX_PAGE_FLOATS}) {
+            long pageBytes = ((long) dimension << FlatIndex.pageShift(dimension)) * Float.BYTES;
+            assertTrue(pageBytes <= Integer.MAX_VALUE, "page of dimension " + dimension + " exceeds 2 GB");
+        }
+        assertThrows(IllegalArgumentException.class, () -> new FlatIndex(FlatIndex.MAX_PAGE_FLOATS + 1,
+                DistanceStrategy.COSINE, 1, ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    void testPartitionedSearch() {
+        int dimension = 48;
+        Random random = new Random(0);
+        FlatIndex partitioned = new FlatIndex(dimension, DistanceStrategy.COSINE, 64, ForkJoinPool.commonPool());
+        FlatIndex sequential = new FlatIndex(dimension, DistanceStrategy.COSINE, Integer.MAX_VALUE,
+                ForkJoinPool.commonPool());
+        for (int i = 0; i < 5000; i++) {
+            float[] vector = randomVector(random, dimension);
+            partitioned.add(vector);
+            sequential.add(vector);
+        }
+
+        float[] query = randomVector(random, dimension);
+        assertEquals(sequential.search(query, 10, null), partitioned.search(query, 10, null));
+    }
+
+    private float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.hnsw;
+
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings.FAKE_TEXTS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test HnswVectorStore functionality.
+ *
+ * @author HamaWhite
+ */
+class HnswVectorStoreTest {
+
+    private HnswVectorStore hnswFromTexts(List<Map<String, Object>> metadatas) {
+        HnswVectorStore hnsw = HnswVectorStore.builder()
+                .embeddingFunction(new FakeEmbeddings())
+                .build();
+        hnsw.fromTexts(FAKE_TEXTS, new FakeEmbeddings(), metadatas);
+        return hnsw;
+    }
+
+    /**
+     * Test end to end construction and search.
+     */
+    @Test
+    void testHnswVectorStore() {
+        HnswVectorStore docSearch = hnswFromTexts(null);
+        List<Document> output = docSearch.similaritySearch("foo", 1, Map.of());
+        assertEquals(List.of(new Document("foo")), output);
+    }
+
+    @Test
+    void testHnswVectorStoreWithFilter() {
+        List<Map<String, Object>> metadatas = IntStream.range(0, FAKE_TEXTS.size())
+                .mapToObj(i -> Map.<String, Object>of("page", i))
+                .toList();
+        HnswVectorStore docSearch = hnswFromTexts(metadatas);
+        List<Document> output = docSearch.similaritySearch("foo", 1, Map.of("page", 2));
+        assertEquals(List.of(new Document("baz", Map.of("page", 2))), output);
+    }
+
+    @Test
+    void testHnswVectorStoreDelete() {
+        HnswVectorStore docSearch = HnswVectorStore.builder()
+                .embeddingFunction(new FakeEmbeddings())
+                .build();
+        List<String> ids = docSearch.addTexts(FAKE_TEXTS, null);
+        docSearch.delete(List.of(ids.get(0)));
+
+        List<Document> output = docSearch.similaritySearch("foo", 3, null);
+        assertThat(output).extracting(Document::getPageContent).containsExactly("bar", "baz");
+    }
+
+    @Test
+    void testHnswIndexRecall() {
+        int dimension = 32;
+        int numVectors = 2000;
+        int k = 10;
+        Random random = new Random(0);
+        float[][] vectors = new float[numVectors][dimension];
+        HnswIndex index = new HnswIndex(dimension, 16, 100, DistanceStrategy.EUCLIDEAN_DISTANCE, 42L);
+        for (float[] vector : vectors) {
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+            index.add(vector);
+        }
+
+        int hits = 0;
+        int numQueries = 50;
+        for (int q = 0; q < numQueries; q++) {
+            float[] query = vectors[random.nextInt(numVectors)].clone();
+            query[0] += 0.1f;
+            Set<Integer> actual = new HashSet<>();
+            for (Pair<Integer, Float> neighbor : index.search(query, k, 64, null)) {
+                actual.add(neighbor.getLeft());
+            }
+            hits += (int) bruteForce(vectors, query, k).stream().filter(actual::contains).count();
+        }
+        assertThat(hits / (double) (numQueries * k)).isGreaterThan(0.9);
+    }
+
+    private List<Integer> bruteForce(float[][] vectors, float[] query, int k) {
+        return IntStream.range(0, vectors.length)
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> squaredDistance(vectors[i], query)))
+                .limit(k)
+                .toList();
+    }
+
+    private double squaredDistance(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += (a[i] - b[i]) * (a[i] - b[i]);
+        }
+        return sum;
+    }
+}
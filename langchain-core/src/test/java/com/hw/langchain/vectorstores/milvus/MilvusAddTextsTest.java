@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.milvus;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings;
+
+import org.junit.jupiter.api.Test;
+
+import io.milvus.client.MilvusClient;
+import io.milvus.grpc.CollectionSchema;
+import io.milvus.grpc.DescribeCollectionResponse;
+import io.milvus.grpc.FieldSchema;
+import io.milvus.grpc.IDs;
+import io.milvus.grpc.LongArray;
+import io.milvus.grpc.MutationResult;
+import io.milvus.param.R;
+import io.milvus.param.collection.DescribeCollectionParam;
+import io.milvus.param.collection.HasCollectionParam;
+import io.milvus.param.dml.InsertParam;
+import io.milvus.param.index.DescribeIndexParam;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the pipelined inserts of {@link Milvus#addTexts}.
+ *
+ * @author HamaWhite
+ */
+class MilvusAddTextsTest {
+
+    /**
+     * Insert result completed only when it is awaited, so the pending inserts are exactly the in-flight ones.
+     */
+    private static class PendingInsert extends AbstractFuture<R<MutationResult>> {
+
+        private final long id;
+
+        PendingInsert(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public R<MutationResult> get() throws InterruptedException, ExecutionException {
+            set(R.success(MutationResult.newBuilder()
+                    .setIDs(IDs.newBuilder().setIntId(LongArray.newBuilder().addData(id)))
+                    .build()));
+            return super.get();
+        }
+    }
+
+    /**
+     * Mock a client whose collection already exists with the text and vector fields, so the lazy initialization
+     * only reads the schema.
+     */
+    private static MilvusClient mockExistingCollection() {
+        MilvusClient client = mock(MilvusClient.class);
+        when(client.hasCollection(any(HasCollectionParam.class))).thenReturn(R.success(true));
+        CollectionSchema schema = CollectionSchema.newBuilder()
+                .addFields(FieldSchema.newBuilder().setName("pk"))
+                .addFields(FieldSchema.newBuilder().setName("text"))
+                .addFields(FieldSchema.newBuilder().setName("vector"))
+                .build();
+        when(client.describeCollection(any(DescribeCollectionParam.class)))
+                .thenReturn(R.success(DescribeCollectionResponse.newBuilder().setSchema(schema).build()));
+        when(client.describeIndex(any(DescribeIndexParam.class))).thenReturn(R.success());
+        return client;
+    }
+
+    @Test
+    void testInFlightBatchesAreBounded() {
+        MilvusClient client = mockExistingCollection();
+        List<PendingInsert> inserts = new ArrayList<>();
+        List<Integer> inFlight = new ArrayList<>();
+        when(client.insertAsync(any(InsertParam.class))).thenAnswer(invocation -> {
+            inFlight.add((int) inserts.stream().filter(insert -> !insert.isDone()).count());
+            PendingInsert insert = new PendingInsert(inserts.size());
+            inserts.add(insert);
+            return insert;
+        });
+
+        Milvus milvus = Milvus.builder()
+                .embeddingFunction(new FakeEmbeddings())
+                .milvusClient(client)
+                .batchSize(1)
+                .maxInFlightBatches(2)
+                .build();
+        List<String> ids = milvus.addTexts(List.of("a", "b", "c", "d", "e"), null);
+
+        // each insert is sent with at most one other batch still in flight
+        assertEquals(List.of(0, 1, 1, 1, 1), inFlight);
+        // the keys are collected in the order of the texts
+        assertEquals(IntStream.range(0, 5).mapToObj(String::valueOf).toList(), ids);
+        // the collection is initialized by the first batch only
+        verify(client, times(1)).describeCollection(any(DescribeCollectionParam.class));
+    }
+
+    @Test
+    void testEmptyMetadatasAreIgnored() {
+        MilvusClient client = mockExistingCollection();
+        List<PendingInsert> inserts = new ArrayList<>();
+        when(client.insertAsync(any(InsertParam.class))).thenAnswer(invocation -> {
+            PendingInsert insert = new PendingInsert(inserts.size());
+            inserts.add(insert);
+            return insert;
+        });
+
+        Milvus milvus = Milvus.builder()
+                .embeddingFunction(new FakeEmbeddings())
+                .milvusClient(client)
+                .batchSize(2)
+                .build();
+        List<String> ids = milvus.addTexts(List.of("a", "b", "c"), List.of());
+
+        assertEquals(List.of("0", "1"), ids);
+    }
+}
@@ -22,6 +22,7 @@ import com.hw.langchain.embeddings.base.Embeddings;
 import com.hw.langchain.schema.Document;
 import com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
@@ -29,6 +30,7 @@ import io.milvus.param.ConnectParam;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 import static com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings.FAKE_TEXTS;
 import static org.junit.jupiter.api.Assertions.*;
@@ -71,4 +73,63 @@ class MilvusTest {
         List<Document> output = docSearch.similaritySearch("foo", 1, Map.of());
         assertEquals(List.of(new Document("foo")), output);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test end to end construction and search with scores and IDs.
+     */
+    @Test
+    void testMilvusWithScore() {
+        List<Map<String, Object>> metadatas = IntStream.range(0, FAKE_TEXTS.size())
+                .mapToObj(i -> Map.<String, Object>of("page", String.valueOf(i)))
+                .toList();
+        Milvus docSearch = milvusFromTexts(metadatas, true);
+        List<Pair<Document, Float>> output = docSearch.similaritySearchWithScore("foo", 3, null);
+        List<Document> docs = output.stream().map(Pair::getLeft).toList();
+        List<Float> scores = output.stream().map(Pair::getRight).toList();
+
+        assertEquals(List.of(new Document("foo", Map.of("page", "0")), new Document("bar", Map.of("page", "1")),
+                new Document("baz", Map.of("page", "2"))), docs);
+        assertTrue(scores.get(0) < scores.get(1));
+        assertTrue(scores.get(1) < scores.get(2));
+    }
+
+    /**
+     * Test that the metadata filter restricts the results.
+     */
+    @Test
+    void testMilvusWithFilter() {
+        List<Map<String, Object>> metadatas = IntStream.range(0, FAKE_TEXTS.size())
+                .mapToObj(i -> Map.<String, Object>of("page", String.valueOf(i)))
+                .toList();
+        Milvus docSearch = milvusFromTexts(metadatas, true);
+        List<Document> output = docSearch.similaritySearch("foo", 1, Map.of("page", "1"));
+        assertEquals(List.of(new Document("bar", Map.of("page", "1"))), output);
+    }
+
+    /**
+     * Test end to end construction and MRR search.
+     */
+    @Test
+    void testMilvusMaxMarginalRelevanceSearch() {
+        List<Map<String, Object>> metadatas = IntStream.range(0, FAKE_TEXTS.size())
+                .mapToObj(i -> Map.<String, Object>of("page", String.valueOf(i)))
+                .toList();
+        Milvus docSearch = milvusFromTexts(metadatas, true);
+        List<Document> output = docSearch.maxMarginalRelevanceSearch("foo", 2, 3, 0.5f);
+        assertEquals(List.of(new Document("foo", Map.of("page", "0")), new Document("baz", Map.of("page", "2"))),
+                output);
+    }
+
+    /**
+     * Test searching many query vectors in one request.
+     */
+    @Test
+    void testMilvusBatchSearch() {
+        Milvus docSearch = milvusFromTexts(List.of(), true);
+        // fake embeddings are indexed by position, so the query vectors are taken from the stored texts.
+        List<float[]> vectors = new FakeEmbeddings().embedDocumentVectors(FAKE_TEXTS);
+        List<float[]> embeddings = List.of(vectors.get(0), vectors.get(2));
+        List<List<Document>> output = docSearch.similaritySearchByVectors(embeddings, 1, null);
+        assertEquals(List.of(List.of(new Document("foo")), List.of(new Document("baz"))), output);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hw.langchain.vectorstores.pinecone;
+
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings;
+import com.hw.pinecone.IndexClient;
+import com.hw.pinecone.entity.vector.QueryRequest;
+import com.hw.pinecone.entity.vector.QueryResponse;
+import com.hw.pinecone.entity.vector.UpsertRequest;
+import com.hw.pinecone.entity.vector.UpsertResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.reactivex.Single;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the batched upserts of {@link Pinecone#addTexts} against a mocked index.
+ *
+ * @author HamaWhite
+ */
+class PineconeAddTextsTest {
+
+    private static final List<String> TEXTS = IntStream.range(0, 5).mapToObj(i -> "text-" + i).toList();
+
+    private IndexClient index;
+
+    private final List<Integer> embeddedBatches = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger asyncBatches = new AtomicInteger();
+
+    /**
+     * Fake embeddings recording the size of every batch they embed.
+     */
+    private class RecordingEmbeddings extends FakeEmbeddings {
+
+        @Override
+        public List<float[]> embedDocumentVectors(List<String> texts) {
+            embeddedBatches.add(texts.size());
+            return super.embedDocumentVectors(texts);
+        }
+
+        @Override
+        public Mono<List<float[]>> embedDocumentsAsync(List<String> texts) {
+            asyncBatches.incrementAndGet();
+            return Mono.fromCallable(() -> embedDocumentVectors(texts));
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        index = mock(IndexClient.class);
+        when(index.upsert(any(UpsertRequest.class))).thenAnswer(invocation -> upserted(invocation.getArgument(0)));
+    }
+
+    private static UpsertResponse upserted(UpsertRequest request) {
+        UpsertResponse response = new UpsertResponse();
+        response.setUpsertedCount(request.getVectors().size());
+        return response;
+    }
+
+    private Pinecone.PineconeBuilder pinecone() {
+        return Pinecone.builder()
+                .index(index)
+                .embedding(new RecordingEmbeddings())
+                .batchSize(2)
+                .retryInterval(Duration.ofMillis(1));
+    }
+
+    @Test
+    void testEmbedsAndUpsertsPerBatch() {
+        List<String> ids = pinecone().build().addTexts(TEXTS, null);
+
+        assertEquals(TEXTS.size(), ids.size());
+        assertEquals(List.of(1, 2, 2), embeddedBatches.stream().sorted().toList());
+        verify(index, times(3)).upsert(any(UpsertRequest.class));
+    }
+
+    @Test
+    void testRetriesFailedBatchOnly() {
+        AtomicInteger calls = new AtomicInteger();
+        when(index.upsert(any(UpsertRequest.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new IllegalStateException("Service unavailable.");
+            }
+            return upserted(invocation.getArgument(0));
+        });
+
+        int upserted = pinecone().maxConcurrency(1).build().fromTexts(TEXTS, new RecordingEmbeddings(), null);
+
+        assertEquals(TEXTS.size(), upserted);
+        // the failed second batch is upserted again, it is not embedded again
+        verify(index, times(4)).upsert(any(UpsertRequest.class));
+        assertEquals(List.of(2, 2, 1), embeddedBatches);
+    }
+
+    @Test
+    void testReportsProgress() {
+        List<List<Integer>> progress = new ArrayList<>();
+        pinecone().maxConcurrency(1)
+                .progressListener((upserted, total) -> progress.add(List.of(upserted, total)))
+                .build()
+                .addTexts(TEXTS, null);
+
+        assertEquals(List.of(List.of(2, 5), List.of(4, 5), List.of(5, 5)), progress);
+    }
+
+    @Test
+    void testEmbedsBatchQueriesOnce() {
+        QueryResponse response = new QueryResponse();
+        response.setMatches(List.of());
+        when(index.query(any(QueryRequest.class))).thenReturn(response);
+
+        List<List<Document>> docs = pinecone().build().similaritySearch(List.of("foo", "bar", "baz"), 4, null);
+
+        assertEquals(3, docs.size());
+        assertEquals(List.of(3), embeddedBatches);
+        verify(index, times(3)).query(any(QueryRequest.class));
+    }
+
+    @Test
+    void testAddTextsAsync() {
+        when(index.upsertAsync(any(UpsertRequest.class)))
+                .thenAnswer(invocation -> Single.just(upserted(invocation.getArgument(0))));
+
+        List<String> ids = pinecone().build().addTextsAsync(TEXTS, null).block();
+
+        assertEquals(TEXTS.size(), ids.size());
+        // the batches are embedded through the asynchronous embeddings
+        assertEquals(3, asyncBatches.get());
+        verify(index, times(3)).upsertAsync(any(UpsertRequest.class));
+    }
+
+    /**
+     * Once the retries are exhausted, the original error is raised as for the other asynchronous calls.
+     */
+    @Test
+    void testAddTextsAsyncRaisesOriginalError() {
+        when(index.upsertAsync(any(UpsertRequest.class)))
+                .thenReturn(Single.error(new IllegalStateException("Service unavailable.")));
+        Pinecone pinecone = pinecone().maxRetries(2).build();
+        Mono<List<String>> result = pinecone.addTextsAsync(TEXTS, null);
+
+        assertThrows(IllegalStateException.class, result::block);
+    }
+}
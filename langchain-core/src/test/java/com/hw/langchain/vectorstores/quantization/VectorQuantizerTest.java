@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.quantization;
+
+import com.hw.langchain.vectorstores.flat.FlatIndex;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test quantized search recall against the exact search.
+ *
+ * @author HamaWhite
+ */
+class VectorQuantizerTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void testScalarQuantizer() {
+        assertThat(quantizedRecall(new ScalarQuantizer())).isGreaterThan(0.9);
+    }
+
+    @Test
+    void testProductQuantizer() {
+        assertThat(quantizedRecall(new ProductQuantizer(8))).isGreaterThan(0.9);
+    }
+
+    private double quantizedRecall(VectorQuantizer quantizer) {
+        Random random = new Random(0);
+        FlatIndex exact = new FlatIndex(DIMENSION, DistanceStrategy.COSINE, 1024, ForkJoinPool.commonPool());
+        FlatIndex quantized = new FlatIndex(DIMENSION, DistanceStrategy.COSINE, 1024, ForkJoinPool.commonPool());
+        for (int i = 0; i < 3000; i++) {
+            float[] vector = randomVector(random);
+            exact.add(vector);
+            quantized.add(vector);
+        }
+        quantized.quantize(quantizer, 2000);
+
+        int hits = 0;
+        for (int i = 0; i < 20; i++) {
+            float[] query = randomVector(random);
+            Set<Integer> truth = exact.search(query, 10, null).stream()
+                    .map(Pair::getLeft)
+                    .collect(Collectors.toSet());
+            hits += (int) quantized.search(query, 10, 100, null).stream()
+                    .filter(neighbor -> truth.contains(neighbor.getLeft()))
+                    .count();
+        }
+        return hits / 200.0;
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
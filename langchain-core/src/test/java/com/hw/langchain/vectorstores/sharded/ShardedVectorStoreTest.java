@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.sharded;
+
+import com.hw.langchain.exception.LangChainException;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.base.VectorStore;
+import com.hw.langchain.vectorstores.fake.embeddings.FakeEmbeddings;
+import com.hw.langchain.vectorstores.flat.FlatVectorStore;
+import com.hw.langchain.vectorstores.utils.DistanceStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test ShardedVectorStore functionality.
+ *
+ * @author HamaWhite
+ */
+class ShardedVectorStoreTest {
+
+    private static final int SHARDS = 3;
+
+    private static VectorStore flatShard() {
+        return FlatVectorStore.builder()
+                .embeddingFunction(new FakeEmbeddings())
+                .distanceStrategy(DistanceStrategy.EUCLIDEAN_DISTANCE)
+                .build();
+    }
+
+    private ShardedVectorStore shardedStore() {
+        List<VectorStore> shards = IntStream.range(0, SHARDS)
+                .mapToObj(i -> flatShard())
+                .toList();
+        return ShardedVectorStore.builder()
+                .shards(shards)
+                .embeddingFunction(new FakeEmbeddings())
+                .build();
+    }
+
+    @Test
+    void testAddSearchAndDelete() {
+        ShardedVectorStore store = shardedStore();
+        List<String> texts = IntStream.range(0, 20).mapToObj(i -> "text-" + i).toList();
+        List<Map<String, Object>> metadatas = IntStream.range(0, texts.size())
+                .mapToObj(i -> Map.<String, Object>of("page", i))
+                .toList();
+        List<String> ids = store.addTexts(texts, metadatas);
+        assertEquals(texts.size(), ids.size());
+
+        List<Document> all = store.similaritySearch("foo", texts.size(), null);
+        assertEquals(texts.size(), all.size());
+
+        List<Document> filtered = store.similaritySearch("foo", 1, Map.of("page", 7));
+        assertEquals(List.of(new Document("text-7", Map.of("page", 7))), filtered);
+
+        store.delete(List.of(ids.get(7)));
+        assertEquals(List.of(), store.similaritySearch("foo", 1, Map.of("page", 7)));
+        assertEquals(texts.size() - 1, store.similaritySearch("foo", texts.size(), null).size());
+    }
+
+    @Test
+    void testFailingShardIsLeftOut() {
+        VectorStore healthy = flatShard();
+        healthy.addTexts(List.of("foo"), null);
+        VectorStore failing = mock(VectorStore.class);
+        when(failing.similaritySearchWithRelevanceScoresByVector(any(), anyInt(), any()))
+                .thenThrow(new IllegalStateException("Shard is down."));
+        ShardedVectorStore store = ShardedVectorStore.builder()
+                .shards(List.of(healthy, failing))
+                .embeddingFunction(new FakeEmbeddings())
+                .build();
+        assertEquals(List.of(new Document("foo")), store.similaritySearch("foo", 1, null));
+    }
+
+    /**
+     * A shard slower than the timeout only lowers the recall, the search returns once the timeout elapsed and the
+     * slow shard's thread is interrupted.
+     */
+    @Test
+    void testSlowShardIsLeftOut() throws InterruptedException {
+        VectorStore healthy = flatShard();
+        healthy.addTexts(List.of("foo"), null);
+        VectorStore slow = mock(VectorStore.class);
+        CountDownLatch released = new CountDownLatch(1);
+        when(slow.similaritySearchWithRelevanceScoresByVector(any(), anyInt(), any())).thenAnswer(invocation -> {
+            try {
+                TimeUnit.SECONDS.sleep(30);
+            } catch (InterruptedException e) {
+                released.countDown();
+            }
+            return List.of();
+        });
+        ShardedVectorStore store = ShardedVectorStore.builder()
+                .shards(List.of(healthy, slow))
+                .embeddingFunction(new FakeEmbeddings())
+                .shardTimeout(Duration.ofMillis(100))
+                .build();
+
+        long start = System.nanoTime();
+        List<Document> output = store.similaritySearch("foo", 1, null);
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(List.of(new Document("foo")), output);
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2), "the search waited for the slow shard");
+        assertTrue(released.await(2, TimeUnit.SECONDS), "the slow shard kept its thread");
+    }
+
+    @Test
+    void testAllShardsFailing() {
+        VectorStore failing = mock(VectorStore.class);
+        when(failing.similaritySearchWithRelevanceScoresByVector(any(), anyInt(), any()))
+                .thenThrow(new IllegalStateException("Shard is down."));
+        ShardedVectorStore store = ShardedVectorStore.builder()
+                .shards(List.of(failing, failing))
+                .embeddingFunction(new FakeEmbeddings())
+                .build();
+
+        LangChainException exception = assertThrows(LangChainException.class,
+                () -> store.similaritySearch("foo", 1, null));
+        assertEquals(2, exception.getSuppressed().length);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.utils;
+
+import com.hw.langchain.chains.query.constructor.ir.Comparator;
+import com.hw.langchain.chains.query.constructor.ir.Comparison;
+import com.hw.langchain.chains.query.constructor.ir.Operation;
+import com.hw.langchain.chains.query.constructor.ir.Operator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test MetadataIndex functionality.
+ *
+ * @author HamaWhite
+ */
+class MetadataIndexTest {
+
+    private final MetadataIndex index = new MetadataIndex();
+
+    @BeforeEach
+    void setUp() {
+        index.add(0, Map.of("tenant", "acme", "year", 2019, "tags", List.of("news", "tech")));
+        index.add(1, Map.of("tenant", "acme", "year", 2021L, "title", "Vector search"));
+        index.add(2, Map.of("tenant", "globex", "year", 2022.0, "title", "Graph search"));
+        index.add(3, Map.of("tenant", "initech", "year", 2023));
+    }
+
+    private static BitSet slots(int... slots) {
+        BitSet bits = new BitSet();
+        for (int slot : slots) {
+            bits.set(slot);
+        }
+        return bits;
+    }
+
+    @Test
+    void testMapFilter() {
+        assertEquals(slots(0, 1), index.filter(Map.of("tenant", "acme")));
+        assertEquals(slots(1), index.filter(Map.of("tenant", "acme", "year", Map.of("$gte", 2020))));
+        assertEquals(slots(1, 2), index.filter(Map.of("year", Map.of("$gt", 2019, "$lte", 2022))));
+        assertEquals(slots(0), index.filter(Map.of("tags", Map.of("$contain", "tech"))));
+        assertEquals(slots(1, 2), index.filter(Map.of("title", Map.of("$like", "% search"))));
+        assertEquals(slots(0, 3), index.filter(Map.of("$or", List.of(
+                Map.of("tags", "news"), Map.of("tenant", "initech")))));
+        assertEquals(slots(2, 3), index.filter(Map.of("$not", Map.of("tenant", "acme"))));
+    }
+
+    @Test
+    void testDirectiveFilter() {
+        Operation operation = new Operation(Operator.AND, List.of(
+                new Comparison(Comparator.EQ, "tenant", "acme"),
+                new Comparison(Comparator.LT, "year", 2020)));
+        assertEquals(slots(0), index.filter(operation));
+    }
+
+    @Test
+    void testRemove() {
+        index.remove(1, Map.of("tenant", "acme", "year", 2021L, "title", "Vector search"));
+        assertEquals(slots(0), index.filter(Map.of("tenant", "acme")));
+        assertEquals(slots(0, 2, 3), index.filter(Map.of("$not", Map.of("tenant", "other"))));
+    }
+}
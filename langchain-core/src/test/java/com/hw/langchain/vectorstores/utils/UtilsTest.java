@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.hw.langchain.vectorstores.utils.Utils.maximalMarginalRelevance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author HamaWhite
+ */
+class UtilsTest {
+
+    private static final float[] QUERY_EMBEDDING = {0.3f, 0.5f, 0.1f, 0.9f, 0.2f};
+
+    @Test
+    void testMaximalMarginalRelevanceLambdaZero() {
+        List<float[]> embeddingList = List.of(QUERY_EMBEDDING, QUERY_EMBEDDING, new float[5]);
+        List<Integer> actual = maximalMarginalRelevance(QUERY_EMBEDDING, embeddingList, 2, 0);
+        assertEquals(List.of(0, 2), actual);
+    }
+
+    @Test
+    void testMaximalMarginalRelevanceLambdaOne() {
+        List<float[]> embeddingList = List.of(QUERY_EMBEDDING, QUERY_EMBEDDING, new float[5]);
+        List<Integer> actual = maximalMarginalRelevance(QUERY_EMBEDDING, embeddingList, 2, 1);
+        assertEquals(List.of(0, 1), actual);
+    }
+
+    @Test
+    void testMaximalMarginalRelevance() {
+        float[] queryEmbedding = {1, 0};
+        // Vectors that are 30, 45 and 75 degrees from query vector (cosine similarity of 0.87, 0.71, 0.26) and the
+        // latter two are 15 and 60 degree from the first (cosine similarity 0.97 and 0.71). So for 3rd vector be
+        // chosen, must be case that 0.71lambda - 0.97(1 - lambda) < 0.26lambda - 0.71(1-lambda) -> lambda ~< .26 / .71
+        float sqrt3 = (float) Math.sqrt(3);
+        List<float[]> embeddingList = List.of(new float[] {sqrt3, 1}, new float[] {1, 1}, new float[] {1, 2 + sqrt3});
+
+        assertEquals(List.of(0, 2), maximalMarginalRelevance(queryEmbedding, embeddingList, 2, 25f / 71));
+        assertEquals(List.of(0, 1), maximalMarginalRelevance(queryEmbedding, embeddingList, 2, 27f / 71));
+    }
+
+    @Test
+    void testMaximalMarginalRelevanceKGreaterThanCandidates() {
+        List<float[]> embeddingList = List.of(QUERY_EMBEDDING, new float[5]);
+        assertEquals(List.of(0, 1), maximalMarginalRelevance(QUERY_EMBEDDING, embeddingList, 5, 0.5f));
+    }
+}
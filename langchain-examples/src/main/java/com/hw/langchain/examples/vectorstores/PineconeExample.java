@@ -52,7 +52,10 @@ public class PineconeExample {
      * @return the initialized Pinecone instance
      */
     public static Pinecone initializePineconeIndex(String namespace, List<Document> docs) {
-        var client = PineconeClient.builder().requestTimeout(30).build().init();
+        var client = PineconeClient.builder()
+                .requestTimeout(30)
+                .build()
+                .init();
         createPineconeIndex(client);
 
         var embeddings = OpenAIEmbeddings.builder().requestTimeout(60).build().init();
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hw.openai.common.OpenAiError;
 import com.hw.openai.common.OpenaiApiType;
+import com.hw.openai.common.RateLimits;
 import com.hw.openai.entity.chat.ChatCompletion;
 import com.hw.openai.entity.chat.ChatCompletionChunk;
 import com.hw.openai.entity.chat.ChatCompletionResp;
@@ -36,7 +37,9 @@ import com.hw.openai.exception.OpenAiException;
 import com.hw.openai.service.OpenAiService;
 import com.hw.openai.stream.ResponseBodyCallback;
 import com.hw.openai.stream.SSE;
+import com.hw.openai.stream.SSEReader;
 import com.hw.openai.utils.ProxyUtils;
+import com.hw.transport.HttpTransports;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -45,11 +48,14 @@ import org.slf4j.LoggerFactory;
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 import lombok.Builder;
 import lombok.Data;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Call;
@@ -62,7 +68,9 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -108,8 +116,25 @@ public class OpenAiClient implements Closeable {
 
     private List<Interceptor> interceptorList;
 
+    /**
+     * Notified with the rate limits reported by each response, to let callers pace their requests.
+     */
+    private Consumer<RateLimits> rateLimitListener;
+
     private OpenAiService service;
 
+    /**
+     * Same api as {@link #service}, but its calls are enqueued on the OkHttp dispatcher instead of executed on the
+     * subscribing thread.
+     */
+    private OpenAiService asyncService;
+
+    /**
+     * Transport whose connection pool and dispatcher are reused by this client, defaults to
+     * {@link HttpTransports#shared()}. The transport is owned by the caller and outlives the client.
+     */
+    private OkHttpClient transport;
+
     private OkHttpClient httpClient;
 
     private ObjectMapper objectMapper;
@@ -123,8 +148,9 @@ public class OpenAiClient implements Closeable {
         initializeOpenaiApiBase();
         openaiProxy = getOrEnvOrDefault(openaiProxy, "OPENAI_PROXY");
 
-        OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder()
-                .connectTimeout(requestTimeout, TimeUnit.SECONDS)
+        OkHttpClient.Builder httpClientBuilder =
+                (transport != null ? transport : HttpTransports.shared()).newBuilder();
+        httpClientBuilder.connectTimeout(requestTimeout, TimeUnit.SECONDS)
                 .readTimeout(requestTimeout, TimeUnit.SECONDS)
                 .writeTimeout(requestTimeout, TimeUnit.SECONDS)
                 .callTimeout(requestTimeout, TimeUnit.SECONDS);
@@ -143,7 +169,14 @@ public class OpenAiClient implements Closeable {
                 requestBuilder.header("OpenAI-Organization", openaiOrganization);
             }
             Request request = requestBuilder.build();
-            return chain.proceed(request);
+            Response response = chain.proceed(request);
+            if (rateLimitListener != null) {
+                RateLimits rateLimits = RateLimits.fromHeaders(response.headers());
+                if (rateLimits != null) {
+                    rateLimitListener.accept(rateLimits);
+                }
+            }
+            return response;
         });
 
         // Add HttpLogging interceptor
@@ -164,15 +197,18 @@ public class OpenAiClient implements Closeable {
         if (objectMapper == null) {
             objectMapper = defaultObjectMapper();
         }
-        Retrofit retrofit = new Retrofit.Builder()
+        this.service = createRetrofit(RxJava2CallAdapterFactory.create()).create(OpenAiService.class);
+        this.asyncService = createRetrofit(RxJava2CallAdapterFactory.createAsync()).create(OpenAiService.class);
+        return this;
+    }
+
+    private Retrofit createRetrofit(RxJava2CallAdapterFactory callAdapterFactory) {
+        return new Retrofit.Builder()
                 .baseUrl(openaiApiBase)
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .addCallAdapterFactory(callAdapterFactory)
                 .addConverterFactory(JacksonConverterFactory.create(objectMapper))
                 .client(httpClient)
                 .build();
-
-        this.service = retrofit.create(OpenAiService.class);
-        return this;
     }
 
     private void initializeOpenaiApiBase() {
@@ -255,6 +291,19 @@ public class OpenAiClient implements Closeable {
                 : execute(service.createCompletion(completion));
     }
 
+    /**
+     * Asynchronous version of {@link #createCompletion(Completion)}, no thread is held while the request is in
+     * flight.
+     *
+     * @param completion the completion object containing the prompt and parameters
+     * @return a future of the completion response, failed with {@link OpenAiException} if the api returns an error
+     */
+    public CompletableFuture<CompletionResp> createCompletionAsync(Completion completion) {
+        return isAzureApiType()
+                ? executeAsync(asyncService.createCompletion(completion.getModel(), openaiApiVersion, completion))
+                : executeAsync(asyncService.createCompletion(completion));
+    }
+
     /**
      * Creates a stream completion for the provided prompt and parameters.
      *
@@ -290,6 +339,21 @@ public class OpenAiClient implements Closeable {
                 : execute(service.createChatCompletion(chatCompletion));
     }
 
+    /**
+     * Asynchronous version of {@link #createChatCompletion(ChatCompletion)}, no thread is held while the request is
+     * in flight.
+     *
+     * @param chatCompletion the chat completion object containing the conversation
+     * @return a future of the chat completion response, failed with {@link OpenAiException} if the api returns an
+     *         error
+     */
+    public CompletableFuture<ChatCompletionResp> createChatCompletionAsync(ChatCompletion chatCompletion) {
+        return isAzureApiType()
+                ? executeAsync(
+                        asyncService.createChatCompletion(chatCompletion.getModel(), openaiApiVersion, chatCompletion))
+                : executeAsync(asyncService.createChatCompletion(chatCompletion));
+    }
+
     /**
      * Creates a stream response for the given chat conversation.
      *
@@ -314,21 +378,25 @@ public class OpenAiClient implements Closeable {
     }
 
     /**
-     * Checks if the Openai API type matches Azure or Azure AD.
+     * Asynchronous version of {@link #createEmbedding(Embedding)}, no thread is held while the request is in flight.
      *
-     * @return true if the API type is Azure or Azure AD, otherwise false
+     * @param embedding The Embedding object containing the input text.
+     * @return a future of the embedding vector response, failed with {@link OpenAiException} if the api returns an
+     *         error
      */
-    private boolean isAzureApiType() {
-        return EnumSet.of(OpenaiApiType.AZURE, OpenaiApiType.AZURE_AD).contains(openaiApiType);
+    public CompletableFuture<EmbeddingResp> createEmbeddingAsync(Embedding embedding) {
+        return isAzureApiType()
+                ? executeAsync(asyncService.createEmbedding(embedding.getModel(), openaiApiVersion, embedding))
+                : executeAsync(asyncService.createEmbedding(embedding));
     }
 
     /**
-     * Calls the Open AI api and returns a Flowable of SSE for streaming omitting the last message.
+     * Checks if the Openai API type matches Azure or Azure AD.
      *
-     * @param apiCall The api call
+     * @return true if the API type is Azure or Azure AD, otherwise false
      */
-    private Flowable<SSE> stream(Call<ResponseBody> apiCall) {
-        return stream(apiCall, false);
+    private boolean isAzureApiType() {
+        return EnumSet.of(OpenaiApiType.AZURE, OpenaiApiType.AZURE_AD).contains(openaiApiType);
     }
 
     /**
@@ -345,12 +413,26 @@ public class OpenAiClient implements Closeable {
     /**
      * Calls the Open AI api and returns a Flowable of type T for streaming
      * omitting the last message.
+     * <p>
+     * Each event is read from the response only when the subscriber requests it, so a slow subscriber holds back
+     * the connection rather than an unbounded buffer. Reading blocks, hence it runs on the io scheduler.
      *
      * @param apiCall The api call
      * @param clazz   Class of type T to return
      */
     private <T> Flowable<T> stream(Call<ResponseBody> apiCall, Class<T> clazz) {
-        return stream(apiCall).map(sse -> objectMapper.readValue(sse.data(), clazz));
+        return Flowable.<T, SSEReader<T>>generate(
+                () -> SSEReader.open(apiCall, objectMapper, clazz),
+                (reader, emitter) -> {
+                    T chunk = reader.next();
+                    if (chunk != null) {
+                        emitter.onNext(chunk);
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                SSEReader::close)
+                .subscribeOn(Schedulers.io());
     }
 
     /**
@@ -360,34 +442,51 @@ public class OpenAiClient implements Closeable {
         try {
             return apiCall.blockingGet();
         } catch (HttpException e) {
-            try {
-                if (e.response() != null) {
-                    try (ResponseBody responseBody = requireNonNull(e.response()).errorBody()) {
-                        if (responseBody != null) {
-                            String errorBody = responseBody.string();
-                            OpenAiError error = objectMapper.readValue(errorBody, OpenAiError.class);
-                            throw new OpenAiException(error, e, e.code());
-                        }
-                    }
-                }
-                throw e;
-            } catch (IOException ex) {
-                // couldn't parse OpenAI error
-                throw e;
+            throw toOpenAiException(e);
+        }
+    }
+
+    /**
+     * Subscribes to the api call and completes the returned future with its response, or with the parsed error
+     * message if the request fails. Cancelling the future cancels the request.
+     */
+    public <T> CompletableFuture<T> executeAsync(Single<T> apiCall) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Disposable disposable = apiCall.subscribe(future::complete, e -> future.completeExceptionally(
+                e instanceof HttpException httpException ? toOpenAiException(httpException) : e));
+        future.whenComplete((response, e) -> {
+            if (future.isCancelled()) {
+                disposable.dispose();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Parses the OpenAI error of the response, the original exception is returned if there is none.
+     */
+    private RuntimeException toOpenAiException(HttpException e) {
+        if (e.response() == null) {
+            return e;
+        }
+        try (ResponseBody responseBody = requireNonNull(e.response()).errorBody()) {
+            if (responseBody != null) {
+                String errorBody = responseBody.string();
+                OpenAiError error = objectMapper.readValue(errorBody, OpenAiError.class);
+                return new OpenAiException(error, e, e.code());
             }
+        } catch (IOException ex) {
+            // couldn't parse OpenAI error
         }
+        return e;
     }
 
     /**
-     * Closes the HttpClient connection pool.
+     * Releases the client. The connection pool and dispatcher belong to the transport, which is left open for the
+     * other clients sharing it.
      */
     @Override
     public void close() {
-        // Cancel all ongoing requests
-        httpClient.dispatcher().cancelAll();
-
-        // Shut down the connection pool (if any)
-        httpClient.connectionPool().evictAll();
-        httpClient.dispatcher().executorService().shutdown();
+        // Nothing to release, the connection pool and dispatcher belong to the transport
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import okhttp3.Headers;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rate limit state reported by the {@code x-ratelimit-*} headers of an OpenAI response.
+ * <a href="https://platform.openai.com/docs/guides/rate-limits/rate-limits-in-headers">Rate limits in headers</a>
+ *
+ * @author HamaWhite
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimits {
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    /**
+     * Requests left before the request limit is reached, null if not reported.
+     */
+    private Long remainingRequests;
+
+    /**
+     * Tokens left before the token limit is reached, null if not reported.
+     */
+    private Long remainingTokens;
+
+    /**
+     * Time until the request limit resets to its initial state, null if not reported.
+     */
+    private Duration resetRequests;
+
+    /**
+     * Time until the token limit resets to its initial state, null if not reported.
+     */
+    private Duration resetTokens;
+
+    /**
+     * Read the rate limits from the response headers.
+     *
+     * @return the rate limits, or null if the response has no rate limit header
+     */
+    public static RateLimits fromHeaders(Headers headers) {
+        RateLimits rateLimits = new RateLimits(
+                parseLong(headers.get("x-ratelimit-remaining-requests")),
+                parseLong(headers.get("x-ratelimit-remaining-tokens")),
+                parseDuration(headers.get("x-ratelimit-reset-requests")),
+                parseDuration(headers.get("x-ratelimit-reset-tokens")));
+        if (rateLimits.remainingRequests == null && rateLimits.remainingTokens == null) {
+            return null;
+        }
+        return rateLimits;
+    }
+
+    private static Long parseLong(String value) {
+        try {
+            return value == null ? null : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse durations such as {@code 20ms}, {@code 1s} or {@code 6m0.5s}.
+     */
+    static Duration parseDuration(String value) {
+        if (value == null) {
+            return null;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean found = false;
+        while (matcher.find()) {
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+            found = true;
+        }
+        return found ? Duration.ofMillis((long) Math.ceil(millis)) : null;
+    }
+}
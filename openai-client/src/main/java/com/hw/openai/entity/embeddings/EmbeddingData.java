@@ -18,8 +18,15 @@
 
 package com.hw.openai.entity.embeddings;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import org.apache.commons.lang3.ArrayUtils;
+
 import lombok.Data;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -32,5 +39,32 @@ public class EmbeddingData {
 
     private Integer index;
 
-    private List<Float> embedding;
+    @JsonProperty("embedding")
+    @JsonDeserialize(using = EmbeddingDeserializer.class)
+    private float[] embedding;
+
+    /**
+     * The embedding as a boxed list, kept for callers of the list based API.
+     */
+    @JsonIgnore
+    public List<Float> getEmbedding() {
+        return embedding == null ? null : Arrays.asList(ArrayUtils.toObject(embedding));
+    }
+
+    /**
+     * The embedding as a primitive array, without boxing.
+     */
+    @JsonIgnore
+    public float[] getEmbeddingArray() {
+        return embedding;
+    }
+
+    public void setEmbedding(float[] embedding) {
+        this.embedding = embedding;
+    }
+
+    @JsonIgnore
+    public void setEmbedding(List<Float> embedding) {
+        this.embedding = embedding == null ? null : ArrayUtils.toPrimitive(embedding.toArray(new Float[0]));
+    }
 }
@@ -18,10 +18,12 @@
 
 package com.hw.openai.exception;
 
+import java.io.IOException;
+
 /**
  * @author HamaWhite
  */
-public class SSEFormatException extends Throwable {
+public class SSEFormatException extends IOException {
 
     public SSEFormatException(String message) {
         super(message);
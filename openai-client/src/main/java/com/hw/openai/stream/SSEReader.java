@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hw.openai.common.OpenAiError;
+import com.hw.openai.exception.OpenAiException;
+import com.hw.openai.exception.SSEFormatException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Pull-based reader of Server Sent Events (SSE) that parses each {@code data:} payload into type T.
+ * <p>
+ * Lines are scanned in the Okio buffer of the response, and the payload bytes are copied once into a buffer that is
+ * reused across events and handed to Jackson's byte parser, so no line strings or intermediate events are created.
+ * Nothing is read from the network until the next event is asked for, which lets a slow consumer throttle the
+ * server through TCP flow control instead of buffering the whole stream.
+ *
+ * @author HamaWhite
+ */
+public class SSEReader<T> implements Closeable {
+
+    private static final ByteString DATA = ByteString.encodeUtf8("data:");
+
+    private static final ByteString DONE = ByteString.encodeUtf8("[DONE]");
+
+    private static final List<ByteString> IGNORED_FIELDS = List.of(ByteString.encodeUtf8("event:"),
+            ByteString.encodeUtf8("id:"), ByteString.encodeUtf8("retry:"));
+
+    private static final byte NEWLINE = '\n';
+
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private static final byte COLON = ':';
+
+    private static final byte SPACE = ' ';
+
+    private final ResponseBody responseBody;
+
+    private final BufferedSource source;
+
+    private final ObjectMapper objectMapper;
+
+    private final Class<T> clazz;
+
+    private byte[] payload = new byte[1024];
+
+    /**
+     * Length of the pending payload, or -1 if the current event has no data line yet.
+     */
+    private int payloadLength = -1;
+
+    private boolean done;
+
+    public SSEReader(ResponseBody responseBody, ObjectMapper objectMapper, Class<T> clazz) {
+        this.responseBody = responseBody;
+        this.source = responseBody.source();
+        this.objectMapper = objectMapper;
+        this.clazz = clazz;
+    }
+
+    /**
+     * Executes the call and returns a reader over its event stream, or throws the parsed error if the request fails.
+     *
+     * @param call         The api call
+     * @param objectMapper The mapper of the payloads and of the error body
+     * @param clazz        Class of type T to return
+     */
+    public static <T> SSEReader<T> open(Call<ResponseBody> call, ObjectMapper objectMapper, Class<T> clazz)
+            throws IOException {
+        Response<ResponseBody> response = call.execute();
+        if (!response.isSuccessful()) {
+            HttpException e = new HttpException(response);
+            try (ResponseBody errorBody = response.errorBody()) {
+                if (errorBody == null) {
+                    throw e;
+                }
+                OpenAiError error = objectMapper.readValue(errorBody.string(), OpenAiError.class);
+                throw new OpenAiException(error, e, e.code());
+            }
+        }
+        return new SSEReader<>(requireNonNull(response.body()), objectMapper, clazz);
+    }
+
+    /**
+     * Reads the next event and parses its payload.
+     *
+     * @return the parsed payload, or null once the [DONE] event or the end of the stream is reached
+     * @throws SSEFormatException if a line is neither a data line, a known field nor a comment
+     */
+    public T next() throws IOException {
+        while (!done) {
+            long lineEnd = source.indexOf(NEWLINE);
+            Buffer buffer = source.getBuffer();
+            long lineLength = lineEnd != -1 ? lineEnd : buffer.size();
+            if (lineEnd == -1) {
+                done = true;
+            }
+            long contentLength = lineLength > 0 && buffer.getByte(lineLength - 1) == CARRIAGE_RETURN
+                    ? lineLength - 1
+                    : lineLength;
+            long consumed = 0;
+            if (contentLength == 0) {
+                source.skip(lineEnd != -1 ? lineLength + 1 : lineLength);
+                if (payloadLength >= 0) {
+                    return dispatch();
+                }
+                continue;
+            }
+            if (startsWith(DATA, contentLength)) {
+                consumed = readData(buffer, contentLength);
+            } else if (!isIgnored(buffer, contentLength)) {
+                throw new SSEFormatException("Invalid sse format! " + buffer.readUtf8(contentLength));
+            }
+            source.skip(lineLength - consumed + (lineEnd != -1 ? 1 : 0));
+        }
+        return payloadLength >= 0 ? dispatch() : null;
+    }
+
+    private boolean startsWith(ByteString prefix, long contentLength) {
+        return contentLength >= prefix.size() && source.getBuffer().rangeEquals(0, prefix);
+    }
+
+    /**
+     * Whether the line is a comment or a field other than data, neither of which carries a payload.
+     */
+    private boolean isIgnored(Buffer buffer, long contentLength) {
+        return buffer.getByte(0) == COLON || IGNORED_FIELDS.stream().anyMatch(f -> startsWith(f, contentLength));
+    }
+
+    /**
+     * Appends the value of a data line to the pending payload, joining several data lines with a newline.
+     *
+     * @return the number of bytes of the line consumed from the buffer
+     */
+    private long readData(Buffer buffer, long contentLength) throws IOException {
+        long start = DATA.size();
+        if (contentLength > start && buffer.getByte(start) == SPACE) {
+            start++;
+        }
+        int length = (int) (contentLength - start);
+        if (payloadLength >= 0) {
+            ensureCapacity(payloadLength + 1);
+            payload[payloadLength++] = NEWLINE;
+        } else {
+            payloadLength = 0;
+        }
+        ensureCapacity(payloadLength + length);
+        buffer.skip(start);
+        while (length > 0) {
+            int read = buffer.read(payload, payloadLength, length);
+            payloadLength += read;
+            length -= read;
+        }
+        return contentLength;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > payload.length) {
+            payload = Arrays.copyOf(payload, Math.max(capacity, payload.length * 2));
+        }
+    }
+
+    private T dispatch() throws IOException {
+        int length = payloadLength;
+        payloadLength = -1;
+        if (length == DONE.size() && DONE.rangeEquals(0, payload, 0, length)) {
+            done = true;
+            return null;
+        }
+        return objectMapper.readValue(payload, 0, length, clazz);
+    }
+
+    @Override
+    public void close() {
+        responseBody.close();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai;
+
+import com.hw.openai.exception.OpenAiException;
+
+import org.junit.jupiter.api.Test;
+
+import io.reactivex.Single;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class OpenAiClientAsyncTest {
+
+    private final OpenAiClient client = OpenAiClient.builder()
+            .openaiApiKey("test")
+            .build()
+            .init();
+
+    @Test
+    void testExecuteAsync() throws Exception {
+        CompletableFuture<String> future = client.executeAsync(Single.just("result"));
+
+        assertThat(future.get()).isEqualTo("result");
+    }
+
+    @Test
+    void testExecuteAsyncParsesError() {
+        ResponseBody body = ResponseBody.create(MediaType.get("application/json"), """
+                {
+                    "error": {
+                        "message": "Rate limit reached",
+                        "type": "requests",
+                        "param": null,
+                        "code": "rate_limit_exceeded"
+                    }
+                }
+                """);
+        HttpException httpException = new HttpException(Response.error(429, body));
+
+        CompletableFuture<String> future = client.executeAsync(Single.error(httpException));
+
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertThat(e.getCause()).isInstanceOf(OpenAiException.class).hasMessage("Rate limit reached");
+        assertThat(((OpenAiException) e.getCause()).statusCode).isEqualTo(429);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hw.openai.common;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.Headers;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author HamaWhite
+ */
+class RateLimitsTest {
+
+    @Test
+    void testParseDuration() {
+        assertEquals(Duration.ofMillis(20), RateLimits.parseDuration("20ms"));
+        assertEquals(Duration.ofMillis(360_500), RateLimits.parseDuration("6m0.5s"));
+        assertEquals(Duration.ofHours(1), RateLimits.parseDuration("1h"));
+        assertNull(RateLimits.parseDuration("soon"));
+        assertNull(RateLimits.parseDuration(null));
+    }
+
+    @Test
+    void testFromHeaders() {
+        Headers headers = Headers.of(
+                "x-ratelimit-remaining-requests", "59",
+                "x-ratelimit-remaining-tokens", "149984",
+                "x-ratelimit-reset-requests", "1s",
+                "x-ratelimit-reset-tokens", "6m0s");
+        assertEquals(new RateLimits(59L, 149984L, Duration.ofSeconds(1), Duration.ofMinutes(6)),
+                RateLimits.fromHeaders(headers));
+        assertNull(RateLimits.fromHeaders(Headers.of()));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.entity.embeddings;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.hw.openai.OpenAiClient;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class EmbeddingDeserializerTest {
+
+    private final ObjectMapper objectMapper = OpenAiClient.defaultObjectMapper();
+
+    @Test
+    void testBase64LittleEndianRoundTrip() throws Exception {
+        float[] expected = {0.1f, -2.5f, 3.0e-7f, Float.MAX_VALUE};
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(expected);
+        String encoded = Base64.getEncoder().encodeToString(buffer.array());
+
+        EmbeddingData data = objectMapper.readValue(json("\"" + encoded + "\""), EmbeddingData.class);
+
+        assertThat(data.getEmbeddingArray()).containsExactly(expected);
+        assertThat(data.getIndex()).isZero();
+    }
+
+    @Test
+    void testPlainJsonArray() throws Exception {
+        EmbeddingData data = objectMapper.readValue(json("[0.25, -1, 3.5e-3]"), EmbeddingData.class);
+
+        assertThat(data.getEmbeddingArray()).containsExactly(0.25f, -1f, 3.5e-3f);
+    }
+
+    @Test
+    void testBase64LengthNotMultipleOfFloatSize() {
+        String encoded = Base64.getEncoder().encodeToString(new byte[]{1, 2, 3, 4, 5, 6});
+        String content = json("\"" + encoded + "\"");
+
+        MismatchedInputException exception = assertThrows(MismatchedInputException.class,
+                () -> objectMapper.readValue(content, EmbeddingData.class));
+        assertThat(exception.getMessage()).contains("6 bytes");
+    }
+
+    private static String json(String embedding) {
+        return "{\"object\":\"embedding\",\"index\":0,\"embedding\":" + embedding + "}";
+    }
+}
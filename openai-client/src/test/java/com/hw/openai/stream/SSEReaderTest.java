@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.stream;
+
+import com.hw.openai.OpenAiClient;
+import com.hw.openai.entity.completions.CompletionChunk;
+import com.hw.openai.exception.OpenAiException;
+import com.hw.openai.exception.SSEFormatException;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+import retrofit2.mock.Calls;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author HamaWhite
+ */
+class SSEReaderTest {
+
+    @Test
+    void testReadUntilDone() throws Exception {
+        ResponseBody body = ResponseBody.create(MediaType.get("text/event-stream"), """
+                : keep-alive
+
+                data: {"id": "1"}
+
+                event: message
+                data: {"id": "2"}
+
+                data: [DONE]
+
+                data: {"id": "3"}
+
+                """);
+
+        List<String> ids = new ArrayList<>();
+        try (SSEReader<CompletionChunk> reader = open(Calls.response(body))) {
+            CompletionChunk chunk;
+            while ((chunk = reader.next()) != null) {
+                ids.add(chunk.getId());
+            }
+        }
+        assertEquals(List.of("1", "2"), ids);
+    }
+
+    @Test
+    void testMultiLineData() throws Exception {
+        ResponseBody body = ResponseBody.create(MediaType.get("text/event-stream"),
+                "data: {\"id\":\r\ndata: \"1\"}\r\n\r\ndata: {\"id\": \"2\"}");
+
+        try (SSEReader<CompletionChunk> reader = open(Calls.response(body))) {
+            assertEquals("1", reader.next().getId());
+            assertEquals("2", reader.next().getId());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void testSseFormatException() throws Exception {
+        ResponseBody body = ResponseBody.create(MediaType.get("text/event-stream"), """
+                bad: line 1
+
+                data: [DONE]
+
+                """);
+
+        try (SSEReader<CompletionChunk> reader = open(Calls.response(body))) {
+            assertThrows(SSEFormatException.class, reader::next);
+        }
+    }
+
+    @Test
+    void testServerError() {
+        String errorBody = """
+                    {
+                        "error": {
+                            "message": "Invalid auth token",
+                            "type": "type",
+                            "param": "param",
+                            "code": "code"
+                        }
+                    }
+                """;
+        ResponseBody body = ResponseBody.create(MediaType.get("application/json"), errorBody);
+        Call<ResponseBody> call = Calls.response(Response.error(401, body));
+
+        OpenAiException e = assertThrows(OpenAiException.class, () -> open(call));
+        assertEquals("Invalid auth token", e.getMessage());
+    }
+
+    private SSEReader<CompletionChunk> open(Call<ResponseBody> call) throws IOException {
+        return SSEReader.open(call, OpenAiClient.defaultObjectMapper(), CompletionChunk.class);
+    }
+}
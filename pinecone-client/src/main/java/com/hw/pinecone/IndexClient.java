@@ -21,6 +21,8 @@ package com.hw.pinecone;
 import com.hw.pinecone.entity.vector.*;
 import com.hw.pinecone.service.VectorService;
 
+import io.reactivex.Single;
+
 /**
  * @author HamaWhite
  */
@@ -28,8 +30,18 @@ public class IndexClient {
 
     private final VectorService vectorService;
 
+    /**
+     * Service whose calls are enqueued on OkHttp's dispatcher, used by the asynchronous methods only.
+     */
+    private final VectorService asyncVectorService;
+
     public IndexClient(VectorService vectorService) {
+        this(vectorService, vectorService);
+    }
+
+    public IndexClient(VectorService vectorService, VectorService asyncVectorService) {
         this.vectorService = vectorService;
+        this.asyncVectorService = asyncVectorService;
     }
 
     /**
@@ -54,6 +66,16 @@ public class IndexClient {
         return vectorService.query(request).blockingGet();
     }
 
+    /**
+     * Asynchronous version of {@link #query(QueryRequest)}, the request is sent on subscription.
+     *
+     * @param request the QueryRequest containing the query vector and other parameters
+     * @return a Single emitting the QueryResponse
+     */
+    public Single<QueryResponse> queryAsync(QueryRequest request) {
+        return asyncVectorService.query(request);
+    }
+
     /**
      * The Delete operation deletes vectors, by id, from a single namespace.
      * You can delete items by their id, from a single namespace.
@@ -85,4 +107,14 @@ public class IndexClient {
     public UpsertResponse upsert(UpsertRequest request) {
         return vectorService.upsert(request).blockingGet();
     }
+
+    /**
+     * Asynchronous version of {@link #upsert(UpsertRequest)}, the request is sent on subscription.
+     *
+     * @param request the UpsertRequest containing the vectors to be upsert
+     * @return a Single emitting the UpsertResponse
+     */
+    public Single<UpsertResponse> upsertAsync(UpsertRequest request) {
+        return asyncVectorService.upsert(request);
+    }
 }
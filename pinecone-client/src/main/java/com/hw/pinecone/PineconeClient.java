@@ -24,6 +24,7 @@ import com.hw.pinecone.entity.index.CreateIndexRequest;
 import com.hw.pinecone.entity.index.IndexDescription;
 import com.hw.pinecone.service.IndexService;
 import com.hw.pinecone.service.VectorService;
+import com.hw.transport.HttpTransports;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -71,6 +72,12 @@ public class PineconeClient implements Closeable {
     @Builder.Default
     protected long requestTimeout = 16;
 
+    /**
+     * Transport whose connection pool and dispatcher are reused by this client, defaults to
+     * {@link HttpTransports#shared()}. The transport is owned by the caller and outlives the client.
+     */
+    private OkHttpClient transport;
+
     private OkHttpClient httpClient;
 
     private IndexService indexService;
@@ -91,8 +98,10 @@ public class PineconeClient implements Closeable {
 
     public IndexClient indexClient(String name) {
         String baseUrl = "https://" + describeIndex(name).getStatus().getHost();
-        Retrofit retrofit = createRetrofit(baseUrl);
-        return new IndexClient(retrofit.create(VectorService.class));
+        VectorService vectorService = createRetrofit(baseUrl).create(VectorService.class);
+        VectorService asyncVectorService = createRetrofit(baseUrl, RxJava2CallAdapterFactory.createAsync())
+                .create(VectorService.class);
+        return new IndexClient(vectorService, asyncVectorService);
     }
 
     /**
@@ -101,8 +110,39 @@ public class PineconeClient implements Closeable {
      * @return the initialized PineconeClient instance
      */
     public Retrofit createRetrofit(String baseUrl) {
-        OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder()
-                .connectTimeout(requestTimeout, TimeUnit.SECONDS)
+        // Blocking calls execute on the caller's thread, so they are not capped by the dispatcher's per-host limit
+        return createRetrofit(baseUrl, RxJava2CallAdapterFactory.create());
+    }
+
+    /**
+     * Creates a Retrofit instance whose calls are adapted by the given factory.
+     *
+     * @param baseUrl            the base url of the service
+     * @param callAdapterFactory {@link RxJava2CallAdapterFactory#createAsync()} enqueues the calls on OkHttp's
+     *                           dispatcher, so subscribing to a Single never blocks the caller
+     * @return the Retrofit instance
+     */
+    public Retrofit createRetrofit(String baseUrl, RxJava2CallAdapterFactory callAdapterFactory) {
+        // The controller and every index share one http client, and so one connection pool
+        if (httpClient == null) {
+            httpClient = createHttpClient();
+        }
+
+        // Used for automatic discovery and registration of Jackson modules
+        ObjectMapper objectMapper = defaultObjectMapper();
+
+        return new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .addCallAdapterFactory(callAdapterFactory)
+                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .client(httpClient)
+                .build();
+    }
+
+    private OkHttpClient createHttpClient() {
+        OkHttpClient.Builder httpClientBuilder =
+                (transport != null ? transport : HttpTransports.shared()).newBuilder();
+        httpClientBuilder.connectTimeout(requestTimeout, TimeUnit.SECONDS)
                 .readTimeout(requestTimeout, TimeUnit.SECONDS)
                 .writeTimeout(requestTimeout, TimeUnit.SECONDS)
                 .callTimeout(requestTimeout, TimeUnit.SECONDS);
@@ -125,17 +165,7 @@ public class PineconeClient implements Closeable {
                 LOG.isDebugEnabled() ? HttpLoggingInterceptor.Level.BODY : HttpLoggingInterceptor.Level.BASIC);
         httpClientBuilder.addInterceptor(loggingInterceptor);
 
-        httpClient = httpClientBuilder.build();
-
-        // Used for automatic discovery and registration of Jackson modules
-        ObjectMapper objectMapper = defaultObjectMapper();
-
-        return new Retrofit.Builder()
-                .baseUrl(baseUrl)
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
-                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
-                .client(httpClient)
-                .build();
+        return httpClientBuilder.build();
     }
 
     public static ObjectMapper defaultObjectMapper() {
@@ -148,16 +178,12 @@ public class PineconeClient implements Closeable {
     }
 
     /**
-     * Closes the HttpClient connection pool.
+     * Releases the client. The connection pool and dispatcher belong to the transport, which is left open for the
+     * other clients sharing it.
      */
     @Override
     public void close() {
-        // Cancel all ongoing requests
-        httpClient.dispatcher().cancelAll();
-
-        // Shut down the connection pool (if any)
-        httpClient.connectionPool().evictAll();
-        httpClient.dispatcher().executorService().shutdown();
+        // Nothing to release, the connection pool and dispatcher belong to the transport
     }
 
     private String getOrFromEnv(String originalValue, String envKey) {
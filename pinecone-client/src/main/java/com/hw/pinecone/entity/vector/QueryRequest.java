@@ -18,7 +18,9 @@
 
 package com.hw.pinecone.entity.vector;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
@@ -39,7 +41,8 @@ public class QueryRequest implements Serializable {
      * The query vector. This should be the same length as the dimension of the index being queried.
      * Each query() request can contain only one of the parameters id or vector.
      */
-    private List<Float> vector;
+    @JsonProperty("vector")
+    private float[] vector;
 
     /**
      * The unique ID of the vector to be used as a query vector.
@@ -73,4 +76,42 @@ public class QueryRequest implements Serializable {
      * Indicates whether metadata is included in the response as well as the ids.
      */
     private boolean includeMetadata;
-}
\ No newline at end of file
+
+    /**
+     * The query vector as a boxed list, kept for callers of the list based API.
+     */
+    @JsonIgnore
+    public List<Float> getVector() {
+        return Vector.toList(vector);
+    }
+
+    /**
+     * The query vector as a primitive array, without boxing.
+     */
+    @JsonIgnore
+    public float[] getVectorArray() {
+        return vector;
+    }
+
+    public void setVector(float[] vector) {
+        this.vector = vector;
+    }
+
+    @JsonIgnore
+    public void setVector(List<Float> vector) {
+        this.vector = Vector.toArray(vector);
+    }
+
+    public static class QueryRequestBuilder {
+
+        public QueryRequestBuilder vector(float[] vector) {
+            this.vector = vector;
+            return this;
+        }
+
+        public QueryRequestBuilder vector(List<Float> vector) {
+            this.vector = Vector.toArray(vector);
+            return this;
+        }
+    }
+}
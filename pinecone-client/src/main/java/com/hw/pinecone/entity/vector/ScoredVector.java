@@ -18,6 +18,7 @@
 
 package com.hw.pinecone.entity.vector;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import lombok.Data;
@@ -45,7 +46,8 @@ public class ScoredVector {
     /**
      * This is the vector data, if it is requested.
      */
-    private List<Float> values;
+    @JsonProperty("values")
+    private float[] values;
 
     /**
      * This is the sparse data, if it is requested.
@@ -57,4 +59,29 @@ public class ScoredVector {
      * This is the metadata, if it is requested.
      */
     public Map<String, Object> metadata;
+
+    /**
+     * The vector data as a boxed list, kept for callers of the list based API.
+     */
+    @JsonIgnore
+    public List<Float> getValues() {
+        return Vector.toList(values);
+    }
+
+    /**
+     * The vector data as a primitive array, without boxing.
+     */
+    @JsonIgnore
+    public float[] getValuesArray() {
+        return values;
+    }
+
+    public void setValues(float[] values) {
+        this.values = values;
+    }
+
+    @JsonIgnore
+    public void setValues(List<Float> values) {
+        this.values = Vector.toArray(values);
+    }
 }
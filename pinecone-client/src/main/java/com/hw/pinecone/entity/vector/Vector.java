@@ -18,13 +18,17 @@
 
 package com.hw.pinecone.entity.vector;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import org.apache.commons.lang3.ArrayUtils;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -44,7 +48,8 @@ public class Vector implements Serializable {
     /**
      * This is the vector data included in the request.
      */
-    private List<Float> values;
+    @JsonProperty("values")
+    private float[] values;
 
     /**
      * Vector sparse data. Represented as a list of indices and a list of corresponded values,
@@ -58,14 +63,55 @@ public class Vector implements Serializable {
      */
     public Map<String, Object> metadata;
 
-    public Vector(String id, List<Float> values) {
+    public Vector(String id, float[] values) {
         this.id = id;
         this.values = values;
     }
 
-    public Vector(String id, List<Float> values, Map<String, Object> metadata) {
+    public Vector(String id, float[] values, Map<String, Object> metadata) {
         this.id = id;
         this.values = values;
         this.metadata = metadata;
     }
+
+    public Vector(String id, List<Float> values) {
+        this(id, toArray(values));
+    }
+
+    public Vector(String id, List<Float> values, Map<String, Object> metadata) {
+        this(id, toArray(values), metadata);
+    }
+
+    /**
+     * The vector data as a boxed list, kept for callers of the list based API.
+     */
+    @JsonIgnore
+    public List<Float> getValues() {
+        return toList(values);
+    }
+
+    /**
+     * The vector data as a primitive array, without boxing.
+     */
+    @JsonIgnore
+    public float[] getValuesArray() {
+        return values;
+    }
+
+    public void setValues(float[] values) {
+        this.values = values;
+    }
+
+    @JsonIgnore
+    public void setValues(List<Float> values) {
+        this.values = toArray(values);
+    }
+
+    static float[] toArray(List<Float> values) {
+        return values == null ? null : ArrayUtils.toPrimitive(values.toArray(new Float[0]));
+    }
+
+    static List<Float> toList(float[] values) {
+        return values == null ? null : Arrays.asList(ArrayUtils.toObject(values));
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.pinecone.entity.vector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hw.pinecone.PineconeClient;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class VectorSerializationTest {
+
+    private final ObjectMapper objectMapper = PineconeClient.defaultObjectMapper();
+
+    @Test
+    void testVectorSerializesPrimitiveValues() throws Exception {
+        Vector vector = new Vector("1", List.of(0.5f, -1.0f));
+
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(vector)))
+                .isEqualTo(objectMapper.readTree("{\"id\":\"1\",\"values\":[0.5,-1.0]}"));
+        assertThat(vector.getValues()).containsExactly(0.5f, -1.0f);
+        assertThat(vector.getValuesArray()).containsExactly(0.5f, -1.0f);
+    }
+
+    @Test
+    void testQueryRequestSerializesPrimitiveVector() throws Exception {
+        QueryRequest request = QueryRequest.builder().vector(List.of(0.25f)).topK(2).build();
+
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(request))).isEqualTo(objectMapper.readTree(
+                "{\"vector\":[0.25],\"topK\":2,\"includeValues\":false,\"includeMetadata\":false}"));
+        assertThat(request.getVector()).containsExactly(0.25f);
+    }
+
+    @Test
+    void testScoredVectorDeserializesValues() throws Exception {
+        ScoredVector vector = objectMapper.readValue("{\"id\":\"1\",\"score\":0.9,\"values\":[0.5,-1.0]}",
+                ScoredVector.class);
+
+        assertThat(vector.getValuesArray()).containsExactly(0.5f, -1.0f);
+        assertThat(vector.getValues()).containsExactly(0.5f, -1.0f);
+    }
+}